@@ -0,0 +1,14 @@
+package com.github.florent37.compact;
+
+import android.app.Application;
+
+import fr.xebia.android.freezer.Freezer;
+
+public class CompactApplication extends Application {
+
+    @Override public void onCreate() {
+        super.onCreate();
+        Freezer.onCreate(this);
+    }
+
+}
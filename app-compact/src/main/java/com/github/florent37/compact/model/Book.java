@@ -0,0 +1,23 @@
+package com.github.florent37.compact.model;
+
+import fr.xebia.android.freezer.annotations.Model;
+
+@Model
+public class Book {
+    String title;
+
+    public Book() {
+    }
+
+    public Book(String title) {
+        this.title = title;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+}
@@ -0,0 +1,50 @@
+package com.github.florent37.compact.model;
+
+import fr.xebia.android.freezer.annotations.CompactSchema;
+import fr.xebia.android.freezer.annotations.Model;
+
+import java.util.List;
+
+/**
+ * Its books and its favorites share the join table SHELF_BOOK, with the field codes 0 and 1.
+ */
+@Model
+@CompactSchema
+public class Shelf {
+    String name;
+    List<Book> books;
+    List<Book> favorites;
+
+    public Shelf() {
+    }
+
+    public Shelf(String name, List<Book> books, List<Book> favorites) {
+        this.name = name;
+        this.books = books;
+        this.favorites = favorites;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public List<Book> getBooks() {
+        return books;
+    }
+
+    public void setBooks(List<Book> books) {
+        this.books = books;
+    }
+
+    public List<Book> getFavorites() {
+        return favorites;
+    }
+
+    public void setFavorites(List<Book> favorites) {
+        this.favorites = favorites;
+    }
+}
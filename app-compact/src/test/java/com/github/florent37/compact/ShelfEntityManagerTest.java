@@ -0,0 +1,190 @@
+package com.github.florent37.compact;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.github.florent37.compact.model.Book;
+import com.github.florent37.compact.model.BookEntityManager;
+import com.github.florent37.compact.model.Shelf;
+import com.github.florent37.compact.model.ShelfEntityManager;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import fr.xebia.android.freezer.DatabaseHelper;
+import fr.xebia.android.freezer.Freezer;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.spy;
+
+@RunWith(CustomRobolectricTestRunner.class)
+public class ShelfEntityManagerTest {
+
+    ShelfEntityManager shelfEntityManager;
+    BookEntityManager bookEntityManager;
+
+    @Before
+    public void setUp() throws Exception {
+        shelfEntityManager = spy(new ShelfEntityManager());
+        shelfEntityManager.deleteAll();
+
+        bookEntityManager = spy(new BookEntityManager());
+        bookEntityManager.deleteAll();
+    }
+
+    @Test
+    public void shouldKeepListOrderOnAdd() {
+        //given
+        Book a = new Book("a");
+        shelfEntityManager.add(new Shelf("north", Arrays.asList(new Book("c"), a, new Book("b")), Arrays.asList(a)));
+
+        //when
+        Shelf shelf = shelfEntityManager.select().first();
+
+        //then
+        assertThat(titles(shelf.getBooks())).containsExactly("c", "a", "b").inOrder();
+        assertThat(titles(shelf.getFavorites())).containsExactly("a");
+        assertThat(countRows("SHELF_BOOK")).isEqualTo(4);
+    }
+
+    @Test
+    public void shouldKeepListOrderOnUpdate() {
+        //given
+        shelfEntityManager.add(new Shelf("north", Arrays.asList(new Book("a"), new Book("b"), new Book("c")), Arrays.asList(new Book("d"))));
+        Shelf shelf = shelfEntityManager.select().first();
+        List<Book> books = shelf.getBooks();
+
+        //when
+        shelf.setBooks(Arrays.asList(books.get(2), new Book("e"), books.get(0)));
+        shelf.setFavorites(new ArrayList<Book>());
+        shelfEntityManager.update(shelf);
+        Shelf updated = shelfEntityManager.select().first();
+
+        //then
+        assertThat(titles(updated.getBooks())).containsExactly("c", "e", "a").inOrder();
+        assertThat(updated.getFavorites()).isEmpty();
+        assertThat(countRows("SHELF_BOOK")).isEqualTo(3);
+    }
+
+    @Test
+    public void shouldKeepListOrderOnDelete() {
+        //given
+        shelfEntityManager.add(Arrays.asList(
+                new Shelf("north", Arrays.asList(new Book("a"), new Book("b")), Arrays.asList(new Book("c"))),
+                new Shelf("south", Arrays.asList(new Book("f"), new Book("e"), new Book("d")), Arrays.asList(new Book("g")))
+        ));
+        List<Shelf> shelves = shelfEntityManager.select().asList();
+
+        //when
+        shelfEntityManager.delete(shelves.get(0));
+        Shelf south = shelfEntityManager.select().first();
+        south.getBooks().remove(1);
+        shelfEntityManager.update(south);
+        List<Shelf> remaining = shelfEntityManager.select().asList();
+
+        //then
+        assertThat(remaining).hasSize(1);
+        assertThat(titles(remaining.get(0).getBooks())).containsExactly("f", "d").inOrder();
+        assertThat(titles(remaining.get(0).getFavorites())).containsExactly("g");
+        assertThat(countRows("SHELF_BOOK")).isEqualTo(3);
+    }
+
+    @Test
+    public void testOpen_compactsJoinTable() {
+        //given
+        //a join table created without @CompactSchema, its rows naming their field
+        SQLiteDatabase db = Freezer.getInstance().acquireDatabase();
+        try {
+            db.execSQL("drop table SHELF_BOOK");
+            db.execSQL("create table SHELF_BOOK ( _id integer primary key autoincrement, shelf_id integer, book_id integer, _field_name text )");
+            db.execSQL("insert into SHELF (_id, name) values (1, 'north')");
+            db.execSQL("insert into SHELF (_id, name) values (2, 'south')");
+            for (int i = 1; i <= 5; ++i) {
+                db.execSQL("insert into BOOK (_id, title) values (" + i + ", 'book" + i + "')");
+            }
+            //inserted out of order, the lists are the rows of their field ordered by _id
+            db.execSQL("insert into SHELF_BOOK (_id, shelf_id, book_id, _field_name) values (3, 1, 1, 'books')");
+            db.execSQL("insert into SHELF_BOOK (_id, shelf_id, book_id, _field_name) values (1, 1, 3, 'books')");
+            db.execSQL("insert into SHELF_BOOK (_id, shelf_id, book_id, _field_name) values (2, 2, 4, 'books')");
+            db.execSQL("insert into SHELF_BOOK (_id, shelf_id, book_id, _field_name) values (5, 1, 2, 'books')");
+            db.execSQL("insert into SHELF_BOOK (_id, shelf_id, book_id, _field_name) values (4, 1, 5, 'favorites')");
+            db.execSQL("insert into SHELF_BOOK (_id, shelf_id, book_id, _field_name) values (6, 1, 4, 'favorites')");
+            //a field removed from the model
+            db.execSQL("insert into SHELF_BOOK (_id, shelf_id, book_id, _field_name) values (7, 1, 1, 'lent')");
+        } finally {
+            Freezer.getInstance().releaseDatabase();
+        }
+
+        //when
+        db = Freezer.getInstance().acquireDatabase();
+        try {
+            new DatabaseHelper(RuntimeEnvironment.application).onOpen(db);
+        } finally {
+            Freezer.getInstance().releaseDatabase();
+        }
+        List<Shelf> shelves = shelfEntityManager.select().asList();
+
+        //then
+        assertThat(readRows()).containsExactly("1:0:0:3", "1:0:1:1", "1:0:2:2", "1:1:0:5", "1:1:1:4", "2:0:0:4").inOrder();
+        assertThat(shelves).hasSize(2);
+        assertThat(titles(shelves.get(0).getBooks())).containsExactly("book3", "book1", "book2").inOrder();
+        assertThat(titles(shelves.get(0).getFavorites())).containsExactly("book5", "book4").inOrder();
+        assertThat(titles(shelves.get(1).getBooks())).containsExactly("book4");
+        assertThat(shelves.get(1).getFavorites()).isEmpty();
+        assertThat(tableExists("SHELF_BOOK_old")).isFalse();
+    }
+
+    private List<String> titles(List<Book> books) {
+        List<String> titles = new ArrayList<>();
+        for (Book book : books) {
+            titles.add(book.getTitle());
+        }
+        return titles;
+    }
+
+    private List<String> readRows() {
+        SQLiteDatabase db = Freezer.getInstance().acquireDatabase();
+        try {
+            Cursor cursor = db.rawQuery("select shelf_id, _field, _position, book_id from SHELF_BOOK order by shelf_id, _field, _position", null);
+            List<String> rows = new ArrayList<>();
+            while (cursor.moveToNext()) {
+                rows.add(cursor.getLong(0) + ":" + cursor.getInt(1) + ":" + cursor.getInt(2) + ":" + cursor.getLong(3));
+            }
+            cursor.close();
+            return rows;
+        } finally {
+            Freezer.getInstance().releaseDatabase();
+        }
+    }
+
+    private int countRows(String table) {
+        SQLiteDatabase db = Freezer.getInstance().acquireDatabase();
+        try {
+            Cursor cursor = db.rawQuery("select count(*) from " + table, null);
+            cursor.moveToFirst();
+            int count = cursor.getInt(0);
+            cursor.close();
+            return count;
+        } finally {
+            Freezer.getInstance().releaseDatabase();
+        }
+    }
+
+    private boolean tableExists(String table) {
+        SQLiteDatabase db = Freezer.getInstance().acquireDatabase();
+        try {
+            Cursor cursor = db.rawQuery("select 1 from sqlite_master where type = 'table' and name = ?", new String[]{table});
+            boolean exists = cursor.moveToFirst();
+            cursor.close();
+            return exists;
+        } finally {
+            Freezer.getInstance().releaseDatabase();
+        }
+    }
+}
@@ -53,6 +53,10 @@ public class Cat {
         return date;
     }
 
+    public void setDate(Date date) {
+        this.date = date;
+    }
+
     public long getId() {
         return id;
     }
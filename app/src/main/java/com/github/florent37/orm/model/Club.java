@@ -0,0 +1,38 @@
+package com.github.florent37.orm.model;
+
+import fr.xebia.android.freezer.annotations.Model;
+
+import java.util.List;
+
+/**
+ * Its members have relations of their own, a second level below the club.
+ */
+@Model
+public class Club {
+    String name;
+    List<User> members;
+
+    public Club() {
+    }
+
+    public Club(String name, List<User> members) {
+        this.name = name;
+        this.members = members;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public List<User> getMembers() {
+        return members;
+    }
+
+    public void setMembers(List<User> members) {
+        this.members = members;
+    }
+}
@@ -0,0 +1,40 @@
+package com.github.florent37.orm.model;
+
+import fr.xebia.android.freezer.annotations.Lazy;
+import fr.xebia.android.freezer.annotations.Model;
+
+import java.util.List;
+
+/**
+ * Its dogs are read on the first call of getDogs().
+ */
+@Model
+public class Kennel {
+    String name;
+    @Lazy
+    List<Dog> dogs;
+
+    public Kennel() {
+    }
+
+    public Kennel(String name, List<Dog> dogs) {
+        this.name = name;
+        this.dogs = dogs;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public List<Dog> getDogs() {
+        return dogs;
+    }
+
+    public void setDogs(List<Dog> dogs) {
+        this.dogs = dogs;
+    }
+}
@@ -0,0 +1,48 @@
+package com.github.florent37.orm.model;
+
+import fr.xebia.android.freezer.annotations.Model;
+
+import java.util.List;
+
+/**
+ * Its tags and its marks are stored in the side tables NOTE_TAGS_STRING and NOTE_MARKS_INT.
+ */
+@Model
+public class Note {
+    String title;
+    List<String> tags;
+    List<Integer> marks;
+
+    public Note() {
+    }
+
+    public Note(String title, List<String> tags, List<Integer> marks) {
+        this.title = title;
+        this.tags = tags;
+        this.marks = marks;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public List<String> getTags() {
+        return tags;
+    }
+
+    public void setTags(List<String> tags) {
+        this.tags = tags;
+    }
+
+    public List<Integer> getMarks() {
+        return marks;
+    }
+
+    public void setMarks(List<Integer> marks) {
+        this.marks = marks;
+    }
+}
@@ -0,0 +1,38 @@
+package com.github.florent37.orm.model;
+
+import fr.xebia.android.freezer.annotations.Model;
+
+import java.util.List;
+
+/**
+ * The tags and the marks of its notes are read for all the notes of a query at once.
+ */
+@Model
+public class Notebook {
+    String name;
+    List<Note> notes;
+
+    public Notebook() {
+    }
+
+    public Notebook(String name, List<Note> notes) {
+        this.name = name;
+        this.notes = notes;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public List<Note> getNotes() {
+        return notes;
+    }
+
+    public void setNotes(List<Note> notes) {
+        this.notes = notes;
+    }
+}
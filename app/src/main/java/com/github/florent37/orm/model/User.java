@@ -1,5 +1,8 @@
 package com.github.florent37.orm.model;
 
+import fr.xebia.android.freezer.annotations.FullText;
+import fr.xebia.android.freezer.annotations.Index;
+import fr.xebia.android.freezer.annotations.Indices;
 import fr.xebia.android.freezer.annotations.Model;
 
 import java.util.List;
@@ -8,8 +11,11 @@ import java.util.List;
  * Created by florentchampigny on 19/01/2016.
  */
 @Model
+@Indices({@Index(columns = {"name", "age"})})
 public class User {
     int age;
+    @Index
+    @FullText
     String name;
     Cat cat;
     List<Dog> dogs;
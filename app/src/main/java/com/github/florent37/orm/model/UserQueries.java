@@ -0,0 +1,37 @@
+package com.github.florent37.orm.model;
+
+import java.util.List;
+
+import fr.xebia.android.freezer.annotations.Dao;
+import fr.xebia.android.freezer.annotations.Query;
+
+/**
+ * Implemented by the generated UserQueriesImpl.
+ */
+@Dao
+public interface UserQueries {
+
+    @Query("select * from USER where age >= :minAge and hacker = :hacker order by age")
+    List<User> hackersFrom(int minAge, boolean hacker);
+
+    @Query("select * from USER where name = :name limit 1")
+    User named(String name);
+
+    @Query("select * from USER where age >= :minAge order by age")
+    List<User> olderThan(Integer minAge);
+
+    @Query("select u.* from USER u, USER_CAT c where c.user_id = u._id order by u.age")
+    List<User> withCat();
+
+    @Query("select count(*) from USER where age >= :minAge")
+    long countFrom(int minAge);
+
+    @Query("select avg(age) from USER")
+    double averageAge();
+
+    @Query("select name from USER order by age desc limit 1")
+    String oldestName();
+
+    @Query("update USER set age = age + :years where name = :name")
+    int addYears(String name, int years);
+}
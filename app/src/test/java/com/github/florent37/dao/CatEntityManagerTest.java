@@ -220,6 +220,32 @@ public class CatEntityManagerTest {
         assertThat(catFromBase.getShortName()).isEqualTo("mimi");
     }
 
+    @Test
+    public void testUpdateCat_nullsAndDates() throws Exception {
+        //given
+        //stored to the second
+        Date date = new Date((System.currentTimeMillis() / 1000 - 60) * 1000);
+        Date later = new Date(date.getTime() + 3600 * 1000);
+        catEntityManager.add(Arrays.asList(new Cat("Java", date), new Cat("Kotlin")));
+        Cat java = catEntityManager.select().shortName().equalsTo("Java").first();
+        Cat kotlin = catEntityManager.select().shortName().equalsTo("Kotlin").first();
+
+        //when
+        java.setShortName(null);
+        java.setDate(null);
+        kotlin.setDate(later);
+        catEntityManager.update(Arrays.asList(java, kotlin));
+        Cat javaFromBase = catEntityManager.select().id().equalsTo(java.getId()).first();
+        Cat kotlinFromBase = catEntityManager.select().id().equalsTo(kotlin.getId()).first();
+
+        //then
+        assertThat(java.getDate()).isNull();
+        assertThat(javaFromBase.getShortName()).isNull();
+        assertThat(javaFromBase.getDate()).isNull();
+        assertThat(kotlinFromBase.getShortName()).isEqualTo("Kotlin");
+        assertThat(kotlinFromBase.getDate()).isEqualTo(later);
+    }
+
     @Test
     public void testDeleteCat() throws Exception{
         //given
@@ -0,0 +1,65 @@
+package com.github.florent37.dao;
+
+import com.github.florent37.orm.model.Cat;
+import com.github.florent37.orm.model.Club;
+import com.github.florent37.orm.model.ClubEntityManager;
+import com.github.florent37.orm.model.Dog;
+import com.github.florent37.orm.model.User;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import fr.xebia.android.freezer.QueryLogger;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.spy;
+
+@RunWith(CustomRobolectricTestRunner.class)
+public class ClubEntityManagerTest {
+
+    ClubEntityManager clubEntityManager;
+
+    @Before
+    public void setUp() throws Exception {
+        clubEntityManager = spy(new ClubEntityManager());
+        clubEntityManager.deleteAll();
+    }
+
+    @Test
+    public void testSelectClubs_maxDepth() {
+        //given
+        clubEntityManager.add(new Club("runners", Arrays.asList(
+            new User(21, "florent", new Cat("Java"), Arrays.asList(new Dog("Loulou")), true),
+            new User(30, "kevin", new Cat("Futé"), null, false)
+        )));
+        final List<String> queries = new ArrayList<>();
+        clubEntityManager.logQueries(new QueryLogger() {
+            @Override
+            public void onQuery(String query, String[] datas) {
+                queries.add(query);
+            }
+        });
+
+        //when
+        Club firstLevel = clubEntityManager.select().maxDepth(1).first();
+        int firstLevelQueries = queries.size();
+        Club allLevels = clubEntityManager.select().first();
+
+        //then
+        //the members are read, not their cats and dogs
+        assertThat(firstLevelQueries).isEqualTo(2);
+        assertThat(firstLevel.getMembers()).hasSize(2);
+        assertThat(firstLevel.getMembers().get(0).getName()).isEqualTo("florent");
+        assertThat(firstLevel.getMembers().get(0).getCat()).isNull();
+        assertThat(firstLevel.getMembers().get(0).getDogs()).isNull();
+        assertThat(firstLevel.getMembers().get(1).getCat()).isNull();
+        assertThat(allLevels.getMembers().get(0).getCat().getShortName()).isEqualTo("Java");
+        assertThat(allLevels.getMembers().get(0).getDogs()).hasSize(1);
+        assertThat(allLevels.getMembers().get(1).getCat().getShortName()).isEqualTo("Futé");
+    }
+}
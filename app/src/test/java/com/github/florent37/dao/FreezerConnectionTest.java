@@ -0,0 +1,95 @@
+package com.github.florent37.dao;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import com.github.florent37.orm.model.User;
+import com.github.florent37.orm.model.UserEntityManager;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import fr.xebia.android.freezer.Freezer;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.spy;
+
+@RunWith(CustomRobolectricTestRunner.class)
+public class FreezerConnectionTest {
+
+    UserEntityManager userEntityManager;
+    long idleTimeout;
+
+    @Before
+    public void setUp() throws Exception {
+        idleTimeout = Freezer.getInstance().getIdleTimeout();
+        userEntityManager = spy(new UserEntityManager());
+        userEntityManager.deleteAll();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Freezer.getInstance().setIdleTimeout(idleTimeout);
+    }
+
+    @Test
+    public void testConnection_sharedBetweenCalls() {
+        //given
+        userEntityManager.add(new User(21, "florent"));
+        SQLiteDatabase database = Freezer.getInstance().getDatabase();
+
+        //when
+        int count = userEntityManager.count();
+
+        //then
+        //released by both calls, kept open until the idle timeout
+        assertThat(count).isEqualTo(1);
+        assertThat(database.isOpen()).isTrue();
+        assertThat(Freezer.getInstance().getDatabase()).isSameAs(database);
+    }
+
+    @Test
+    public void testConnection_closedOnceReleasedWithoutIdleTimeout() {
+        //given
+        Freezer.getInstance().setIdleTimeout(0);
+        SQLiteDatabase database = Freezer.getInstance().acquireDatabase();
+
+        //when
+        userEntityManager.add(new User(21, "florent"));
+        boolean openWhileLeased = database.isOpen();
+        Freezer.getInstance().releaseDatabase();
+
+        //then
+        assertThat(openWhileLeased).isTrue();
+        assertThat(database.isOpen()).isFalse();
+        assertThat(Freezer.getInstance().getDatabase()).isNull();
+        assertThat(userEntityManager.count()).isEqualTo(1);
+    }
+
+    @Test
+    public void testConnection_releasedOnAnotherThread() throws Exception {
+        //given
+        Freezer.getInstance().setIdleTimeout(0);
+        SQLiteDatabase database = Freezer.getInstance().acquireDatabase();
+
+        //when
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                userEntityManager.add(new User(21, "florent"));
+            }
+        });
+        thread.start();
+        thread.join();
+        boolean openAfterOtherRelease = database.isOpen();
+        int count = userEntityManager.count();
+        Freezer.getInstance().releaseDatabase();
+
+        //then
+        //the lease of this thread keeps the connection open
+        assertThat(openAfterOtherRelease).isTrue();
+        assertThat(count).isEqualTo(1);
+        assertThat(database.isOpen()).isFalse();
+    }
+}
@@ -0,0 +1,104 @@
+package com.github.florent37.dao;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import com.github.florent37.orm.model.User;
+import com.github.florent37.orm.model.UserEntityManager;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import fr.xebia.android.freezer.Freezer;
+import fr.xebia.android.freezer.FreezerConfig;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.spy;
+
+@RunWith(CustomRobolectricTestRunner.class)
+public class FreezerReaderConnectionsTest {
+
+    UserEntityManager userEntityManager;
+    //result of the last count run by countOnAnotherThread()
+    final AtomicInteger lastCount = new AtomicInteger(-1);
+
+    @Before
+    public void setUp() throws Exception {
+        Freezer.onDestroy();
+        Freezer.onCreate(RuntimeEnvironment.application, new FreezerConfig().enableWriteAheadLogging().readerConnections(1));
+        userEntityManager = spy(new UserEntityManager());
+        userEntityManager.deleteAll();
+        userEntityManager.add(Arrays.asList(
+            new User(21, "a", null, null, true),
+            new User(30, "b", null, null, false)
+        ));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Freezer.onDestroy();
+        Freezer.onCreate(RuntimeEnvironment.application);
+    }
+
+    @Test
+    public void testRead_notBlockedByWriteTransaction() throws Exception {
+        //given
+        SQLiteDatabase writer = Freezer.getInstance().acquireDatabase();
+        writer.beginTransaction();
+        try {
+            writer.execSQL("insert into USER (age, name, hacker) values (40, 'c', 0)");
+
+            //when
+            Thread reader = countOnAnotherThread();
+
+            //then
+            //the reader sees the last commit, without waiting for the transaction
+            assertThat(reader.isAlive()).isFalse();
+            assertThat(lastCount.get()).isEqualTo(2);
+        } finally {
+            writer.endTransaction();
+            Freezer.getInstance().releaseDatabase();
+        }
+        assertThat(userEntityManager.count()).isEqualTo(2);
+    }
+
+    @Test
+    public void testReader_releasedOnAnotherThread() throws Exception {
+        //given
+        final SQLiteDatabase reader = Freezer.getInstance().acquireReadableDatabase();
+
+        //when
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Freezer.getInstance().releaseReadableDatabase(reader);
+            }
+        });
+        thread.start();
+        thread.join();
+        Thread counter = countOnAnotherThread();
+
+        //then
+        //the only reader of the pool is idle again
+        assertThat(counter.isAlive()).isFalse();
+        assertThat(lastCount.get()).isEqualTo(2);
+        assertThat(userEntityManager.count()).isEqualTo(2);
+    }
+
+    private Thread countOnAnotherThread() throws InterruptedException {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                lastCount.set(userEntityManager.count());
+            }
+        });
+        thread.start();
+        thread.join(5000);
+        return thread;
+    }
+}
@@ -0,0 +1,94 @@
+package com.github.florent37.dao;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.github.florent37.orm.model.Dog;
+import com.github.florent37.orm.model.Kennel;
+import com.github.florent37.orm.model.KennelEntityManager;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import fr.xebia.android.freezer.Freezer;
+import fr.xebia.android.freezer.QueryLogger;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.spy;
+
+@RunWith(CustomRobolectricTestRunner.class)
+public class KennelEntityManagerTest {
+
+    KennelEntityManager kennelEntityManager;
+
+    @Before
+    public void setUp() throws Exception {
+        kennelEntityManager = spy(new KennelEntityManager());
+        kennelEntityManager.deleteAll();
+    }
+
+    @Test
+    public void testSelectKennels_lazyDogsReadOnFirstGet() {
+        //given
+        kennelEntityManager.add(new Kennel("north", Arrays.asList(new Dog("Loulou"), new Dog("Kiki"))));
+        final List<String> queries = new ArrayList<>();
+        kennelEntityManager.logQueries(new QueryLogger() {
+            @Override
+            public void onQuery(String query, String[] datas) {
+                queries.add(query);
+            }
+        });
+
+        //when
+        Kennel kennel = kennelEntityManager.select().first();
+        int queriesBeforeGet = queries.size();
+        List<Dog> dogs = kennel.getDogs();
+
+        //then
+        //only the kennel is read with the query, its dogs on the first call of the getter
+        assertThat(queriesBeforeGet).isEqualTo(1);
+        assertThat(queries).hasSize(2);
+        assertThat(queries.get(1)).contains("KENNEL_DOG");
+        assertThat(dogs).hasSize(2);
+        assertThat(dogs.get(0).getName()).isEqualTo("Loulou");
+        assertThat(dogs.get(1).getName()).isEqualTo("Kiki");
+    }
+
+    @Test
+    public void testSelectKennels_lazyDogsLoadedOnce() {
+        //given
+        kennelEntityManager.add(new Kennel("north", Arrays.asList(new Dog("Loulou"), new Dog("Kiki"))));
+        Kennel kennel = kennelEntityManager.select().first();
+
+        //when
+        kennel.setName("south");
+        kennelEntityManager.update(kennel);
+        List<Dog> dogs = kennel.getDogs();
+
+        //then
+        //the update keeps the join rows of the dogs it has not read
+        assertThat(countRows("KENNEL_DOG")).isEqualTo(2);
+        assertThat(dogs).hasSize(2);
+        assertThat(dogs.get(0).getName()).isEqualTo("Loulou");
+        assertThat(dogs.get(1).getName()).isEqualTo("Kiki");
+        assertThat(kennel.getDogs()).isSameAs(dogs);
+    }
+
+    private int countRows(String table) {
+        SQLiteDatabase db = Freezer.getInstance().acquireDatabase();
+        try {
+            Cursor cursor = db.rawQuery("select count(*) from " + table, null);
+            cursor.moveToFirst();
+            int count = cursor.getInt(0);
+            cursor.close();
+            return count;
+        } finally {
+            Freezer.getInstance().releaseDatabase();
+        }
+    }
+}
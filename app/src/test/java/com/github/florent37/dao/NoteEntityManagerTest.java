@@ -0,0 +1,140 @@
+package com.github.florent37.dao;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.github.florent37.orm.model.Note;
+import com.github.florent37.orm.model.NoteEntityManager;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import fr.xebia.android.freezer.DatabaseHelper;
+import fr.xebia.android.freezer.Freezer;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.spy;
+
+@RunWith(CustomRobolectricTestRunner.class)
+public class NoteEntityManagerTest {
+
+    NoteEntityManager noteEntityManager;
+
+    @Before
+    public void setUp() throws Exception {
+        noteEntityManager = spy(new NoteEntityManager());
+        noteEntityManager.deleteAll();
+    }
+
+    @Test
+    public void shouldAddNotes() {
+        //given
+        noteEntityManager.add(new Note("first", Arrays.asList("b", "a", "c"), Arrays.asList(3, 1, 2)));
+
+        //when
+        Note note = noteEntityManager.select().first();
+
+        //then
+        assertThat(note.getTags()).containsExactly("b", "a", "c").inOrder();
+        assertThat(note.getMarks()).containsExactly(3, 1, 2).inOrder();
+    }
+
+    @Test
+    public void testOpen_movesSharedTablesToSideTables() {
+        //given
+        //a database written before the side tables, the values of all the models in MODEL_STRING and MODEL_INT
+        SQLiteDatabase db = Freezer.getInstance().acquireDatabase();
+        try {
+            db.execSQL("drop table NOTE_TAGS_STRING");
+            db.execSQL("drop table NOTE_MARKS_INT");
+            db.execSQL("create table MODEL_STRING ( _id integer primary key autoincrement, _object_id integer, value text, _field_name text )");
+            db.execSQL("create table MODEL_INT ( _id integer primary key autoincrement, _object_id integer, value integer, _field_name text )");
+            db.execSQL("insert into NOTE (_id, title) values (1, 'first')");
+            db.execSQL("insert into NOTE (_id, title) values (2, 'second')");
+            //inserted out of order, the values of a list are the rows of its field ordered by _id
+            db.execSQL("insert into MODEL_STRING (_id, _object_id, value, _field_name) values (3, 1, 'c', 'tags')");
+            db.execSQL("insert into MODEL_STRING (_id, _object_id, value, _field_name) values (1, 1, 'b', 'tags')");
+            db.execSQL("insert into MODEL_STRING (_id, _object_id, value, _field_name) values (2, 1, 'a', 'tags')");
+            db.execSQL("insert into MODEL_STRING (_id, _object_id, value, _field_name) values (4, 2, 'd', 'tags')");
+            //the values of a field of another model, and of a deleted note
+            db.execSQL("insert into MODEL_STRING (_id, _object_id, value, _field_name) values (5, 1, 'other', 'names')");
+            db.execSQL("insert into MODEL_STRING (_id, _object_id, value, _field_name) values (6, 3, 'deleted', 'tags')");
+            db.execSQL("insert into MODEL_INT (_id, _object_id, value, _field_name) values (2, 1, 20, 'marks')");
+            db.execSQL("insert into MODEL_INT (_id, _object_id, value, _field_name) values (1, 1, 10, 'marks')");
+        } finally {
+            Freezer.getInstance().releaseDatabase();
+        }
+
+        //when
+        db = Freezer.getInstance().acquireDatabase();
+        try {
+            new DatabaseHelper(RuntimeEnvironment.application).onOpen(db);
+        } finally {
+            Freezer.getInstance().releaseDatabase();
+        }
+        List<Note> notes = noteEntityManager.select().asList();
+
+        //then
+        assertThat(readValues("NOTE_TAGS_STRING")).containsExactly("1:b", "1:a", "1:c", "2:d").inOrder();
+        assertThat(readValues("NOTE_MARKS_INT")).containsExactly("1:10", "1:20").inOrder();
+        assertThat(notes).hasSize(2);
+        assertThat(notes.get(0).getTags()).containsExactly("b", "a", "c").inOrder();
+        assertThat(notes.get(0).getMarks()).containsExactly(10, 20).inOrder();
+        assertThat(notes.get(1).getTags()).containsExactly("d");
+        assertThat(notes.get(1).getMarks()).isEmpty();
+        assertThat(tableExists("MODEL_STRING")).isFalse();
+        assertThat(tableExists("MODEL_INT")).isFalse();
+    }
+
+    @Test
+    public void testOpen_keepsSideTablesOnceMoved() {
+        //given
+        noteEntityManager.add(new Note("first", Arrays.asList("b", "a"), Arrays.asList(2, 1)));
+
+        //when
+        SQLiteDatabase db = Freezer.getInstance().acquireDatabase();
+        try {
+            new DatabaseHelper(RuntimeEnvironment.application).onOpen(db);
+        } finally {
+            Freezer.getInstance().releaseDatabase();
+        }
+        Note note = noteEntityManager.select().first();
+
+        //then
+        assertThat(note.getTags()).containsExactly("b", "a").inOrder();
+        assertThat(note.getMarks()).containsExactly(2, 1).inOrder();
+    }
+
+    private List<String> readValues(String sideTable) {
+        SQLiteDatabase db = Freezer.getInstance().acquireDatabase();
+        try {
+            Cursor cursor = db.rawQuery("select _object_id, value from " + sideTable + " order by _id", null);
+            List<String> values = new ArrayList<>();
+            while (cursor.moveToNext()) {
+                values.add(cursor.getLong(0) + ":" + cursor.getString(1));
+            }
+            cursor.close();
+            return values;
+        } finally {
+            Freezer.getInstance().releaseDatabase();
+        }
+    }
+
+    private boolean tableExists(String table) {
+        SQLiteDatabase db = Freezer.getInstance().acquireDatabase();
+        try {
+            Cursor cursor = db.rawQuery("select 1 from sqlite_master where type = 'table' and name = ?", new String[]{table});
+            boolean exists = cursor.moveToFirst();
+            cursor.close();
+            return exists;
+        } finally {
+            Freezer.getInstance().releaseDatabase();
+        }
+    }
+}
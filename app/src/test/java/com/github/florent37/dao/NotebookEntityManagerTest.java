@@ -0,0 +1,89 @@
+package com.github.florent37.dao;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import com.github.florent37.orm.model.Note;
+import com.github.florent37.orm.model.Notebook;
+import com.github.florent37.orm.model.NotebookEntityManager;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import fr.xebia.android.freezer.Freezer;
+import fr.xebia.android.freezer.QueryLogger;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.spy;
+
+@RunWith(CustomRobolectricTestRunner.class)
+public class NotebookEntityManagerTest {
+
+    NotebookEntityManager notebookEntityManager;
+
+    @Before
+    public void setUp() throws Exception {
+        notebookEntityManager = spy(new NotebookEntityManager());
+        notebookEntityManager.deleteAll();
+    }
+
+    @Test
+    public void testSelectNotebooks_collectionsLoadedByBatch() {
+        //given
+        notebookEntityManager.add(Arrays.asList(
+            new Notebook("first", Arrays.asList(
+                new Note("shared", Arrays.asList("b", "a"), Arrays.asList(2, 1)),
+                new Note("empty", new ArrayList<String>(), null)
+            )),
+            new Notebook("second", Arrays.asList(
+                new Note("own", Arrays.asList("c"), Arrays.asList(3))
+            ))
+        ));
+        //the shared note is also the last one of the second notebook, its id is read twice
+        SQLiteDatabase db = Freezer.getInstance().acquireDatabase();
+        try {
+            db.execSQL("insert into NOTEBOOK_NOTE (notebook_id, note_id, _field_name) "
+                + "select notebook._id, note._id, 'notes' from NOTEBOOK notebook, NOTE note where notebook.name = 'second' and note.title = 'shared'");
+        } finally {
+            Freezer.getInstance().releaseDatabase();
+        }
+        final List<String> queries = new ArrayList<>();
+        notebookEntityManager.logQueries(new QueryLogger() {
+            @Override
+            public void onQuery(String query, String[] datas) {
+                queries.add(query);
+            }
+        });
+
+        //when
+        List<Notebook> notebooks = notebookEntityManager.select().asList();
+
+        //then
+        //the notebooks, their notes, then one query for the tags and one for the marks of all the notes
+        assertThat(queries).hasSize(4);
+        int collectionQueries = 0;
+        for (String query : queries) {
+            if (query.contains("_object_id IN (")) {
+                collectionQueries++;
+            }
+        }
+        assertThat(collectionQueries).isEqualTo(2);
+        assertThat(notebooks).hasSize(2);
+        List<Note> first = notebooks.get(0).getNotes();
+        List<Note> second = notebooks.get(1).getNotes();
+        assertThat(first).hasSize(2);
+        assertThat(first.get(0).getTags()).containsExactly("b", "a").inOrder();
+        assertThat(first.get(0).getMarks()).containsExactly(2, 1).inOrder();
+        assertThat(first.get(1).getTags()).isEmpty();
+        assertThat(first.get(1).getMarks()).isEmpty();
+        assertThat(second).hasSize(2);
+        assertThat(second.get(0).getTags()).containsExactly("c");
+        assertThat(second.get(1).getTitle()).isEqualTo("shared");
+        assertThat(second.get(1).getTags()).containsExactly("b", "a").inOrder();
+        assertThat(second.get(1).getMarks()).containsExactly(2, 1).inOrder();
+    }
+}
@@ -11,10 +11,13 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import fr.xebia.android.freezer.Freezer;
+import fr.xebia.android.freezer.StatementCache;
 import fr.xebia.android.freezer.async.Callback;
 import fr.xebia.android.freezer.async.SimpleCallback;
 
@@ -200,6 +203,51 @@ public class UserEntityManagerTest {
         assertThat(userFromBase2.getAge()).isEqualTo(10);
     }
 
+    @Test
+    public void testUpdateUser_booleans() throws Exception {
+        //given
+        userEntityManager.add(Arrays.asList(new User(21, "florent", null, null, true), new User(30, "kevin", null, null, false)));
+        User florent = userEntityManager.select().name().equalsTo("florent").first();
+        User kevin = userEntityManager.select().name().equalsTo("kevin").first();
+
+        //when
+        florent.setHacker(false);
+        kevin.setHacker(true);
+        userEntityManager.update(Arrays.asList(florent, kevin));
+
+        //then
+        assertThat(userEntityManager.select().name().equalsTo("florent").first().isHacker()).isFalse();
+        assertThat(userEntityManager.select().name().equalsTo("kevin").first().isHacker()).isTrue();
+        assertThat(userEntityManager.select().hacker().isTrue().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldAddUsers_reusingStatements() {
+        //given
+        StatementCache statements = Freezer.getInstance().getStatementCache();
+        statements.evictAll();
+        int misses = statements.missCount();
+        userEntityManager.add(Arrays.asList(new User(21, "florent")));
+        int missesOfOneUser = statements.missCount() - misses;
+        statements.evictAll();
+        misses = statements.missCount();
+        int hits = statements.hitCount();
+
+        //when
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 10; ++i) {
+            users.add(new User(i, "user" + i));
+        }
+        userEntityManager.add(users);
+
+        //then
+        //the statements compiled for the first user are bound again for the others
+        assertThat(missesOfOneUser).isGreaterThan(0);
+        assertThat(statements.missCount() - misses).isEqualTo(missesOfOneUser);
+        assertThat(statements.hitCount() - hits).isAtLeast(9 * missesOfOneUser);
+        assertThat(userEntityManager.count()).isEqualTo(11);
+    }
+
     @Test
     public void testUpdateUser_oneToOne_nullToValue() throws Exception {
         //given
@@ -367,4 +415,63 @@ public class UserEntityManagerTest {
         //then
         assertThat(atomicBoolean.get()).isTrue();
     }
+
+    @Test
+    public void shouldCommitTransaction() {
+        //when
+        Freezer.getInstance().runInTransaction(new Runnable() {
+            @Override
+            public void run() {
+                userEntityManager.add(new User(21, "florent"));
+                catEntityManager.add(new Cat("Java"));
+            }
+        });
+
+        //then
+        assertThat(userEntityManager.count()).isEqualTo(1);
+        assertThat(catEntityManager.count()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldRollbackTransaction() {
+        //when
+        try {
+            Freezer.getInstance().runInTransaction(new Runnable() {
+                @Override
+                public void run() {
+                    userEntityManager.add(new User(21, "florent"));
+                    throw new IllegalStateException();
+                }
+            });
+        } catch (IllegalStateException e) {
+        }
+
+        //then
+        assertThat(userEntityManager.count()).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldRollbackOnlyNestedTransaction() {
+        //when
+        Freezer.getInstance().runInTransaction(new Runnable() {
+            @Override
+            public void run() {
+                userEntityManager.add(new User(21, "florent"));
+                try {
+                    Freezer.getInstance().runInTransaction(new Runnable() {
+                        @Override
+                        public void run() {
+                            userEntityManager.add(new User(30, "kevin"));
+                            throw new IllegalStateException();
+                        }
+                    });
+                } catch (IllegalStateException e) {
+                }
+            }
+        });
+
+        //then
+        assertThat(userEntityManager.count()).isEqualTo(1);
+        assertThat(userEntityManager.select().name().equalsTo("florent").count()).isEqualTo(1);
+    }
 }
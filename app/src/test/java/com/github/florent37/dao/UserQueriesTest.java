@@ -0,0 +1,163 @@
+package com.github.florent37.dao;
+
+import com.github.florent37.orm.model.Cat;
+import com.github.florent37.orm.model.User;
+import com.github.florent37.orm.model.UserEntityManager;
+import com.github.florent37.orm.model.UserQueries;
+import com.github.florent37.orm.model.UserQueriesImpl;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertThat;
+
+@RunWith(CustomRobolectricTestRunner.class)
+public class UserQueriesTest {
+
+    UserEntityManager userEntityManager;
+    UserQueries userQueries;
+
+    @Before
+    public void setUp() throws Exception {
+        userEntityManager = new UserEntityManager();
+        userEntityManager.deleteAll();
+
+        userQueries = new UserQueriesImpl();
+    }
+
+    private void addUsers() {
+        List<User> users = Arrays.asList(
+            new User(21, "florent", null, null, true),
+            new User(30, "kevin", null, null, true),
+            new User(10, "alex", null, null, false)
+        );
+        userEntityManager.add(users);
+    }
+
+    @Test
+    public void testQueryList() {
+        //given
+        addUsers();
+
+        //when
+        List<User> hackers = userQueries.hackersFrom(15, true);
+
+        //then
+        assertThat(hackers).hasSize(2);
+        assertThat(hackers.get(0).getName()).isEqualTo("florent");
+        assertThat(hackers.get(1).getName()).isEqualTo("kevin");
+    }
+
+    @Test
+    public void testQueryObject() {
+        //given
+        addUsers();
+
+        //when
+        User user = userQueries.named("kevin");
+        User missing = userQueries.named("bob");
+
+        //then
+        assertThat(user).isNotNull();
+        assertThat(user.getAge()).isEqualTo(30);
+        assertThat(missing).isNull();
+    }
+
+    @Test
+    public void testQueryList_boxedParameter() {
+        //given
+        addUsers();
+
+        //when
+        List<User> users = userQueries.olderThan(20);
+
+        //then
+        assertThat(users).hasSize(2);
+        assertThat(users.get(0).getName()).isEqualTo("florent");
+    }
+
+    @Test
+    public void testQueryList_nullParameter() {
+        //given
+        addUsers();
+
+        //when
+        IllegalArgumentException error = null;
+        try {
+            userQueries.olderThan(null);
+        } catch (IllegalArgumentException e) {
+            error = e;
+        }
+
+        //then
+        assertThat(error).isNotNull();
+        assertThat(error.getMessage()).contains("minAge");
+    }
+
+    @Test
+    public void testQueryList_fromList() {
+        //given
+        userEntityManager.add(Arrays.asList(
+            new User(21, "florent", new Cat("Java"), null, true),
+            new User(30, "kevin", null, null, true),
+            new User(10, "alex", new Cat("Futé"), null, false)
+        ));
+
+        //when
+        List<User> users = userQueries.withCat();
+        //the column indexes resolved by the first call are reused
+        List<User> again = userQueries.withCat();
+
+        //then
+        assertThat(users).hasSize(2);
+        assertThat(users.get(0).getName()).isEqualTo("alex");
+        assertThat(users.get(0).getCat().getShortName()).isEqualTo("Futé");
+        assertThat(users.get(1).getName()).isEqualTo("florent");
+        assertThat(again).hasSize(2);
+        assertThat(again.get(1).getAge()).isEqualTo(21);
+    }
+
+    @Test
+    public void testQueryScalars() {
+        //given
+        addUsers();
+
+        //when
+        long count = userQueries.countFrom(20);
+        String oldest = userQueries.oldestName();
+        double average = userQueries.averageAge();
+
+        //then
+        assertThat(count).isEqualTo(2);
+        assertThat(average).isWithin(0.001).of(61 / 3.0);
+        assertThat(oldest).isEqualTo("kevin");
+    }
+
+    @Test
+    public void testQueryScalar_noRow() {
+        //when
+        String oldest = userQueries.oldestName();
+        double average = userQueries.averageAge();
+
+        //then
+        assertThat(oldest).isNull();
+        assertThat(average).isEqualTo(0.0);
+    }
+
+    @Test
+    public void testQueryUpdate() {
+        //given
+        addUsers();
+
+        //when
+        int updated = userQueries.addYears("alex", 5);
+
+        //then
+        assertThat(updated).isEqualTo(1);
+        assertThat(userEntityManager.select().name().equalsTo("alex").first().getAge()).isEqualTo(15);
+    }
+}
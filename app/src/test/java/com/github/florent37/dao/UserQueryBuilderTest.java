@@ -1,5 +1,8 @@
 package com.github.florent37.dao;
 
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
 import com.github.florent37.orm.model.Cat;
 import com.github.florent37.orm.model.CatEntityManager;
 import com.github.florent37.orm.model.Dog;
@@ -11,11 +14,20 @@ import com.github.florent37.orm.model.UserEntityManager;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.robolectric.RuntimeEnvironment;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import fr.xebia.android.freezer.AggregateRow;
+import fr.xebia.android.freezer.CursorIterator;
+import fr.xebia.android.freezer.Freezer;
+import fr.xebia.android.freezer.FreezerConfig;
+import fr.xebia.android.freezer.QueryCache;
+import fr.xebia.android.freezer.QueryLogger;
 import fr.xebia.android.freezer.async.Callback;
 import io.reactivex.functions.Consumer;
 
@@ -582,4 +594,723 @@ public class UserQueryBuilderTest {
         assertThat(usersFromBase.get(0).getName()).isEqualTo("e");
     }
 
+    @Test
+    public void testSelectUser_orderOnTwoColumns() {
+        //given
+        List<User> users = Arrays.asList(
+                new User(21, "florent", null, null, false),
+                new User(30, "kevin", null, null, true),
+                new User(21, "alex", null, null, false)
+        );
+
+        //when
+        userEntityManager.add(users);
+        List<User> userFromBase = userEntityManager.select()
+                .sortDesc(UserColumns.age)
+                .sortAsc(UserColumns.name)
+                .asList();
+
+        //then
+        assertThat(userFromBase.get(0).getName()).isEqualTo("kevin");
+        assertThat(userFromBase.get(1).getName()).isEqualTo("alex");
+        assertThat(userFromBase.get(2).getName()).isEqualTo("florent");
+    }
+
+    @Test
+    public void testSelectUsers_limitsAreBoundAsArguments() {
+        //given
+        userEntityManager.add(Arrays.asList(
+            new User(21, "a", null, null, true),
+            new User(30, "b", null, null, true),
+            new User(40, "c", null, null, true)
+        ));
+        final List<String> queries = new ArrayList<>();
+        userEntityManager.logQueries(new QueryLogger() {
+            @Override
+            public void onQuery(String query, String[] datas) {
+                queries.add(query);
+            }
+        });
+
+        //when
+        List<User> firstPage = userEntityManager.select().age().greatherThan(20).limit(0, 1).asList();
+        int firstQueries = queries.size();
+        List<User> secondPage = userEntityManager.select().age().greatherThan(20).limit(1, 2).asList();
+
+        //then
+        assertThat(queries.get(firstQueries)).isEqualTo(queries.get(0));
+        assertThat(firstPage).hasSize(1);
+        assertThat(secondPage).hasSize(2);
+        assertThat(secondPage.get(0).getName()).isEqualTo("b");
+    }
+
+    @Test
+    public void testSelectUsers_sameShapeReusesQuery() {
+        //given
+        userEntityManager.add(Arrays.asList(
+            new User(21, "a", null, null, true),
+            new User(30, "b", null, null, true),
+            new User(40, "c", null, null, true)
+        ));
+        QueryCache queryCache = Freezer.getInstance().getQueryCache();
+        queryCache.evictAll();
+        int hits = queryCache.hitCount();
+        int misses = queryCache.missCount();
+
+        //when
+        List<User> youngUsers = userEntityManager.select().age().lessThan(25).sortAsc(UserColumns.name).asList();
+        int missesOfFirstQuery = queryCache.missCount() - misses;
+        int hitsOfFirstQuery = queryCache.hitCount() - hits;
+        List<User> oldUsers = userEntityManager.select().age().lessThan(35).sortAsc(UserColumns.name).asList();
+
+        //then
+        assertThat(missesOfFirstQuery).isEqualTo(1);
+        assertThat(hitsOfFirstQuery).isEqualTo(0);
+        assertThat(queryCache.missCount() - misses).isEqualTo(1);
+        assertThat(queryCache.hitCount() - hits).isEqualTo(1);
+        assertThat(youngUsers).hasSize(1);
+        assertThat(oldUsers).hasSize(2);
+        assertThat(oldUsers.get(1).getName()).isEqualTo("b");
+    }
+
+    @Test
+    public void testSumUsersAge() {
+        //given
+        userEntityManager.add(Arrays.asList(
+            new User(21, "a", null, null, true),
+            new User(30, "b", null, null, false),
+            new User(40, "c", null, null, true)
+        ));
+
+        //then
+        assertThat(userEntityManager.select().hacker().isTrue().sum(UserColumns.age)).isEqualTo(61f);
+        assertThat(userEntityManager.select().hacker().isTrue().max(UserColumns.age)).isEqualTo(40f);
+        assertThat(userEntityManager.select().name().equalsTo("z").sum(UserColumns.age)).isEqualTo(0f);
+        assertThat(userEntityManager.select().hacker().isTrue().count()).isEqualTo(2);
+    }
+
+    @Test
+    public void testForEachUsers() throws Exception {
+        //given
+        userEntityManager.add(Arrays.asList(
+            new User(21, "a", null, null, true),
+            new User(30, "b", null, null, false),
+            new User(40, "c", null, null, true)
+        ));
+        final AtomicInteger ages = new AtomicInteger();
+
+        //when
+        userEntityManager.select().hacker().isTrue().forEach(new Consumer<User>() {
+            @Override
+            public void accept(User user) throws Exception {
+                ages.addAndGet(user.getAge());
+            }
+        });
+
+        //then
+        assertThat(ages.get()).isEqualTo(61);
+    }
+
+    @Test
+    public void testIterateUsers_closeBeforeEnd() throws Exception {
+        //given
+        userEntityManager.add(Arrays.asList(
+            new User(21, "a", null, null, true),
+            new User(30, "b", null, null, false)
+        ));
+
+        //when
+        CursorIterator<User> iterator = userEntityManager.select().sortAsc(UserColumns.age).iterator();
+        User first = iterator.next();
+        iterator.close();
+
+        //then
+        assertThat(first.getName()).isEqualTo("a");
+        assertThat(iterator.hasNext()).isFalse();
+    }
+
+    @Test
+    public void testIterateUsers_closedOnAnotherThread() throws Exception {
+        //given
+        final long idleTimeout = Freezer.getInstance().getIdleTimeout();
+        Freezer.onDestroy();
+        Freezer.onCreate(RuntimeEnvironment.application, new FreezerConfig().enableWriteAheadLogging().readerConnections(1));
+        Freezer.getInstance().setIdleTimeout(0);
+        try {
+            userEntityManager.add(Arrays.asList(
+                new User(21, "a", null, null, true),
+                new User(30, "b", null, null, false)
+            ));
+
+            //when
+            final CursorIterator<User> iterator = userEntityManager.select().sortAsc(UserColumns.age).iterator();
+            User first = iterator.next();
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    iterator.close();
+                }
+            });
+            thread.start();
+            thread.join();
+
+            //then the reader, closed with the connection, is not given back to this thread
+            assertThat(first.getName()).isEqualTo("a");
+            assertThat(userEntityManager.select().count()).isEqualTo(2);
+            assertThat(userEntityManager.select().asList()).hasSize(2);
+        } finally {
+            Freezer.onDestroy();
+            Freezer.onCreate(RuntimeEnvironment.application);
+            Freezer.getInstance().setIdleTimeout(idleTimeout);
+        }
+    }
+
+    @Test
+    public void testSelectUsers_afterLastOfPage() {
+        //given
+        userEntityManager.add(Arrays.asList(
+            new User(30, "a", null, null, true),
+            new User(21, "b", null, null, true),
+            new User(30, "c", null, null, false),
+            new User(40, "d", null, null, true)
+        ));
+
+        //when
+        List<User> firstPage = userEntityManager.select().sortAsc(UserColumns.age).sortAsc(UserColumns.name).limit(0, 2).asList();
+        List<User> secondPage = userEntityManager.select().sortAsc(UserColumns.age).sortAsc(UserColumns.name).after(firstPage.get(1)).limit(0, 2).asList();
+        List<User> hackersPage = userEntityManager.select().hacker().isTrue().sortDesc(UserColumns.age).after(firstPage.get(1)).asList();
+
+        //then
+        assertThat(firstPage.get(0).getName()).isEqualTo("b");
+        assertThat(firstPage.get(1).getName()).isEqualTo("a");
+        assertThat(secondPage).hasSize(2);
+        assertThat(secondPage.get(0).getName()).isEqualTo("c");
+        assertThat(secondPage.get(1).getName()).isEqualTo("d");
+        assertThat(hackersPage).hasSize(1);
+        assertThat(hackersPage.get(0).getName()).isEqualTo("b");
+    }
+
+    @Test
+    public void testSelectUsers_asLazyList() {
+        //given
+        userEntityManager.add(Arrays.asList(
+            new User(30, "a", null, null, true),
+            new User(21, "b", null, null, true),
+            new User(40, "c", null, null, false)
+        ));
+
+        //when
+        List<User> users = userEntityManager.select().sortAsc(UserColumns.age).asLazyList(2);
+
+        //then
+        assertThat(users).hasSize(3);
+        assertThat(users.get(2).getName()).isEqualTo("c");
+        assertThat(users.get(0).getName()).isEqualTo("b");
+        assertThat(users.get(1).getName()).isEqualTo("a");
+    }
+
+    @Test
+    public void testPluckUsers() {
+        //given
+        userEntityManager.add(Arrays.asList(
+            new User(30, "a", null, null, true),
+            new User(21, "b", null, null, true),
+            new User(30, "c", null, null, false)
+        ));
+
+        //when
+        long[] ages = userEntityManager.select().sortAsc(UserColumns.age).pluckLong(UserColumns.age);
+        String[] names = userEntityManager.select().hacker().isTrue().sortDesc(UserColumns.name).pluckString(UserColumns.name);
+        long[] ids = userEntityManager.select().ids();
+
+        //then
+        assertThat(ages).isEqualTo(new long[]{21, 30, 30});
+        assertThat(names).isEqualTo(new String[]{"b", "a"});
+        assertThat(ids).hasLength(3);
+    }
+
+    @Test
+    public void testAggregateUsers_groupBy() {
+        //given
+        userEntityManager.add(Arrays.asList(
+            new User(21, "a", null, null, true),
+            new User(30, "b", null, null, false),
+            new User(40, "c", null, null, true)
+        ));
+
+        //when
+        List<AggregateRow> rows = userEntityManager.select().sortAsc(UserColumns.hacker)
+            .aggregate().sum(UserColumns.age).max(UserColumns.age).count().groupBy(UserColumns.hacker)
+            .asList();
+        AggregateRow total = userEntityManager.select().aggregate().average(UserColumns.age).count().first();
+
+        //then
+        assertThat(rows).hasSize(2);
+        assertThat(rows.get(1).getLong(0)).isEqualTo(61);
+        assertThat(rows.get(1).getLong(1)).isEqualTo(40);
+        assertThat(rows.get(1).getLong(2)).isEqualTo(2);
+        assertThat(rows.get(1).getLong(3)).isEqualTo(1);
+        assertThat(total.getDouble(0)).isWithin(0.001).of(91 / 3.0);
+        assertThat(total.getLong(1)).isEqualTo(3);
+    }
+
+    @Test
+    public void testExistsAndSingleUser() {
+        //given
+        userEntityManager.add(Arrays.asList(
+            new User(21, "a", null, null, true),
+            new User(30, "b", null, null, false),
+            new User(40, "c", null, null, true)
+        ));
+
+        //then
+        assertThat(userEntityManager.select().age().greatherThan(35).exists()).isTrue();
+        assertThat(userEntityManager.select().age().greatherThan(45).any()).isFalse();
+        assertThat(userEntityManager.select().hacker().isFalse().single().getName()).isEqualTo("b");
+        assertThat(userEntityManager.select().age().greatherThan(45).single()).isNull();
+        assertThat(userEntityManager.select().sortDesc(UserColumns.age).first().getName()).isEqualTo("c");
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testSingleUser_severalResults() {
+        //given
+        userEntityManager.add(Arrays.asList(
+            new User(21, "a", null, null, true),
+            new User(40, "c", null, null, true)
+        ));
+
+        //when
+        userEntityManager.select().hacker().isTrue().single();
+    }
+
+    @Test
+    public void testUpdateUsers() {
+        //given
+        userEntityManager.add(Arrays.asList(
+            new User(12, "a", null, null, true),
+            new User(16, "b", null, null, true),
+            new User(40, "c", null, null, true)
+        ));
+
+        //when
+        int count = userEntityManager.select().age().lessThan(18).update().set(UserColumns.hacker, false).set(UserColumns.name, "minor").execute();
+
+        //then
+        assertThat(count).isEqualTo(2);
+        assertThat(userEntityManager.select().hacker().isTrue().count()).isEqualTo(1);
+        assertThat(userEntityManager.select().name().equalsTo("minor").count()).isEqualTo(2);
+    }
+
+    @Test
+    public void testDeleteUsers() {
+        //given
+        userEntityManager.add(Arrays.asList(
+            new User(12, "a", new Cat("Java"), Arrays.asList(new Dog("Loulou")), true),
+            new User(16, "b", null, Arrays.asList(new Dog("Darty"), new Dog("Sasha")), true),
+            new User(40, "c", new Cat("Futé"), Arrays.asList(new Dog("Rex")), true)
+        ));
+
+        //when
+        int count = userEntityManager.select().age().lessThan(18).delete();
+
+        //then
+        assertThat(count).isEqualTo(2);
+        assertThat(userEntityManager.count()).isEqualTo(1);
+        assertThat(countRows("USER_DOG")).isEqualTo(1);
+        assertThat(countRows("USER_CAT")).isEqualTo(1);
+        assertThat(userEntityManager.select().first().getDogs()).hasSize(1);
+        assertThat(dogEntityManager.count()).isEqualTo(4);
+    }
+
+    @Test
+    public void testDeleteUsers_idsWrittenOnce() {
+        //given
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 600; ++i) {
+            users.add(new User(i % 2 == 0 ? 12 : 40, "user" + i, null, Arrays.asList(new Dog("dog" + i)), true));
+        }
+        userEntityManager.add(users);
+        final List<String> queries = new ArrayList<>();
+        userEntityManager.logQueries(new QueryLogger() {
+            @Override
+            public void onQuery(String query, String[] datas) {
+                queries.add(query);
+            }
+        });
+
+        //when
+        int count = userEntityManager.select().age().lessThan(18).delete();
+
+        //then
+        assertThat(count).isEqualTo(300);
+        assertThat(userEntityManager.count()).isEqualTo(300);
+        assertThat(countRows("USER_DOG")).isEqualTo(300);
+        //more ids than a batch, still one statement per relation table and one for the users
+        List<String> deletes = new ArrayList<>();
+        for (String query : queries) {
+            if (query.startsWith("DELETE FROM")) {
+                assertThat(query).contains("IN (select value from temp.freezer_in_");
+                deletes.add(query.substring(0, query.indexOf(" WHERE")));
+            }
+        }
+        assertThat(deletes).containsNoDuplicates();
+        assertThat(deletes).containsAllOf("DELETE FROM USER_DOG", "DELETE FROM USER_CAT", "DELETE FROM USER");
+    }
+
+    @Test
+    public void testDeleteUsers_filteredByRelation() {
+        //given
+        userEntityManager.add(Arrays.asList(
+            new User(12, "a", new Cat("Java"), Arrays.asList(new Dog("Loulou")), true),
+            new User(40, "c", new Cat("Futé"), Arrays.asList(new Dog("Rex")), true)
+        ));
+
+        //when
+        int count = userEntityManager.select().cat(CatEntityManager.where().shortName().equalsTo("Java")).delete();
+
+        //then
+        assertThat(count).isEqualTo(1);
+        assertThat(userEntityManager.count()).isEqualTo(1);
+        assertThat(userEntityManager.select().first().getName()).isEqualTo("c");
+        assertThat(countRows("USER_CAT")).isEqualTo(1);
+        assertThat(countRows("USER_DOG")).isEqualTo(1);
+    }
+
+    @Test
+    public void testDeleteDogs_removesTheirJoinRows() {
+        //given
+        userEntityManager.add(new User(12, "a", null, Arrays.asList(new Dog("Loulou"), new Dog("Rex")), true));
+
+        //when
+        int count = dogEntityManager.select().name().equalsTo("Rex").delete();
+
+        //then
+        assertThat(count).isEqualTo(1);
+        assertThat(countRows("USER_DOG")).isEqualTo(1);
+        assertThat(userEntityManager.select().first().getDogs()).hasSize(1);
+    }
+
+    @Test
+    public void testSelectUsersFromAge_largeIn() {
+        //given
+        userEntityManager.add(Arrays.asList(
+            new User(21, "a", null, null, true),
+            new User(30, "b", null, null, false),
+            new User(40, "c", null, null, true)
+        ));
+        Integer[] ages = new Integer[2000];
+        for (int i = 0; i < ages.length; ++i) {
+            ages[i] = i + 30;
+        }
+        final List<String> queries = new ArrayList<>();
+        final List<Integer> boundCounts = new ArrayList<>();
+        userEntityManager.logQueries(new QueryLogger() {
+            @Override
+            public void onQuery(String query, String[] datas) {
+                queries.add(query);
+                boundCounts.add(datas.length);
+            }
+        });
+
+        //when
+        int count = userEntityManager.select().age().in(ages).count();
+        int fewCount = userEntityManager.select().age().in(21, 40, 50).count();
+        List<User> users = userEntityManager.select().age().in(ages).sortAsc(UserColumns.age).asList();
+        final List<String> iterated = new ArrayList<>();
+        userEntityManager.select().age().in(ages).sortDesc(UserColumns.age).forEach(new Consumer<User>() {
+            @Override
+            public void accept(User user) throws Exception {
+                iterated.add(user.getName());
+            }
+        });
+
+        //then
+        assertThat(count).isEqualTo(2);
+        assertThat(fewCount).isEqualTo(2);
+        assertThat(users).hasSize(2);
+        assertThat(users.get(0).getName()).isEqualTo("b");
+        assertThat(iterated).containsExactly("c", "b").inOrder();
+        //the values are joined from a temp table, neither bound nor inlined
+        assertThat(Collections.max(boundCounts)).isAtMost(2);
+        for (String query : queries) {
+            assertThat(query).doesNotContain("'30'");
+        }
+        assertThat(userEntityManager.select().age().in(ages).exists()).isTrue();
+    }
+
+    @Test
+    public void testSelectUsers_largeInNested() {
+        //given
+        userEntityManager.add(Arrays.asList(
+            new User(21, "a", new Cat("Java"), null, true),
+            new User(30, "b", new Cat("Futé"), null, false),
+            new User(40, "c", new Cat("Java"), null, true)
+        ));
+        Integer[] ages = new Integer[300];
+        String[] names = new String[300];
+        for (int i = 0; i < ages.length; ++i) {
+            ages[i] = i + 30;
+            names[i] = i == 0 ? "Java" : "cat" + i;
+        }
+
+        //when
+        //the outer and the nested query both have a temp table
+        List<User> users = userEntityManager.select()
+            .age().in(ages)
+            .cat(CatEntityManager.where().shortName().in(names))
+            .asList();
+        int deleted = userEntityManager.select().age().in(ages).cat(CatEntityManager.where().shortName().in(names)).delete();
+
+        //then
+        assertThat(users).hasSize(1);
+        assertThat(users.get(0).getName()).isEqualTo("c");
+        assertThat(deleted).isEqualTo(1);
+        assertThat(userEntityManager.count()).isEqualTo(2);
+    }
+
+    @Test
+    public void testSelectUsers_severalLargeIn() {
+        //given
+        userEntityManager.add(Arrays.asList(
+            new User(21, "a", null, null, true),
+            new User(30, "b", null, null, false),
+            new User(40, "c", null, null, true)
+        ));
+        //4 lists bound on their own would go over the 999 variables of sqlite, the last ones go through temp tables
+        Integer[] ages = new Integer[250];
+        Integer[] otherAges = new Integer[250];
+        String[] names = new String[250];
+        String[] otherNames = new String[250];
+        for (int i = 0; i < ages.length; ++i) {
+            ages[i] = i + 30;
+            otherAges[i] = i + 40;
+            names[i] = i == 0 ? "c" : "name" + i;
+            otherNames[i] = i == 0 ? "c" : "other" + i;
+        }
+        final List<Integer> boundCounts = new ArrayList<>();
+        userEntityManager.logQueries(new QueryLogger() {
+            @Override
+            public void onQuery(String query, String[] datas) {
+                boundCounts.add(datas.length);
+            }
+        });
+
+        //when
+        List<User> users = userEntityManager.select()
+            .age().in(ages)
+            .and().age().in(otherAges)
+            .and().name().in(names)
+            .and().name().in(otherNames)
+            .and().hacker().isTrue()
+            .limit(0, 10)
+            .asList();
+        int count = userEntityManager.select().age().in(ages).or().age().in(otherAges).or().name().in(names).or().name().in(otherNames).count();
+        int updated = userEntityManager.select().age().in(ages).and().age().in(otherAges).and().name().in(names).and().name().in(otherNames)
+            .update().set(UserColumns.hacker, false).execute();
+
+        //then
+        assertThat(users).hasSize(1);
+        assertThat(users.get(0).getName()).isEqualTo("c");
+        assertThat(count).isEqualTo(2);
+        assertThat(updated).isEqualTo(1);
+        assertThat(userEntityManager.select().hacker().isTrue().count()).isEqualTo(1);
+        assertThat(Collections.max(boundCounts)).isAtMost(999);
+    }
+
+    @Test
+    public void testSelectUsersFromName_boundValues() {
+        //given
+        userEntityManager.add(Arrays.asList(
+            new User(21, "100%", null, null, true),
+            new User(30, "1000", null, null, false),
+            new User(40, "o'brien", null, null, true)
+        ));
+
+        //then
+        assertThat(userEntityManager.select().name().contains("'").count()).isEqualTo(1);
+        assertThat(userEntityManager.select().name().like("10%").count()).isEqualTo(2);
+        assertThat(userEntityManager.select().name().in("o'brien", "1000").count()).isEqualTo(2);
+    }
+
+    @Test
+    public void testSelectUsers_matchesRanked() {
+        //given
+        userEntityManager.add(Arrays.asList(
+            new User(21, "java developer", null, null, true),
+            new User(30, "java and more java", null, null, true),
+            new User(40, "kotlin developer", null, null, false)
+        ));
+
+        //when
+        List<User> javas = userEntityManager.select().matches("java").asList();
+        int developers = userEntityManager.select().matches("developer").and().hacker().isTrue().count();
+        int javaOrOld = userEntityManager.select().matches("java").or().age().greatherThan(35).count();
+
+        //then
+        assertThat(javas).hasSize(2);
+        assertThat(javas.get(0).getAge()).isEqualTo(30);
+        assertThat(javas.get(1).getAge()).isEqualTo(21);
+        assertThat(developers).isEqualTo(1);
+        assertThat(javaOrOld).isEqualTo(3);
+    }
+
+    @Test
+    public void testSelectUsers_matchesFollowsChanges() {
+        //given
+        userEntityManager.add(Arrays.asList(
+            new User(21, "java developer", null, null, true),
+            new User(30, "kotlin developer", null, null, true)
+        ));
+
+        //when
+        userEntityManager.select().matches("kotlin").update().set(UserColumns.name, "swift developer").execute();
+        User user = userEntityManager.select().matches("java").first();
+        user.setName("python developer");
+        userEntityManager.update(user);
+        userEntityManager.select().age().equalsTo(30).delete();
+
+        //then
+        assertThat(userEntityManager.select().matches("kotlin OR java OR swift").count()).isEqualTo(0);
+        assertThat(userEntityManager.select().matches("python").asList()).hasSize(1);
+        assertThat(userEntityManager.select().matches("developer").count()).isEqualTo(1);
+    }
+
+    @Test
+    public void testSelectUsers_usesIndexes() {
+        //given
+        userEntityManager.add(Arrays.asList(
+            new User(21, "a", null, Arrays.asList(new Dog("Loulou"), new Dog("Rex")), true),
+            new User(30, "b", null, Arrays.asList(new Dog("Sasha")), false)
+        ));
+        final List<String> queries = new ArrayList<>();
+        final List<String[]> queryArgs = new ArrayList<>();
+        userEntityManager.logQueries(new QueryLogger() {
+            @Override
+            public void onQuery(String query, String[] datas) {
+                queries.add(query);
+                queryArgs.add(datas);
+            }
+        });
+        userEntityManager.select().asList();
+        int dogsQuery = -1;
+        for (int i = 0; i < queries.size(); ++i) {
+            if (queries.get(i).contains("FROM USER_DOG")) {
+                dogsQuery = i;
+            }
+        }
+
+        SQLiteDatabase db = Freezer.getInstance().acquireDatabase();
+        try {
+            //when
+            Cursor cursor = db.rawQuery("select name from sqlite_master where type = 'index' order by name", null);
+            List<String> indexes = new ArrayList<>();
+            while (cursor.moveToNext()) {
+                indexes.add(cursor.getString(0));
+            }
+            cursor.close();
+            cursor = db.rawQuery("explain query plan " + queries.get(dogsQuery), queryArgs.get(dogsQuery));
+            List<String> plan = new ArrayList<>();
+            while (cursor.moveToNext()) {
+                plan.add(cursor.getString(cursor.getColumnIndex("detail")));
+            }
+            cursor.close();
+
+            //then
+            assertThat(indexes).containsAllOf("IDX_USER_name", "IDX_USER_name_age");
+            assertThat(indexes).containsAllOf("IDX_USER_DOG_user_id__field_name_dog_id", "IDX_USER_CAT_user_id__field_name_cat_id");
+            assertThat(indexes).doesNotContain("IDX_USER_DOG_user_id__field_name");
+            assertThat(indexes).doesNotContain("IDX_MODEL_STRING__object_id__field_name");
+            //the join rows of the users are found and read from the index alone, no table is scanned
+            assertThat(plan.toString()).contains("USING COVERING INDEX IDX_USER_DOG_user_id__field_name_dog_id");
+            for (String step : plan) {
+                assertThat(step).doesNotContain("SCAN");
+            }
+        } finally {
+            Freezer.getInstance().releaseDatabase();
+        }
+    }
+
+    @Test
+    public void testSelectUsers_relationsLoadedByBatch() {
+        //given
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 700; ++i) {
+            users.add(new User(i, "user" + i, i % 2 == 0 ? new Cat("cat" + i) : null, Arrays.asList(new Dog("first" + i), new Dog("second" + i)), true));
+        }
+        userEntityManager.add(users);
+        final List<String> queries = new ArrayList<>();
+        userEntityManager.logQueries(new QueryLogger() {
+            @Override
+            public void onQuery(String query, String[] datas) {
+                queries.add(query);
+            }
+        });
+
+        //when
+        List<User> usersFromBase = userEntityManager.select().sortAsc(UserColumns.age).asList();
+
+        //then
+        //the users, then the dogs and the cats by batches of 500 users
+        assertThat(queries).hasSize(5);
+        assertThat(usersFromBase).hasSize(700);
+        for (int i = 0; i < 700; ++i) {
+            User user = usersFromBase.get(i);
+            assertThat(user.getDogs()).hasSize(2);
+            assertThat(user.getDogs().get(0).getName()).isEqualTo("first" + i);
+            assertThat(user.getDogs().get(1).getName()).isEqualTo("second" + i);
+            if (i % 2 == 0) {
+                assertThat(user.getCat().getShortName()).isEqualTo("cat" + i);
+            } else {
+                assertThat(user.getCat()).isNull();
+            }
+        }
+    }
+
+    @Test
+    public void testSelectUsers_withoutRelations() {
+        //given
+        userEntityManager.add(new User(21, "florent", new Cat("Java"), Arrays.asList(new Dog("Loulou")), true));
+
+        //when
+        User user = userEntityManager.select().withoutRelations().first();
+        user.setAge(22);
+        userEntityManager.update(user);
+
+        //then
+        assertThat(user.getCat()).isNull();
+        assertThat(countRows("USER_CAT")).isEqualTo(1);
+        assertThat(userEntityManager.select().first().getCat().getShortName()).isEqualTo("Java");
+    }
+
+    @Test
+    public void testSelectUsers_withRelations() {
+        //given
+        userEntityManager.add(new User(21, "florent", new Cat("Java"), Arrays.asList(new Dog("Loulou")), true));
+
+        //when
+        User withCat = userEntityManager.select().with(UserColumns.cat).first();
+        List<User> iterated = new ArrayList<>();
+        for (User user : userEntityManager.select().maxDepth(0).asIterable()) {
+            iterated.add(user);
+        }
+
+        //then
+        assertThat(withCat.getCat().getShortName()).isEqualTo("Java");
+        assertThat(withCat.getDogs()).isNull();
+        assertThat(iterated).hasSize(1);
+        assertThat(iterated.get(0).getCat()).isNull();
+    }
+
+    private int countRows(String table) {
+        SQLiteDatabase db = Freezer.getInstance().acquireDatabase();
+        try {
+            Cursor cursor = db.rawQuery("select count(*) from " + table, null);
+            cursor.moveToFirst();
+            int count = cursor.getInt(0);
+            cursor.close();
+            return count;
+        } finally {
+            Freezer.getInstance().releaseDatabase();
+        }
+    }
 }
@@ -0,0 +1,20 @@
+package fr.xebia.android.freezer.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Smaller tables for the whole database, needs SQLite 3.8.2 (API 21):
+ * the join tables are WITHOUT ROWID, keyed by (parent, field, position), and store an integer code of the field
+ * instead of its name. The code is the rank of the field among the fields of the model stored in the same join table,
+ * reordering them needs a migration. AUTOINCREMENT is only kept on the models stored in the relations of other models,
+ * the ids of the deleted rows of the others may be reused.
+ * Turned on for an existing database, its join tables are converted the first time it is opened, the lists keep
+ * their order. The side tables and the models keep AUTOINCREMENT. Turning it off needs a migration of the join tables.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface CompactSchema {
+}
@@ -0,0 +1,14 @@
+package fr.xebia.android.freezer.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Interface whose {@link Query} methods are implemented at compile time, in a class named after it with an Impl suffix.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface Dao {
+}
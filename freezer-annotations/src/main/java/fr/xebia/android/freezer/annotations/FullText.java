@@ -0,0 +1,14 @@
+package fr.xebia.android.freezer.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Indexes a String field in the FTS4 table of its model, searched by the matches() of its query builder.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.FIELD)
+public @interface FullText {
+}
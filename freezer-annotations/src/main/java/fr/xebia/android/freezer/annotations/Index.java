@@ -0,0 +1,22 @@
+package fr.xebia.android.freezer.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Creates an index on a field of a model.
+ * Inside {@link Indices}, creates an index on the given columns, in this order.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.FIELD)
+public @interface Index {
+
+    /**
+     * columns of an index declared in {@link Indices}, ignored on a field
+     */
+    String[] columns() default {};
+
+    boolean unique() default false;
+}
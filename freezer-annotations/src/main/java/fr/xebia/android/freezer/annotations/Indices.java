@@ -0,0 +1,16 @@
+package fr.xebia.android.freezer.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Composite or unique indexes of a model, for example
+ * {@code @Indices({@Index(columns = {"age", "name"}), @Index(columns = "email", unique = true)})}
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface Indices {
+    Index[] value();
+}
@@ -0,0 +1,15 @@
+package fr.xebia.android.freezer.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Loads a relation or a collection on the first call of its getter instead of with its parent.
+ * The getter (and the setter) must be overridable by the generated Entity class.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.FIELD)
+public @interface Lazy {
+}
@@ -0,0 +1,17 @@
+package fr.xebia.android.freezer.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Sql run by a method of a {@link Dao}, the method parameters are bound to the :name placeholders.
+ * The tables, including each one of a comma-separated from list, and the placeholders are checked at compile time.
+ * The columns are not: an unknown column only fails when the query runs.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.METHOD)
+public @interface Query {
+    String value();
+}
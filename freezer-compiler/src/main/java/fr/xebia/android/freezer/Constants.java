@@ -21,11 +21,26 @@ public class Constants {
     public static final String CURSOR_HELPER_SUFFIX = "CursorHelper";
     public static final String QUERY_BUILDER_SUFFIX = "QueryBuilder";
     public static final String ENUM_COLUMN_SUFFIX = "Columns";
+    public static final String DAO_IMPL_SUFFIX = "Impl";
+    //FullText.SUFFIX of the runtime, known here to check the tables of the @Query methods
+    public static final String FULL_TEXT_SUFFIX = "_FTS";
 
     public static final TypeName daoClassName = ClassName.get(Constants.DAO_PACKAGE, DAO_CLASS_NAME);
     public static final TypeName dbHelperClassName = ClassName.get(Constants.DAO_PACKAGE, DATABASE_HELPER_CLASS_NAME);
     public static final TypeName queryBuilderClassName = ClassName.get(Constants.DAO_PACKAGE, QUERY_BUILDER_SUFFIX);
+    public static final TypeName queryCacheClassName = ClassName.get(Constants.DAO_PACKAGE, "QueryCache");
+    public static final ClassName cursorIteratorClassName = ClassName.get(Constants.DAO_PACKAGE, "CursorIterator");
+    public static final ClassName cursorIterableClassName = ClassName.get(Constants.DAO_PACKAGE, "CursorIterable");
+    public static final ClassName lazyListClassName = ClassName.get(Constants.DAO_PACKAGE, "LazyList");
+    public static final ClassName aggregateClassName = ClassName.get(Constants.DAO_PACKAGE, "Aggregate");
+    public static final ClassName aggregateRowClassName = ClassName.get(Constants.DAO_PACKAGE, "AggregateRow");
+    public static final ClassName updateClassName = ClassName.get(Constants.DAO_PACKAGE, "Update");
+    public static final ClassName inTablesClassName = ClassName.get(Constants.DAO_PACKAGE, "InTables");
+    public static final ClassName batchQueriesClassName = ClassName.get(Constants.DAO_PACKAGE, "BatchQueries");
+    public static final ClassName fetchPlanClassName = ClassName.get(Constants.DAO_PACKAGE, "FetchPlan");
+    public static final ClassName packedCollectionsClassName = ClassName.get(Constants.DAO_PACKAGE, "PackedCollections");
     public static final TypeName migrator = ClassName.get(Constants.DAO_PACKAGE+".migration", MIGRATOR);
+    public static final TypeName fullTextClassName = ClassName.get(Constants.DAO_PACKAGE + ".migration", "FullText");
     public static final ClassName callback = ClassName.get(Constants.DAO_PACKAGE+".async", CALLBACK);
 
     public static final TypeName applicationClassName = ClassName.get("android.app", "Application");
@@ -34,6 +49,7 @@ public class Constants {
     public static final TypeName contextClassName = ClassName.get("android.content", "Context");
     public static final TypeName cursorClassName = ClassName.get("android.database", "Cursor");
     public static final TypeName contentValuesClassName = ClassName.get("android.content", "ContentValues");
+    public static final TypeName statementClassName = ClassName.get("android.database.sqlite", "SQLiteStatement");
     public static final TypeName dateClassName = ClassName.get(Date.class);
     public static final TypeName simpleDateFormatClassName = ClassName.get(SimpleDateFormat.class);
     public static final TypeName stringBuilderClassName = ClassName.get(StringBuilder.class);
@@ -43,17 +59,21 @@ public class Constants {
 
     public static final String FIELD_ID = "_id";
     public static final String FIELD_NAME = "_field_name";
+    public static final String FIELD_CODE = "_field";
+    public static final String FIELD_POSITION = "_position";
     public static final String QUERY_TABLE_VARIABLE = "t";
     public static final String QUERY_NAMED = "NAMED";
 
     public static final String PRIMITIVE_CURSOR_HELPER = "PrimitiveCursorHelper";
     public static final TypeName primitiveCursorHelper = ClassName.get(Constants.DAO_PACKAGE, PRIMITIVE_CURSOR_HELPER);
+    //tables shared by all the models before the side tables, only read to upgrade the databases
     public static final String PRIMITIVE_TABLE_INT = "MODEL_INT";
     public static final String PRIMITIVE_TABLE_LONG = "MODEL_INT";
     public static final String PRIMITIVE_TABLE_STRING = "MODEL_STRING";
     public static final String PRIMITIVE_TABLE_FLOAT = "MODEL_FLOAT";
     public static final String PRIMITIVE_TABLE_DOUBLE = "MODEL_FLOAT";
     public static final String PRIMITIVE_TABLE_BOOLEAN = "MODEL_BOOLEAN";
+    public static final String[] PRIMITIVE_TABLES = {PRIMITIVE_TABLE_INT, PRIMITIVE_TABLE_STRING, PRIMITIVE_TABLE_FLOAT, PRIMITIVE_TABLE_BOOLEAN};
 
     public static final String SELECTOR_NUMBER = "NumberSelector";
     public static final String SELECTOR_NUMBER_LIST = "ListNumberSelector";
@@ -76,11 +96,10 @@ public class Constants {
     public static final String MODEL_ENTITY_PROXY_INTERFACE = "DataBaseModel";
     public static final String MODEL_ENTITY_PROXY_GET_ID_METHOD = "getDatabaseModelId";
     public static final String MODEL_ENTITY_PROXY_SET_ID_METHOD = "setDatabaseModelId";
+    public static final String LAZY_LOGGER = "lazyLogger";
 
     public static final String entityProxyClassString = Constants.DAO_PACKAGE + "." + MODEL_ENTITY_PROXY_INTERFACE;
     public static final ClassName entityProxyClass = ClassName.bestGuess(entityProxyClassString);
 
-    public static final String DATE_FORMAT = "yyyy-MM-dd HH:mm:ss";
-
     public static final String PARCEL_CREATOR = "CREATOR";
 }
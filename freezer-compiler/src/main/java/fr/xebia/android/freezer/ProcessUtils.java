@@ -6,13 +6,17 @@ import com.squareup.javapoet.MethodSpec;
 import com.squareup.javapoet.ParameterizedTypeName;
 import com.squareup.javapoet.TypeName;
 import com.squareup.javapoet.TypeSpec;
+import fr.xebia.android.freezer.annotations.FullText;
 import fr.xebia.android.freezer.annotations.Id;
 import fr.xebia.android.freezer.annotations.Ignore;
+import fr.xebia.android.freezer.annotations.Lazy;
+import fr.xebia.android.freezer.annotations.Packed;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
 import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.Modifier;
 import javax.lang.model.element.VariableElement;
 import javax.lang.model.util.ElementFilter;
@@ -60,13 +64,153 @@ public class ProcessUtils {
     public static List<VariableElement> getCollectionsOfPrimitiveFields(Element element) {
         List<VariableElement> collectionsOfPrimitives = new ArrayList<>();
         for (VariableElement e : getFields(element)) {
-            if (isCollectionOfPrimitive(e)) {
+            if (isCollectionOfPrimitive(e) && !isPacked(e)) {
                 collectionsOfPrimitives.add(e);
             }
         }
         return filterIgnore(collectionsOfPrimitives);
     }
 
+    /**
+     * @return the collections of primitives annotated with @Packed, stored in a BLOB column of the model
+     */
+    public static List<VariableElement> getPackedFields(Element element) {
+        List<VariableElement> packed = new ArrayList<>();
+        for (VariableElement e : getFields(element)) {
+            if (isPacked(e)) {
+                packed.add(e);
+            }
+        }
+        return packed;
+    }
+
+    public static boolean isPacked(Element element) {
+        return element.getAnnotation(Packed.class) != null && isCollectionOfPrimitive(element);
+    }
+
+    /**
+     * @return the PackedCollections method encoding this field, its decoding one is "unpack" + the name of its PrimitiveCursorHelper getter
+     */
+    public static String getPackFunction(Element element) {
+        String name = getPrimitiveCursorHelperFunction(element).substring("get".length());
+        return "pack" + name.replace("PrimitiveArray", "").replace("Array", "");
+    }
+
+    public static String getUnpackFunction(Element element) {
+        return "unpack" + getPrimitiveCursorHelperFunction(element).substring("get".length());
+    }
+
+    /**
+     * @return the String fields annotated with @FullText
+     */
+    public static List<VariableElement> getFullTextFields(Element element) {
+        List<VariableElement> fullTexts = new ArrayList<>();
+        for (VariableElement e : getPrimitiveFields(element)) {
+            if (e.getAnnotation(FullText.class) != null && ClassName.get(String.class).equals(TypeName.get(e.asType()))) {
+                fullTexts.add(e);
+            }
+        }
+        return fullTexts;
+    }
+
+    public static String getFullTextTableName(Element element) {
+        return getTableName(element) + Constants.FULL_TEXT_SUFFIX;
+    }
+
+    /**
+     * same name as the one used by Migrator.addIndex / dropIndex
+     */
+    public static String getIndexName(String tableName, String... columns) {
+        StringBuilder name = new StringBuilder("IDX_").append(tableName);
+        for (String column : columns) {
+            name.append('_').append(column);
+        }
+        return name.toString();
+    }
+
+    public static String getIndexCreation(String tableName, boolean unique, String... columns) {
+        StringBuilder creation = new StringBuilder(unique ? "create unique index if not exists " : "create index if not exists ")
+            .append(getIndexName(tableName, columns)).append(" on ").append(tableName).append(" (");
+        for (int i = 0; i < columns.length; ++i) {
+            if (i != 0) {
+                creation.append(", ");
+            }
+            creation.append(columns[i]);
+        }
+        return creation.append(")").toString();
+    }
+
+    /**
+     * @return true if this relation or collection is annotated with @Lazy and has a getter the entity proxy can override
+     */
+    public static boolean isLazy(Element element, VariableElement variableElement) {
+        return variableElement.getAnnotation(Lazy.class) != null && !isPacked(variableElement) && getGetter(element, variableElement) != null;
+    }
+
+    /**
+     * @return the getX() / isX() method of this field, null if the model has none or if it cannot be overridden
+     */
+    public static ExecutableElement getGetter(Element element, VariableElement variableElement) {
+        String name = capitalize(getObjectName(variableElement));
+        for (ExecutableElement method : overridableMethods(element)) {
+            String methodName = method.getSimpleName().toString();
+            if ((methodName.equals("get" + name) || methodName.equals("is" + name)) && method.getParameters().isEmpty()
+                && TypeName.get(method.getReturnType()).equals(TypeName.get(variableElement.asType()))) {
+                return method;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the setX(value) method of this field, null if the model has none or if it cannot be overridden
+     */
+    public static ExecutableElement getSetter(Element element, VariableElement variableElement) {
+        String name = "set" + capitalize(getObjectName(variableElement));
+        for (ExecutableElement method : overridableMethods(element)) {
+            if (method.getSimpleName().toString().equals(name) && method.getParameters().size() == 1
+                && TypeName.get(method.getParameters().get(0).asType()).equals(TypeName.get(variableElement.asType()))) {
+                return method;
+            }
+        }
+        return null;
+    }
+
+    private static List<ExecutableElement> overridableMethods(Element element) {
+        List<ExecutableElement> methods = new ArrayList<>();
+        for (ExecutableElement method : ElementFilter.methodsIn(element.getEnclosedElements())) {
+            Set<Modifier> modifiers = method.getModifiers();
+            if (!modifiers.contains(Modifier.PRIVATE) && !modifiers.contains(Modifier.FINAL) && !modifiers.contains(Modifier.STATIC)) {
+                methods.add(method);
+            }
+        }
+        return methods;
+    }
+
+    /**
+     * name of the CursorHelper method loading this relation or collection for a batch of objects
+     */
+    public static String getLoadMethodName(VariableElement variableElement) {
+        return "load" + capitalize(getObjectName(variableElement));
+    }
+
+    public static String getLoadedFlagName(VariableElement variableElement) {
+        return getObjectName(variableElement) + "Loaded";
+    }
+
+    public static boolean hasLazyFields(Element element, List<VariableElement> relations) {
+        for (VariableElement variableElement : relations) {
+            if (isLazy(element, variableElement)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String capitalize(String name) {
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+
     public static List<VariableElement> getNonPrimitiveClassFields(Element element) {
         List<VariableElement> nonPrimitive = new ArrayList<>();
         for (VariableElement e : getFields(element)) {
@@ -354,6 +498,101 @@ public class ProcessUtils {
         return ClassName.get(getObjectPackage(element), getObjectName(element) + Constants.MODEL_ENTITY_PROXY);
     }
 
+    /**
+     * @return the side table of this collection of primitives of the model, e.g. USER_TAGS_STRING, null if it has none
+     */
+    public static String getSideTableName(Element model, Element element) {
+        String type = getSideTableType(element);
+        if (type == null) {
+            return null;
+        }
+        return getTableName(model) + "_" + getObjectName(element).toUpperCase() + "_" + type;
+    }
+
+    /**
+     * @return the column identifying the field of a row of a join table
+     */
+    public static String getJoinFieldColumn(boolean compactSchema) {
+        return compactSchema ? Constants.FIELD_CODE : Constants.FIELD_NAME;
+    }
+
+    /**
+     * @return the value identifying the rows of this relation in its join table, the name of the field
+     * or with a compact schema its rank among the fields of the model stored in the same join table
+     */
+    public static String getJoinFieldValue(Element model, VariableElement element, boolean compactSchema) {
+        if (!compactSchema) {
+            return getObjectName(element);
+        }
+        int code = 0;
+        for (VariableElement field : getNonPrimitiveClassFields(model)) {
+            if (field.equals(element)) {
+                break;
+            }
+            if (getTableName(field).equals(getTableName(element))) {
+                code++;
+            }
+        }
+        return String.valueOf(code);
+    }
+
+    public static String getPrimaryKey(boolean autoincrement) {
+        return Constants.FIELD_ID + (autoincrement ? " integer primary key autoincrement" : " integer primary key");
+    }
+
+    public static String getSideTableCreation(Element model, Element element, boolean compactSchema) {
+        TypeName typeName = getFieldClass(element);
+        String valueType;
+        if (ClassName.get(String.class).equals(typeName)) {
+            valueType = "text";
+        } else if (TypeName.FLOAT.equals(typeName) || TypeName.DOUBLE.equals(typeName)) {
+            valueType = "real";
+        } else {
+            valueType = "integer";
+        }
+        //the values are ordered by rowid, a reused one is still the greatest
+        return "create table if not exists " + getSideTableName(model, element) + " ( " + getPrimaryKey(!compactSchema) + ", _object_id integer, value " + valueType + " )";
+    }
+
+    private static String getSideTableType(Element element) {
+        TypeName typeName = getFieldClass(element);
+        if (ClassName.get(String.class).equals(typeName)) {
+            return "STRING";
+        } else if (TypeName.INT.equals(typeName)) {
+            return "INT";
+        } else if (TypeName.LONG.equals(typeName)) {
+            return "LONG";
+        } else if (TypeName.FLOAT.equals(typeName)) {
+            return "FLOAT";
+        } else if (TypeName.DOUBLE.equals(typeName)) {
+            return "DOUBLE";
+        } else if (TypeName.BOOLEAN.equals(typeName)) {
+            return "BOOLEAN";
+        }
+        return null;
+    }
+
+    /**
+     * @return the table shared by all the models which stored this collection of primitives before the side tables, null if it has none
+     */
+    public static String getPrimitiveTableName(Element element) {
+        TypeName typeName = getFieldClass(element);
+        if (ClassName.get(String.class).equals(typeName)) {
+            return Constants.PRIMITIVE_TABLE_STRING;
+        } else if (TypeName.INT.equals(typeName)) {
+            return Constants.PRIMITIVE_TABLE_INT;
+        } else if (TypeName.LONG.equals(typeName)) {
+            return Constants.PRIMITIVE_TABLE_LONG;
+        } else if (TypeName.FLOAT.equals(typeName)) {
+            return Constants.PRIMITIVE_TABLE_FLOAT;
+        } else if (TypeName.DOUBLE.equals(typeName)) {
+            return Constants.PRIMITIVE_TABLE_DOUBLE;
+        } else if (TypeName.BOOLEAN.equals(typeName)) {
+            return Constants.PRIMITIVE_TABLE_BOOLEAN;
+        }
+        return null;
+    }
+
     public static String getPrimitiveCursorHelperFunction(Element element) {
         TypeName typeName = getFieldClass(element);
         if (isArray(element)) {
@@ -4,12 +4,15 @@ import com.google.auto.service.AutoService;
 import com.squareup.javapoet.ClassName;
 import com.squareup.javapoet.JavaFile;
 import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.TypeName;
 import com.squareup.javapoet.TypeSpec;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -21,10 +24,19 @@ import javax.annotation.processing.SupportedSourceVersion;
 import javax.lang.model.SourceVersion;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.tools.Diagnostic;
 
+import fr.xebia.android.freezer.annotations.CompactSchema;
+import fr.xebia.android.freezer.annotations.Dao;
 import fr.xebia.android.freezer.annotations.DatabaseName;
+import fr.xebia.android.freezer.annotations.FullText;
+import fr.xebia.android.freezer.annotations.Index;
+import fr.xebia.android.freezer.annotations.Indices;
+import fr.xebia.android.freezer.annotations.Lazy;
 import fr.xebia.android.freezer.annotations.Migration;
 import fr.xebia.android.freezer.annotations.Model;
+import fr.xebia.android.freezer.annotations.Packed;
 import fr.xebia.android.freezer.generator.CursorHelperGenerator;
 import fr.xebia.android.freezer.generator.DatabaseHelperGenerator;
 import fr.xebia.android.freezer.generator.EnumColumnGenerator;
@@ -32,7 +44,7 @@ import fr.xebia.android.freezer.generator.ModelEntityProxyGenerator;
 import fr.xebia.android.freezer.generator.ModelORMGenerator;
 import fr.xebia.android.freezer.generator.PrimitiveCursorHelperGenerator;
 import fr.xebia.android.freezer.generator.QueryBuilderGenerator;
-import fr.xebia.android.freezer.generator.QueryLoggerGenerator;
+import fr.xebia.android.freezer.generator.QueryDaoGenerator;
 
 /**
  * Created by florentchampigny on 07/01/2016.
@@ -43,7 +55,14 @@ import fr.xebia.android.freezer.generator.QueryLoggerGenerator;
         "fr.xebia.android.freezer.annotations.Model",
         "fr.xebia.android.freezer.annotations.Migration",
         "fr.xebia.android.freezer.annotations.DatabaseName",
-        "fr.xebia.android.freezer.annotations.Ignore"
+        "fr.xebia.android.freezer.annotations.Ignore",
+        "fr.xebia.android.freezer.annotations.Dao",
+        "fr.xebia.android.freezer.annotations.FullText",
+        "fr.xebia.android.freezer.annotations.Index",
+        "fr.xebia.android.freezer.annotations.Indices",
+        "fr.xebia.android.freezer.annotations.Lazy",
+        "fr.xebia.android.freezer.annotations.Packed",
+        "fr.xebia.android.freezer.annotations.CompactSchema"
     })
 @AutoService(javax.annotation.processing.Processor.class)
 public class Processor extends AbstractProcessor {
@@ -53,35 +72,50 @@ public class Processor extends AbstractProcessor {
 
     List<CursorHelper> cursorHelpers = new ArrayList<>();
 
+    Map<TypeName, Element> modelsByType = new HashMap<>();
+    Set<String> tables = new HashSet<>();
+    //checked each time the database opens, an existing database gets the missing ones
+    List<String> sideTables = new ArrayList<>();
+    List<String> compactJoinTables = new ArrayList<>();
+
     Map<Integer, Element> migrators = new HashMap<>();
     String dbFile = "database.db";
     int version = 1;
+    boolean compactSchema = false;
+    //models stored in the join tables of other models (their ids must not be reused), with those join tables
+    Map<TypeName, Set<String>> relationTargets = new HashMap<>();
 
     @Override
     public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
-        writeStaticJavaFiles();
-
         getMigrators(roundEnv);
         getDatabaseName(roundEnv);
+        getSchema(roundEnv);
+
+        writeStaticJavaFiles();
 
         for (Element element : roundEnv.getElementsAnnotatedWith(Model.class)) {
             models.add(element);
+            checkIndices(element);
+            checkLazy(element);
+            checkPacked(element);
+            checkFullText(element);
             generateColumnEnums(element);
             generateEntityProxies(element);
             generateCursorHelperFiles(element);
             generateModelDaoFiles(element);
+            addTables(element);
         }
         resolveDependencies();
         writeJavaFiles();
+        generateDaoImplementations(roundEnv);
         return true;
     }
 
     protected void writeStaticJavaFiles() {
         //writeFile(JavaFile.builder(Constants.DAO_PACKAGE, new DAOGenerator().generate()).build());
-        writeFile(JavaFile.builder(Constants.DAO_PACKAGE, new QueryLoggerGenerator().generate()).build());
         writeFile(JavaFile.builder(Constants.DAO_PACKAGE, ModelEntityProxyGenerator.generateModelProxyInterface()).build());
         writeFile(JavaFile.builder(Constants.DAO_PACKAGE, new PrimitiveCursorHelperGenerator().generate()).build());
-        writeFile(JavaFile.builder(Constants.DAO_PACKAGE, new QueryBuilderGenerator().generate()).build());
+        writeFile(JavaFile.builder(Constants.DAO_PACKAGE, new QueryBuilderGenerator(compactSchema).generate()).build());
     }
 
     protected void writeJavaFiles() {
@@ -89,7 +123,7 @@ public class Processor extends AbstractProcessor {
             writeFile(JavaFile.builder(cursorHelper.getPackage(), cursorHelper.getTypeSpec()).build());
         }
 
-        writeFile(JavaFile.builder(Constants.DAO_PACKAGE, new DatabaseHelperGenerator(dbFile, version, daosList, migrators).generate()).build());
+        writeFile(JavaFile.builder(Constants.DAO_PACKAGE, new DatabaseHelperGenerator(dbFile, version, daosList, migrators, sideTables, compactJoinTables).generate()).build());
     }
 
     protected void writeFile(JavaFile javaFile) {
@@ -131,6 +165,116 @@ public class Processor extends AbstractProcessor {
         }
     }
 
+    private void getSchema(RoundEnvironment roundEnv) {
+        if (!roundEnv.getElementsAnnotatedWith(CompactSchema.class).isEmpty()) {
+            compactSchema = true;
+        }
+        for (Element element : roundEnv.getElementsAnnotatedWith(Model.class)) {
+            for (VariableElement variableElement : ProcessUtils.getNonPrimitiveClassFields(element)) {
+                TypeName target = ProcessUtils.getFieldClass(variableElement);
+                Set<String> joinTables = relationTargets.get(target);
+                if (joinTables == null) {
+                    joinTables = new LinkedHashSet<>();
+                    relationTargets.put(target, joinTables);
+                }
+                joinTables.add(ProcessUtils.getTableName(element) + "_" + ProcessUtils.getTableName(variableElement));
+            }
+        }
+    }
+
+    private void checkIndices(Element element) {
+        Indices indices = element.getAnnotation(Indices.class);
+        if (indices == null) {
+            return;
+        }
+        Set<String> columns = new HashSet<>();
+        for (VariableElement variableElement : ProcessUtils.getPrimitiveFields(element)) {
+            columns.add(variableElement.getSimpleName().toString());
+        }
+        //both would get the same name, the second one would be skipped by its "if not exists"
+        String table = ProcessUtils.getTableName(element);
+        Set<String> names = new HashSet<>();
+        for (VariableElement variableElement : ProcessUtils.getPrimitiveFields(element)) {
+            if (variableElement.getAnnotation(Index.class) != null && variableElement != ProcessUtils.getIdField(element)) {
+                names.add(ProcessUtils.getIndexName(table, variableElement.getSimpleName().toString()));
+            }
+        }
+        for (Index index : indices.value()) {
+            if (index.columns().length == 0) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "an index of @Indices needs columns", element);
+            }
+            for (String column : index.columns()) {
+                if (!columns.contains(column)) {
+                    processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "unknown column " + column + " in @Indices", element);
+                }
+            }
+            if (!names.add(ProcessUtils.getIndexName(table, index.columns()))) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "the columns " + Arrays.toString(index.columns()) + " of @Indices are already indexed by an @Index field or another entry", element);
+            }
+        }
+    }
+
+    private void checkFullText(Element element) {
+        for (VariableElement variableElement : ProcessUtils.getFields(element)) {
+            if (variableElement.getAnnotation(FullText.class) != null && !ClassName.get(String.class).equals(TypeName.get(variableElement.asType()))) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "@FullText is only used on String fields", variableElement);
+            }
+        }
+    }
+
+    private void checkLazy(Element element) {
+        for (VariableElement variableElement : ProcessUtils.getFields(element)) {
+            if (variableElement.getAnnotation(Lazy.class) == null) {
+                continue;
+            }
+            if (ProcessUtils.isPrimitive(variableElement) && !ProcessUtils.isCollectionOfPrimitive(variableElement) || ProcessUtils.isPacked(variableElement)) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, "@Lazy is only used on relations and collections which are not @Packed, loaded eagerly", variableElement);
+            } else if (ProcessUtils.getGetter(element, variableElement) == null) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, "@Lazy needs an overridable getter, loaded eagerly", variableElement);
+            }
+        }
+    }
+
+    private void checkPacked(Element element) {
+        for (VariableElement variableElement : ProcessUtils.getFields(element)) {
+            if (variableElement.getAnnotation(Packed.class) != null && !ProcessUtils.isCollectionOfPrimitive(variableElement)) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "@Packed is only used on collections and arrays of primitives or Strings", variableElement);
+            }
+        }
+    }
+
+    private void addTables(Element element) {
+        modelsByType.put(TypeName.get(element.asType()), element);
+        String table = ProcessUtils.getTableName(element);
+        tables.add(table);
+        if (!ProcessUtils.getFullTextFields(element).isEmpty()) {
+            tables.add(ProcessUtils.getFullTextTableName(element));
+        }
+        for (VariableElement variableElement : ProcessUtils.getNonPrimitiveClassFields(element)) {
+            String joinTable = table + "_" + ProcessUtils.getTableName(variableElement);
+            tables.add(joinTable);
+            if (compactSchema && !compactJoinTables.contains(joinTable)) {
+                compactJoinTables.add(joinTable);
+            }
+        }
+        for (VariableElement variableElement : ProcessUtils.getCollectionsOfPrimitiveFields(element)) {
+            String sideTable = ProcessUtils.getSideTableName(element, variableElement);
+            if (sideTable != null) {
+                tables.add(sideTable);
+                sideTables.add(sideTable);
+            }
+        }
+    }
+
+    private void generateDaoImplementations(RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getElementsAnnotatedWith(Dao.class)) {
+            TypeSpec implementation = new QueryDaoGenerator(element, modelsByType, tables, processingEnv.getMessager()).generate();
+            if (implementation != null) {
+                writeFile(JavaFile.builder(ProcessUtils.getObjectPackage(element), implementation).build());
+            }
+        }
+    }
+
     private void generateEntityProxies(Element element) {
         ModelEntityProxyGenerator entityProxyGenerator = new ModelEntityProxyGenerator(element);
 
@@ -166,12 +310,17 @@ public class Processor extends AbstractProcessor {
     }
 
     private void generateCursorHelperFiles(Element element) {
-        CursorHelperGenerator cursorHelperGenerator = new CursorHelperGenerator(element);
+        CursorHelperGenerator cursorHelperGenerator = new CursorHelperGenerator(element, compactSchema);
         cursorHelpers.add(new CursorHelper(element, cursorHelperGenerator.generate(), cursorHelperGenerator.getDependencies()));
     }
 
     private void generateModelDaoFiles(Element element) {
-        ModelORMGenerator modelORMGenerator = new ModelORMGenerator(element).generate();
+        Set<String> parentJoinTables = relationTargets.get(ProcessUtils.getFieldClass(element));
+        if (parentJoinTables == null) {
+            parentJoinTables = new HashSet<>();
+        }
+        boolean autoincrement = !compactSchema || !parentJoinTables.isEmpty();
+        ModelORMGenerator modelORMGenerator = new ModelORMGenerator(element, compactSchema, autoincrement, parentJoinTables).generate();
 
         writeFile(JavaFile.builder(ProcessUtils.getObjectPackage(element), modelORMGenerator.getDao()).build());
         writeFile(JavaFile.builder(ProcessUtils.getObjectPackage(element), modelORMGenerator.getQueryBuilder()).build());
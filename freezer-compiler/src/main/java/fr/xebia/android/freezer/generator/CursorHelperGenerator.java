@@ -1,14 +1,19 @@
 package fr.xebia.android.freezer.generator;
 
+import com.squareup.javapoet.ArrayTypeName;
 import com.squareup.javapoet.ClassName;
 import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
 import com.squareup.javapoet.TypeName;
 import com.squareup.javapoet.TypeSpec;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import javax.lang.model.element.Element;
@@ -30,42 +35,95 @@ public class CursorHelperGenerator {
     List<VariableElement> fields;
     List<VariableElement> otherClassFields;
     List<VariableElement> collections;
+    List<VariableElement> packed;
+    List<VariableElement> columns;
     List<Dependency> dependencies = new ArrayList<>();
+    boolean compactSchema;
 
-    public CursorHelperGenerator(Element element) {
+    public CursorHelperGenerator(Element element, boolean compactSchema) {
         this.element = element;
+        this.compactSchema = compactSchema;
         this.objectName = ProcessUtils.getObjectName(element);
         this.modelType = TypeName.get(element.asType());
         this.fields = ProcessUtils.getPrimitiveFields(element);
         this.otherClassFields = ProcessUtils.getNonPrimitiveClassFields(element);
         this.collections = ProcessUtils.getCollectionsOfPrimitiveFields(element);
+        this.packed = ProcessUtils.getPackedFields(element);
+
+        //columns written by the insert / update statements, same as the table creation
+        this.columns = new ArrayList<>();
+        for (VariableElement variableElement : fields) {
+            if (!ProcessUtils.isIdField(variableElement) && !ProcessUtils.isModelId(variableElement)) {
+                columns.add(variableElement);
+            }
+        }
+        columns.addAll(packed);
     }
 
     public TypeSpec generate() {
 
-        MethodSpec.Builder fromCursorB = MethodSpec.methodBuilder("fromCursor")
+        //column indexes are resolved once by cursor, then given to fromCursor for each row
+        MethodSpec.Builder columnIndexesB = MethodSpec.methodBuilder("columnIndexes")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .returns(TypeName.get(int[].class))
+                .addParameter(Constants.cursorClassName, "cursor")
+                .addStatement("int[] indexes = new int[$L]", fields.size() + packed.size() + 1)
+                .addStatement("indexes[0] = cursor.getColumnIndex($S)", Constants.FIELD_ID);
+
+        MethodSpec fromCursorWithoutIndexes = MethodSpec.methodBuilder("fromCursor")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .returns(modelType)
+                .addParameter(Constants.cursorClassName, "cursor")
+                .addParameter(Constants.databaseClassName, "db")
+                .addStatement("return fromCursor(cursor, db, columnIndexes(cursor))")
+                .build();
+
+        MethodSpec fromCursor = MethodSpec.methodBuilder("fromCursor")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .returns(modelType)
+                .addParameter(Constants.cursorClassName, "cursor")
+                .addParameter(Constants.databaseClassName, "db")
+                .addParameter(TypeName.get(int[].class), "indexes")
+                .addStatement("return fromCursor(cursor, db, indexes, $T.ALL)", Constants.fetchPlanClassName)
+                .build();
+
+        MethodSpec fromCursorWithPlan = MethodSpec.methodBuilder("fromCursor")
                 .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
                 .returns(modelType)
                 .addParameter(Constants.cursorClassName, "cursor")
                 .addParameter(Constants.databaseClassName, "db")
+                .addParameter(TypeName.get(int[].class), "indexes")
+                .addParameter(Constants.fetchPlanClassName, "plan")
+                .addStatement("$T object = readRow(cursor, indexes)", modelType)
+                .addStatement("loadRelations(db, $T.singletonList(object), plan)", ClassName.get(Collections.class))
+                .addStatement("return object")
+                .build();
+
+        //only the columns of the current row, the relations are loaded by loadRelations
+        MethodSpec.Builder fromCursorB = MethodSpec.methodBuilder("readRow")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .returns(modelType)
+                .addParameter(Constants.cursorClassName, "cursor")
+                .addParameter(TypeName.get(int[].class), "indexes")
                 .addStatement("$T object = new $T()", modelType, ProcessUtils.getModelProxy(element))
 
-                .addStatement("long objectId = cursor.getLong(cursor.getColumnIndex($S))", Constants.FIELD_ID)
+                .addStatement("long objectId = cursor.getLong(indexes[0])")
                 .addStatement("$L(objectId)", ProcessUtils.setModelId("object"));
 
         //for
         for (int i = 0; i < fields.size(); ++i) {
             VariableElement variableElement = fields.get(i);
             if (ProcessUtils.isPrimitive(variableElement)) {
-                fromCursorB.addStatement("int index$L = cursor.getColumnIndex($S)", i, variableElement.getSimpleName());
+                columnIndexesB.addStatement("indexes[$L] = cursor.getColumnIndex($S)", i + 1, variableElement.getSimpleName());
+                fromCursorB.addStatement("int index$L = indexes[$L]", i, i + 1);
                 fromCursorB.beginControlFlow("if(index$L != -1)", i);
                 String cursor = "cursor.get$L(index$L)";
 
                 if (ProcessUtils.isDate(variableElement)) {
                     fromCursorB.addCode("try{ \n")
-                            .addStatement("String date$L = cursor.getString(cursor.getColumnIndex($S))", i, variableElement.getSimpleName())
-                            .addStatement("if(date$L != null) object.$L = new $T($S).parse(date$L)",
-                                    i, variableElement.getSimpleName(), Constants.simpleDateFormatClassName, Constants.DATE_FORMAT, i)
+                            .addStatement("String date$L = cursor.getString(index$L)", i, i)
+                            .addStatement("if(date$L != null) object.$L = new $T($T.DATE_FORMAT).parse(date$L)",
+                                    i, variableElement.getSimpleName(), Constants.simpleDateFormatClassName, Constants.daoClassName, i)
                             .addCode("} catch ($T e) { e.printStackTrace(); }", TypeName.get(Exception.class));
                 } else {
                     cursor = String.format(ProcessUtils.getFieldCast(variableElement), cursor);
@@ -76,30 +134,64 @@ public class CursorHelperGenerator {
             }
         }
 
-        for (int i = 0; i < otherClassFields.size(); ++i) {
-            VariableElement variableElement = otherClassFields.get(i);
-
-            fromCursorB.addCode("\n");
-            String JOIN_NAME = ProcessUtils.getTableName(objectName) + "_" + ProcessUtils.getTableName(variableElement);
-
-            fromCursorB.addStatement("$T cursor$L = db.rawQuery($S,new String[]{String.valueOf(objectId), $S})", Constants.cursorClassName, i, "SELECT * FROM " + ProcessUtils.getTableName(variableElement) + ", " + JOIN_NAME + " WHERE " + JOIN_NAME + "." + ProcessUtils.getKeyName(objectName) + " = ? AND " + ProcessUtils.getTableName(variableElement) + "." + Constants.FIELD_ID + " = " + JOIN_NAME + "." + ProcessUtils.getKeyName(variableElement) + " AND " + JOIN_NAME + "." + Constants.FIELD_NAME + "= ?", ProcessUtils.getObjectName(variableElement));
+        for (int i = 0; i < packed.size(); ++i) {
+            VariableElement variableElement = packed.get(i);
+            int index = fields.size() + i + 1;
+            columnIndexesB.addStatement("indexes[$L] = cursor.getColumnIndex($S)", index, variableElement.getSimpleName());
+            fromCursorB.addStatement("if(indexes[$L] != -1) object.$L = $T.$L(cursor.getBlob(indexes[$L]))", index, variableElement.getSimpleName(), Constants.packedCollectionsClassName, ProcessUtils.getUnpackFunction(variableElement), index);
+        }
 
-            fromCursorB.addStatement("$T objects$L = $T.get(cursor$L,db)", ProcessUtils.listOf(variableElement), i, ProcessUtils.getFieldCursorHelperClass(variableElement), i);
+        fromCursorB.addStatement("return object");
 
-            if (ProcessUtils.isCollection(variableElement))
-                fromCursorB.addStatement("if(!objects$L.isEmpty()) object.$L = objects$L", i, ProcessUtils.getObjectName(variableElement), i);
-            else
-                fromCursorB.addStatement("if(!objects$L.isEmpty()) object.$L = objects$L.get(0)", i, ProcessUtils.getObjectName(variableElement), i);
+        MethodSpec loadAllRelations = MethodSpec.methodBuilder("loadRelations")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .addParameter(Constants.databaseClassName, "db")
+                .addParameter(ProcessUtils.listOf(modelType), "objects")
+                .addStatement("loadRelations(db, objects, $T.ALL)", Constants.fetchPlanClassName)
+                .build();
 
-            fromCursorB.addStatement("cursor$L.close()", i);
+        MethodSpec.Builder loadRelationsB = MethodSpec.methodBuilder("loadRelations")
+                .addJavadoc("Loads the relations of objects read by {@link #readRow}, with one query by relation for a batch of objects\n")
+                .addJavadoc("instead of one query by relation and by object. The @Lazy ones are left to the first call of their getter,\n")
+                .addJavadoc("the ones the plan excludes are not read.\n")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .addParameter(Constants.databaseClassName, "db")
+                .addParameter(ProcessUtils.listOf(modelType), "objects")
+                .addParameter(Constants.fetchPlanClassName, "plan");
+
+        List<MethodSpec> loadMethods = new ArrayList<>();
+        List<VariableElement> relations = new ArrayList<>(otherClassFields);
+        relations.addAll(collections);
+        if (ProcessUtils.hasLazyFields(element, relations)) {
+            loadRelationsB.addCode("//the @Lazy getters read with the logger of the query\n")
+                    .addStatement("for($T object : objects) (($T) object).$L = plan.getLogger()", modelType, ProcessUtils.getModelProxy(element), Constants.LAZY_LOGGER);
         }
-
-        for (int i = 0; i < collections.size(); ++i) {
-            VariableElement variableElement = collections.get(i);
-            fromCursorB.addStatement("object.$L = $T.$L(db,objectId,$S)", ProcessUtils.getObjectName(variableElement), Constants.primitiveCursorHelper, ProcessUtils.getPrimitiveCursorHelperFunction(variableElement), ProcessUtils.getObjectName(variableElement));
+        for (VariableElement variableElement : relations) {
+            MethodSpec load = generateLoadMethod(variableElement);
+            loadMethods.add(load);
+            if (ProcessUtils.isLazy(element, variableElement)) {
+                continue;
+            }
+            if (ProcessUtils.isCollectionOfPrimitive(variableElement)) {
+                loadRelationsB.addStatement("if(plan.loads($S)) $L(db, objects, plan)", ProcessUtils.getObjectName(variableElement), load.name);
+            } else {
+                loadRelationsB.addStatement("if(plan.loads($S)) $L(db, objects, plan.child())", ProcessUtils.getObjectName(variableElement), load.name);
+            }
+        }
+        if (!relations.isEmpty()) {
+            loadMethods.add(MethodSpec.methodBuilder("ids")
+                    .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                    .returns(TypeName.get(long[].class))
+                    .addParameter(ProcessUtils.listOf(modelType), "objects")
+                    .addStatement("final long[] ids = new long[objects.size()]")
+                    .addStatement("for(int i=0;i<ids.length;++i) ids[i] = (($T) objects.get(i)).$L()", Constants.entityProxyClass, Constants.MODEL_ENTITY_PROXY_GET_ID_METHOD)
+                    .addStatement("return ids")
+                    .build());
         }
 
-        fromCursorB.addCode("\n").addStatement("return object");
+        for (VariableElement variableElement : otherClassFields) {
+            dependencies.add(new Dependency(ProcessUtils.getFieldClass(variableElement), Arrays.asList(generateGetForParent(variableElement))));
+        }
 
         MethodSpec.Builder getValuesB = MethodSpec.methodBuilder("getValues")
                 .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
@@ -113,7 +205,7 @@ public class CursorHelperGenerator {
             VariableElement variableElement = fields.get(i);
             if (ProcessUtils.isPrimitive(variableElement)) {
                 if (ProcessUtils.isDate(variableElement)) {
-                    getValuesB.addStatement("if(object.$L != null) values.put($S, new $T($S).format(object.$L))", variableElement.getSimpleName(), variableElement.getSimpleName(), Constants.simpleDateFormatClassName, Constants.DATE_FORMAT, variableElement.getSimpleName());
+                    getValuesB.addStatement("if(object.$L != null) values.put($S, new $T($T.DATE_FORMAT).format(object.$L))", variableElement.getSimpleName(), variableElement.getSimpleName(), Constants.simpleDateFormatClassName, Constants.daoClassName, variableElement.getSimpleName());
                 } else if (!ProcessUtils.isIdField(variableElement)) {
                     String statement = "values.put($S,object.$L)";
                     if (ProcessUtils.isModelId(variableElement))
@@ -123,6 +215,10 @@ public class CursorHelperGenerator {
             }
         }
 
+        for (VariableElement variableElement : packed) {
+            getValuesB.addStatement("if(object.$L != null) values.put($S, $T.$L(object.$L))", variableElement.getSimpleName(), variableElement.getSimpleName(), Constants.packedCollectionsClassName, ProcessUtils.getPackFunction(variableElement), variableElement.getSimpleName());
+        }
+
         getValuesB.addStatement(ProcessUtils.getModelId(element, "object", "id"));
         getValuesB.addStatement("if(id != null && id != 0) values.put($S, id)", "_id");
 
@@ -140,7 +236,7 @@ public class CursorHelperGenerator {
                         .addStatement("$T values = new $T()", Constants.contentValuesClassName, Constants.contentValuesClassName)
                         .addStatement("values.put($S,objectId)", ProcessUtils.getKeyName(this.objectName))
                         .addStatement("values.put($S,secondObjectId)", ProcessUtils.getKeyName(variableElement))
-                        .addStatement("values.put($S,name)", Constants.FIELD_NAME)
+                        .addStatement("values.put($S,name)", ProcessUtils.getJoinFieldColumn(compactSchema))
                         .addStatement("return values").build());
                 addedMethodsNames.add(JOIN_NAME);
             }
@@ -148,26 +244,54 @@ public class CursorHelperGenerator {
 
         getValuesB.addStatement("return values");
 
+        MethodSpec getAll = MethodSpec.methodBuilder("get")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .returns(ProcessUtils.listOf(modelType))
+                .addParameter(Constants.cursorClassName, "cursor")
+                .addParameter(Constants.databaseClassName, "db")
+                .addStatement("return get(cursor, db, $T.ALL)", Constants.fetchPlanClassName)
+                .build();
+
         MethodSpec get = MethodSpec.methodBuilder("get")
                 .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
                 .returns(ProcessUtils.listOf(modelType))
                 .addParameter(Constants.cursorClassName, "cursor")
                 .addParameter(Constants.databaseClassName, "db")
+                .addParameter(Constants.fetchPlanClassName, "plan")
+                .addStatement("return get(cursor, db, columnIndexes(cursor), plan)")
+                .build();
+
+        MethodSpec getWithIndexes = MethodSpec.methodBuilder("get")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .returns(ProcessUtils.listOf(modelType))
+                .addParameter(Constants.cursorClassName, "cursor")
+                .addParameter(Constants.databaseClassName, "db")
+                .addParameter(TypeName.get(int[].class), "indexes")
+                .addParameter(Constants.fetchPlanClassName, "plan")
                 .addStatement("$T objects = new $T()", ProcessUtils.listOf(modelType), ProcessUtils.arraylistOf(modelType))
                 .addStatement("cursor.moveToFirst()")
                 .addCode("while (!cursor.isAfterLast()) {\n")
-                .addStatement("    $T object = fromCursor(cursor,db)", modelType)
-                .addStatement("    objects.add(object)")
+                .addStatement("    objects.add(readRow(cursor,indexes))")
                 .addStatement("    cursor.moveToNext()")
                 .addCode("}\n")
+                .addStatement("loadRelations(db, objects, plan)")
                 .addStatement("return objects")
                 .build();
 
         return TypeSpec.classBuilder(ProcessUtils.getCursorHelperName(objectName))
                 .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .addMethod(columnIndexesB.addStatement("return indexes").build())
+                .addMethod(fromCursorWithoutIndexes)
+                .addMethod(fromCursor)
+                .addMethod(fromCursorWithPlan)
                 .addMethod(fromCursorB.build())
+                .addMethod(loadAllRelations)
+                .addMethod(loadRelationsB.build())
+                .addMethods(loadMethods)
                 .addMethod(getValuesB.build())
+                .addMethod(getAll)
                 .addMethod(get)
+                .addMethod(getWithIndexes)
                 .addMethods(joinMethods)
                 .addMethods(generateInsertMethods())
                 .addMethods(generateUpdateMethod())
@@ -175,6 +299,116 @@ public class CursorHelperGenerator {
 
     }
 
+    /**
+     * loads one relation or collection of primitives of a batch of objects, its @Lazy getter uses it too.
+     * The objects are marked loaded, their update then writes this relation
+     */
+    protected MethodSpec generateLoadMethod(VariableElement variableElement) {
+        String fieldName = ProcessUtils.getObjectName(variableElement);
+        MethodSpec.Builder loadB = MethodSpec.methodBuilder(ProcessUtils.getLoadMethodName(variableElement))
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .addParameter(Constants.databaseClassName, "db")
+                .addParameter(ProcessUtils.listOf(modelType), "objects")
+                .addParameter(Constants.fetchPlanClassName, "plan")
+                .addStatement("if(objects.isEmpty()) return")
+                .addStatement("final long[] ids = ids(objects)");
+
+        if (ProcessUtils.isCollectionOfPrimitive(variableElement)) {
+            TypeName fieldType = TypeName.get(variableElement.asType());
+            if (ProcessUtils.isArray(variableElement)) {
+                loadB.addStatement("$T values = $T.$L(db, $S, ids, plan.getLogger())", ArrayTypeName.of(fieldType), Constants.primitiveCursorHelper, ProcessUtils.getPrimitiveCursorHelperFunction(variableElement), ProcessUtils.getSideTableName(element, variableElement))
+                        .addStatement("for(int i=0;i<ids.length;++i) objects.get(i).$L = values[i]", fieldName);
+            } else {
+                loadB.addStatement("$T values = $T.$L(db, $S, ids, plan.getLogger())", ProcessUtils.listOf(fieldType), Constants.primitiveCursorHelper, ProcessUtils.getPrimitiveCursorHelperFunction(variableElement), ProcessUtils.getSideTableName(element, variableElement))
+                        .addStatement("for(int i=0;i<ids.length;++i) objects.get(i).$L = values.get(i)", fieldName);
+            }
+        } else {
+            TypeName childrenType = ProcessUtils.listOf(ProcessUtils.getFieldClass(variableElement));
+            loadB.addStatement("$T<$T, $T> children = $T.getFor$L(db, ids, $S, plan)", ClassName.get(Map.class), ClassName.get(Long.class), childrenType,
+                    ProcessUtils.getFieldCursorHelperClass(variableElement), objectName, ProcessUtils.getJoinFieldValue(element, variableElement, compactSchema))
+                    .beginControlFlow("for(int i=0;i<ids.length;++i)")
+                    .addStatement("$T objectsOfObject = children.get(ids[i])", childrenType);
+            if (ProcessUtils.isCollection(variableElement))
+                loadB.addStatement("if(objectsOfObject != null) objects.get(i).$L = objectsOfObject", fieldName);
+            else
+                loadB.addStatement("if(objectsOfObject != null) objects.get(i).$L = objectsOfObject.get(0)", fieldName);
+            loadB.endControlFlow();
+        }
+        loadB.addStatement("for($T object : objects) (($T) object).$L = true", modelType, ProcessUtils.getModelProxy(element), ProcessUtils.getLoadedFlagName(variableElement));
+        return loadB.build();
+    }
+
+    /**
+     * method of the child cursor helper reading the children of a batch of parents, by parent id.
+     * The join rows are read in their insertion order, which is the order of the lists
+     */
+    protected MethodSpec generateGetForParent(VariableElement variableElement) {
+        String JOIN_NAME = ProcessUtils.getTableName(objectName) + "_" + ProcessUtils.getTableName(variableElement);
+        String CHILD_TABLE = ProcessUtils.getTableName(variableElement);
+        TypeName childType = ProcessUtils.getFieldClass(variableElement);
+        TypeName listOfChildren = ProcessUtils.listOf(childType);
+
+        return MethodSpec.methodBuilder("getFor" + objectName)
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .returns(ParameterizedTypeName.get(ClassName.get(Map.class), ClassName.get(Long.class), listOfChildren))
+                .addParameter(Constants.databaseClassName, "db")
+                .addParameter(TypeName.get(long[].class), "parentIds")
+                .addParameter(ClassName.get(String.class), "variable")
+                .addParameter(Constants.fetchPlanClassName, "plan")
+                .addStatement("$T<$T, $T> children = new $T<>()", ClassName.get(Map.class), ClassName.get(Long.class), listOfChildren, ClassName.get(HashMap.class))
+                .addStatement("$T all = new $T()", listOfChildren, ProcessUtils.arraylistOf(childType))
+                .addStatement("long[] distinctIds = $T.distinct(parentIds)", Constants.batchQueriesClassName)
+                .beginControlFlow("for(int start = 0; start < distinctIds.length; start += $T.BATCH_SIZE)", Constants.batchQueriesClassName)
+                .addStatement("final int end = Math.min(distinctIds.length, start + $T.BATCH_SIZE)", Constants.batchQueriesClassName)
+                .addStatement("final $T query = $S + $T.placeholders(end - start) + $S", ClassName.get(String.class),
+                        "SELECT " + CHILD_TABLE + ".*, " + JOIN_NAME + "." + ProcessUtils.getKeyName(objectName) + " AS _parent_id FROM " + JOIN_NAME + ", " + CHILD_TABLE
+                                + " WHERE " + JOIN_NAME + "." + ProcessUtils.getJoinFieldColumn(compactSchema) + " = ? AND " + CHILD_TABLE + "." + Constants.FIELD_ID + " = " + JOIN_NAME + "." + ProcessUtils.getKeyName(variableElement)
+                                + " AND " + JOIN_NAME + "." + ProcessUtils.getKeyName(objectName) + " IN (",
+                        Constants.batchQueriesClassName, ") ORDER BY " + generateJoinOrder(JOIN_NAME))
+                .addStatement("final String[] args = $T.args(variable, distinctIds, start, end)", Constants.batchQueriesClassName)
+                .addStatement("plan.onQuery(query, args)")
+                .addStatement("$T cursor = db.rawQuery(query, args)", Constants.cursorClassName)
+                .addStatement("int[] indexes = columnIndexes(cursor)")
+                .addStatement("int parentIndex = cursor.getColumnIndex($S)", "_parent_id")
+                .beginControlFlow("while(cursor.moveToNext())")
+                .addStatement("$T child = readRow(cursor, indexes)", childType)
+                .addStatement("$T parentId = cursor.getLong(parentIndex)", ClassName.get(Long.class))
+                .addStatement("$T list = children.get(parentId)", listOfChildren)
+                .beginControlFlow("if(list == null)")
+                .addStatement("list = new $T()", ProcessUtils.arraylistOf(childType))
+                .addStatement("children.put(parentId, list)")
+                .endControlFlow()
+                .addStatement("list.add(child)")
+                .addStatement("all.add(child)")
+                .endControlFlow()
+                .addStatement("cursor.close()")
+                .endControlFlow()
+                .addStatement("loadRelations(db, all, plan)")
+                .addStatement("return children")
+                .build();
+    }
+
+    protected String generateJoinOrder(String joinTable) {
+        if (!compactSchema) {
+            return joinTable + "." + Constants.FIELD_ID;
+        }
+        return joinTable + "." + ProcessUtils.getKeyName(objectName) + ", " + joinTable + "." + Constants.FIELD_POSITION;
+    }
+
+    /**
+     * with a compact schema, a child is appended after the last position of the relation, found in the primary key
+     */
+    protected String generateJoinInsertSql(String joinTable, VariableElement variableElement) {
+        String parentKey = ProcessUtils.getKeyName(objectName);
+        String childKey = ProcessUtils.getKeyName(variableElement);
+        if (!compactSchema) {
+            return "INSERT INTO " + joinTable + " (" + parentKey + ", " + childKey + ", " + Constants.FIELD_NAME + ") VALUES (?, ?, ?)";
+        }
+        return "INSERT INTO " + joinTable + " (" + parentKey + ", " + childKey + ", " + Constants.FIELD_CODE + ", " + Constants.FIELD_POSITION + ") VALUES (?1, ?2, ?3, "
+            + "coalesce((SELECT " + Constants.FIELD_POSITION + " + 1 FROM " + joinTable + " WHERE " + parentKey + " = ?1 AND " + Constants.FIELD_CODE + " = ?3"
+            + " ORDER BY " + Constants.FIELD_POSITION + " DESC LIMIT 1), 0))";
+    }
+
     protected List<MethodSpec> generateUpdateMethod() {
         List<MethodSpec> methodSpecs = new ArrayList<>();
 
@@ -187,17 +421,27 @@ public class CursorHelperGenerator {
         updateB.addStatement(ProcessUtils.getModelId(element, "object", "objectId"));
 
         updateB.beginControlFlow("if(objectId != null)");
-        updateB.addStatement("database.update($S, getValues(object,null), $S, new String[]{String.valueOf(objectId)})", ProcessUtils.getTableName(objectName), Constants.FIELD_ID + " = ?");
+        if (!columns.isEmpty()) {
+            updateB.addStatement("$T statement = $T.getInstance().compileStatement(database, $S)", Constants.statementClassName, Constants.daoClassName, generateUpdateSql());
+            for (int i = 0; i < columns.size(); ++i) {
+                addBindStatement(updateB, columns.get(i), i + 1);
+            }
+            updateB.addStatement("statement.bindLong($L, objectId)", columns.size() + 1);
+            updateB.addStatement("statement.executeUpdateDelete()");
+        }
 
         //for (int i = 0; i < collections.size(); ++i) {
         //    VariableElement variableElement = collections.get(i);
-        //    updateB.addStatement("if(object.$L != null) $T.$L(database,objectId,$S,object.$L)", ProcessUtils.getObjectName(variableElement), Constants.primitiveCursorHelper, ProcessUtils.addPrimitiveCursorHelperFunction(variableElement), ProcessUtils.getObjectName(variableElement), ProcessUtils.getObjectName(variableElement));
+        //    updateB.addStatement("if(object.$L != null) $T.$L(database,$S,objectId,object.$L)", ProcessUtils.getObjectName(variableElement), Constants.primitiveCursorHelper, ProcessUtils.addPrimitiveCursorHelperFunction(variableElement), ProcessUtils.getSideTableName(element, variableElement), ProcessUtils.getObjectName(variableElement));
         //}
 
         updateB.endControlFlow();
 
         for (VariableElement variableElement : otherClassFields) {
-            updateB.addStatement("$T.updateFor$L(database,object.$L, objectId , $S)", ProcessUtils.getFieldCursorHelperClass(variableElement), objectName, ProcessUtils.getObjectName(variableElement), ProcessUtils.getObjectName(variableElement));
+            //a relation never read, @Lazy or left out of the fetch plan, keeps its rows
+            updateB.beginControlFlow("if(!(object instanceof $T) || (($T) object).$L)", ProcessUtils.getModelProxy(element), ProcessUtils.getModelProxy(element), ProcessUtils.getLoadedFlagName(variableElement));
+            updateB.addStatement("$T.updateFor$L(database,object.$L, objectId , $S)", ProcessUtils.getFieldCursorHelperClass(variableElement), objectName, ProcessUtils.getObjectName(variableElement), ProcessUtils.getJoinFieldValue(element, variableElement, compactSchema));
+            updateB.endControlFlow();
 
             String JOINTABLE = ProcessUtils.getTableName(objectName) + "_" + ProcessUtils.getTableName(variableElement);
 
@@ -209,7 +453,7 @@ public class CursorHelperGenerator {
                     .addParameter(ClassName.get(String.class), "variable")
 
                     .beginControlFlow("if(child == null)")
-                    .addStatement("database.delete($S, \"$L = ? AND $L = ?\", new String[]{String.valueOf(parentId), variable})", JOINTABLE, ProcessUtils.getKeyName(objectName), Constants.FIELD_NAME)
+                    .addStatement("deleteFor$L(database, parentId, variable)", objectName)
                     .endControlFlow()
 
                     .beginControlFlow("else");
@@ -237,7 +481,7 @@ public class CursorHelperGenerator {
                     .addParameter(TypeName.LONG, "parentId")
                     .addParameter(ClassName.get(String.class), "variable")
 
-                    .addStatement("database.delete($S, \"$L = ? AND $L = ?\", new String[]{String.valueOf(parentId), variable})", JOINTABLE, ProcessUtils.getKeyName(objectName), Constants.FIELD_NAME)
+                    .addStatement("deleteFor$L(database, parentId, variable)", objectName)
                     .beginControlFlow("if(objects != null)")
                     .beginControlFlow("for($T child : objects)", ProcessUtils.getFieldClass(variableElement));
 
@@ -247,7 +491,7 @@ public class CursorHelperGenerator {
                 updateAllB
                         .beginControlFlow("if(objectId != null)")
                         .addStatement("update(database,child)")
-                        .addStatement("database.insert($S, null, get$LValues(parentId, objectId, variable))", JOINTABLE, JOINTABLE)
+                        .addStatement("insertJoin$L(database, parentId, objectId, variable)", objectName)
                         .endControlFlow()
 
                         .beginControlFlow("else")
@@ -259,7 +503,19 @@ public class CursorHelperGenerator {
                     .endControlFlow()
                     .endControlFlow();
 
-            dependencies.add(new Dependency(ProcessUtils.getFieldClass(variableElement), Arrays.asList(update, updateAllB.build())));
+            MethodSpec deleteFor = MethodSpec.methodBuilder("deleteFor" + objectName)
+                    .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                    .addParameter(Constants.databaseClassName, "database")
+                    .addParameter(TypeName.LONG, "parentId")
+                    .addParameter(ClassName.get(String.class), "variable")
+                    .addStatement("$T statement = $T.getInstance().compileStatement(database, $S)", Constants.statementClassName, Constants.daoClassName,
+                            "DELETE FROM " + JOINTABLE + " WHERE " + ProcessUtils.getKeyName(objectName) + " = ? AND " + ProcessUtils.getJoinFieldColumn(compactSchema) + " = ?")
+                    .addStatement("statement.bindLong(1, parentId)")
+                    .addStatement("statement.bindString(2, variable)")
+                    .addStatement("statement.executeUpdateDelete()")
+                    .build();
+
+            dependencies.add(new Dependency(ProcessUtils.getFieldClass(variableElement), Arrays.asList(update, updateAllB.build(), deleteFor)));
         }
 
         methodSpecs.add(updateB.addStatement("return objectId").build());
@@ -282,14 +538,21 @@ public class CursorHelperGenerator {
                 .returns(TypeName.LONG)
                 .addParameter(Constants.databaseClassName, "database")
                 .addParameter(modelType, "object")
-                .addStatement("long objectId = database.insertWithOnConflict($S, null, getValues(object,null), android.database.sqlite.SQLiteDatabase.CONFLICT_REPLACE)", ProcessUtils.getTableName(objectName));
+                .addStatement("$T statement = $T.getInstance().compileStatement(database, $S)", Constants.statementClassName, Constants.daoClassName, generateInsertSql())
+                .addStatement(ProcessUtils.getModelId(element, "object", "id"))
+                .addStatement("if(id != null && id != 0) statement.bindLong(1, id); else statement.bindNull(1)");
+
+        for (int i = 0; i < columns.size(); ++i) {
+            addBindStatement(insertB, columns.get(i), i + 2);
+        }
+        insertB.addStatement("long objectId = statement.executeInsert()");
 
         Element idField = ProcessUtils.getIdField(element);
         if (idField != null)
             insertB.addStatement("object.$L = objectId", ProcessUtils.getObjectName(idField));
 
         for (VariableElement variableElement : otherClassFields) {
-            insertB.addStatement("$T.insertFor$L(database,object.$L, objectId , $S)", ProcessUtils.getFieldCursorHelperClass(variableElement), objectName, ProcessUtils.getObjectName(variableElement), ProcessUtils.getObjectName(variableElement));
+            insertB.addStatement("$T.insertFor$L(database,object.$L, objectId , $S)", ProcessUtils.getFieldCursorHelperClass(variableElement), objectName, ProcessUtils.getObjectName(variableElement), ProcessUtils.getJoinFieldValue(element, variableElement, compactSchema));
 
             String JOINTABLE = ProcessUtils.getTableName(objectName) + "_" + ProcessUtils.getTableName(variableElement);
 
@@ -302,11 +565,25 @@ public class CursorHelperGenerator {
 
                     .beginControlFlow("if(child != null)")
                     .addStatement("long objectId = insert(database,child)")
-                    .addStatement("database.insert($S, null, get$LValues(parentId, objectId, variable))", JOINTABLE, JOINTABLE)
+                    .addStatement("insertJoin$L(database, parentId, objectId, variable)", objectName)
                     .endControlFlow()
 
                     .build();
 
+            MethodSpec insertJoin = MethodSpec.methodBuilder("insertJoin" + objectName)
+                    .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                    .addParameter(Constants.databaseClassName, "database")
+                    .addParameter(TypeName.LONG, "parentId")
+                    .addParameter(TypeName.LONG, "objectId")
+                    .addParameter(ClassName.get(String.class), "variable")
+                    .addStatement("$T statement = $T.getInstance().compileStatement(database, $S)", Constants.statementClassName, Constants.daoClassName,
+                            generateJoinInsertSql(JOINTABLE, variableElement))
+                    .addStatement("statement.bindLong(1, parentId)")
+                    .addStatement("statement.bindLong(2, objectId)")
+                    .addStatement("statement.bindString(3, variable)")
+                    .addStatement("statement.executeInsert()")
+                    .build();
+
             MethodSpec insertAll = MethodSpec.methodBuilder("insertFor" + objectName)
                     .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
                     .addParameter(Constants.databaseClassName, "database")
@@ -331,15 +608,15 @@ public class CursorHelperGenerator {
                     .addStatement("$T values = new $T()", Constants.contentValuesClassName, Constants.contentValuesClassName)
                     .addStatement("values.put($S,objectId)", ProcessUtils.getKeyName(this.objectName))
                     .addStatement("values.put($S,secondObjectId)", ProcessUtils.getKeyName(variableElement))
-                    .addStatement("values.put($S,name)", Constants.FIELD_NAME)
+                    .addStatement("values.put($S,name)", ProcessUtils.getJoinFieldColumn(compactSchema))
                     .addStatement("return values").build();
 
-            dependencies.add(new Dependency(ProcessUtils.getFieldClass(variableElement), Arrays.asList(insert, insertAll, getTABLE_NAMEvalues)));
+            dependencies.add(new Dependency(ProcessUtils.getFieldClass(variableElement), Arrays.asList(insert, insertAll, insertJoin, getTABLE_NAMEvalues)));
         }
 
         for (int i = 0; i < collections.size(); ++i) {
             VariableElement variableElement = collections.get(i);
-            insertB.addStatement("if(object.$L != null) $T.$L(database,objectId,$S,object.$L)", ProcessUtils.getObjectName(variableElement), Constants.primitiveCursorHelper, ProcessUtils.addPrimitiveCursorHelperFunction(variableElement), ProcessUtils.getObjectName(variableElement), ProcessUtils.getObjectName(variableElement));
+            insertB.addStatement("if(object.$L != null) $T.$L(database,$S,objectId,object.$L)", ProcessUtils.getObjectName(variableElement), Constants.primitiveCursorHelper, ProcessUtils.addPrimitiveCursorHelperFunction(variableElement), ProcessUtils.getSideTableName(element, variableElement), ProcessUtils.getObjectName(variableElement));
         }
 
         methodSpecs.add(insertB.addStatement("return objectId").build());
@@ -354,6 +631,62 @@ public class CursorHelperGenerator {
         return methodSpecs;
     }
 
+    protected String generateInsertSql() {
+        StringBuilder names = new StringBuilder(Constants.FIELD_ID);
+        StringBuilder values = new StringBuilder("?");
+        for (VariableElement variableElement : columns) {
+            names.append(", ").append(variableElement.getSimpleName());
+            values.append(", ?");
+        }
+        return "INSERT OR REPLACE INTO " + ProcessUtils.getTableName(objectName) + " (" + names + ") VALUES (" + values + ")";
+    }
+
+    protected String generateUpdateSql() {
+        StringBuilder stringBuilder = new StringBuilder("UPDATE ").append(ProcessUtils.getTableName(objectName)).append(" SET ");
+        for (int i = 0; i < columns.size(); ++i) {
+            if (i > 0) {
+                stringBuilder.append(", ");
+            }
+            stringBuilder.append(columns.get(i).getSimpleName()).append(" = ?");
+        }
+        return stringBuilder.append(" WHERE ").append(Constants.FIELD_ID).append(" = ?").toString();
+    }
+
+    //binds object.field at the given index of the local "statement"
+    protected void addBindStatement(MethodSpec.Builder builder, VariableElement variableElement, int index) {
+        String field = "object." + variableElement.getSimpleName();
+        TypeName typeName = ProcessUtils.getFieldClass(variableElement);
+
+        if (ProcessUtils.isPacked(variableElement)) {
+            builder.addStatement("if($L != null) statement.bindBlob($L, $T.$L($L)); else statement.bindNull($L)",
+                    field, index, Constants.packedCollectionsClassName, ProcessUtils.getPackFunction(variableElement), field, index);
+            return;
+        }
+
+        if (ProcessUtils.isDate(variableElement)) {
+            builder.addStatement("if($L != null) statement.bindString($L, new $T($T.DATE_FORMAT).format($L)); else statement.bindNull($L)",
+                    field, index, Constants.simpleDateFormatClassName, Constants.daoClassName, field, index);
+            return;
+        }
+
+        String bind;
+        if (ClassName.get(String.class).equals(typeName)) {
+            bind = "statement.bindString($L, $L)";
+        } else if (typeName == TypeName.BOOLEAN) {
+            bind = "statement.bindLong($L, $L ? 1 : 0)";
+        } else if (typeName == TypeName.FLOAT || typeName == TypeName.DOUBLE) {
+            bind = "statement.bindDouble($L, $L)";
+        } else {
+            bind = "statement.bindLong($L, $L)";
+        }
+
+        if (TypeName.get(variableElement.asType()).isPrimitive()) {
+            builder.addStatement(bind, index, field);
+        } else {
+            builder.addStatement("if($L == null) statement.bindNull($L); else " + bind, field, index, index, field);
+        }
+    }
+
     public List getDependencies() {
         return dependencies;
     }
@@ -1,11 +1,13 @@
 package fr.xebia.android.freezer.generator;
 
 import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
 import com.squareup.javapoet.MethodSpec;
 import com.squareup.javapoet.TypeName;
 import com.squareup.javapoet.TypeSpec;
 import fr.xebia.android.freezer.Constants;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
@@ -22,12 +24,41 @@ public class DatabaseHelperGenerator {
 
     List<ClassName> daos;
     Map<Integer,Element> migrators;
+    List<String> sideTables;
+    List<String> compactJoinTables;
 
-    public DatabaseHelperGenerator(String fileName, int version, List<ClassName> daos, Map<Integer,Element> migrators) {
+    public DatabaseHelperGenerator(String fileName, int version, List<ClassName> daos, Map<Integer,Element> migrators, List<String> sideTables, List<String> compactJoinTables) {
         this.fileName = fileName;
         this.version = version;
         this.daos = daos;
         this.migrators = migrators;
+        this.sideTables = sideTables;
+        this.compactJoinTables = compactJoinTables;
+    }
+
+    protected CodeBlock stringArray(List<String> values) {
+        CodeBlock.Builder builder = CodeBlock.builder().add("new $T[]{", ClassName.get(String.class));
+        for (int i = 0; i < values.size(); ++i) {
+            builder.add(i == 0 ? "$S" : ", $S", values.get(i));
+        }
+        return builder.add("}").build();
+    }
+
+    protected void addIndexes(MethodSpec.Builder method, boolean upgrade) {
+        for (ClassName owner : daos) {
+            if (!upgrade) {
+                method.addStatement("for($T s : $T.indexes()) database.execSQL(s)", ClassName.get(String.class), owner);
+            } else {
+                //a join table of a model added without migration does not exist, it must not fail the upgrade
+                method.beginControlFlow("for($T s : $T.indexes())", ClassName.get(String.class), owner)
+                        .beginControlFlow("try")
+                        .addStatement("database.execSQL(s)")
+                        .nextControlFlow("catch ($T e)", ClassName.get("android.database.sqlite", "SQLiteException"))
+                        .addStatement("$T.w($S, e.getMessage())", ClassName.get("android.util", "Log"), Constants.DATABASE_HELPER_CLASS_NAME)
+                        .endControlFlow()
+                        .endControlFlow();
+            }
+        }
     }
 
     public TypeSpec generate() {
@@ -38,7 +69,7 @@ public class DatabaseHelperGenerator {
         for (ClassName dao : daos)
             onCreate.addStatement("for($T s : $T.create()) database.execSQL(s)", ClassName.get(String.class), dao);
 
-        onCreate.addStatement("for($T s : $T.create()) database.execSQL(s)", ClassName.get(String.class), ClassName.get(Constants.DAO_PACKAGE, Constants.PRIMITIVE_CURSOR_HELPER));
+        addIndexes(onCreate, false);
 
         MethodSpec.Builder onUpgrade = MethodSpec.methodBuilder("onUpgrade")
                 .addModifiers(Modifier.PUBLIC)
@@ -60,6 +91,34 @@ public class DatabaseHelperGenerator {
                     .endControlFlow();
         }
 
+        //databases created before these indexes existed get them once migrated, the tables a migration created too
+        addIndexes(onUpgrade, true);
+
+        //the collections of primitives were stored in tables shared by all the models, their values move to the side tables.
+        //It does not depend on the version of the application, an existing database moves them the first time this one opens it
+        MethodSpec.Builder onOpen = MethodSpec.methodBuilder("onOpen")
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PUBLIC)
+                .addParameter(Constants.databaseClassName, "database")
+                .addStatement("super.onOpen(database)")
+                .addStatement("if(database.isReadOnly()) return")
+                .addStatement("$T freezerMigrator = new $T(database)", Constants.migrator, Constants.migrator)
+                //a read of sqlite_master first, the transaction would lock the database for writing each time it opens
+                .addStatement("if(!freezerMigrator.needsUpgrade($L, $L, $L)) return", stringArray(sideTables),
+                        stringArray(Arrays.asList(Constants.PRIMITIVE_TABLES)), stringArray(compactJoinTables))
+                .addStatement("database.beginTransaction()")
+                .beginControlFlow("try");
+        for (ClassName dao : daos) {
+            onOpen.addStatement("$T.upgrade(freezerMigrator)", dao);
+        }
+        for (String sharedTable : Constants.PRIMITIVE_TABLES) {
+            onOpen.addStatement("freezerMigrator.dropTableIfExists($S)", sharedTable);
+        }
+        onOpen.addStatement("database.setTransactionSuccessful()")
+                .nextControlFlow("finally")
+                .addStatement("database.endTransaction()")
+                .endControlFlow();
+
         return TypeSpec.classBuilder(Constants.DATABASE_HELPER_CLASS_NAME)
                 .superclass(Constants.sqliteOpenHelperClassName)
                 .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
@@ -72,6 +131,7 @@ public class DatabaseHelperGenerator {
 
                 .addMethod(onCreate.build())
                 .addMethod(onUpgrade.build())
+                .addMethod(onOpen.build())
                 .build();
     }
 
@@ -52,7 +52,7 @@ public class EnumColumnGenerator {
             String fieldSqlName = ProcessUtils.getObjectName(variableElement);
             if (ProcessUtils.isIdField(variableElement))
                 fieldSqlName = Constants.FIELD_ID;
-            boolean isPrimivive = ProcessUtils.isPrimitive(variableElement);
+            boolean isPrimivive = ProcessUtils.isPrimitive(variableElement) || ProcessUtils.isPacked(variableElement);
             enumBuilder.addEnumConstant(ProcessUtils.getObjectName(variableElement), TypeSpec.anonymousClassBuilder("$S, $L", fieldSqlName, isPrimivive)
                     .build());
         }
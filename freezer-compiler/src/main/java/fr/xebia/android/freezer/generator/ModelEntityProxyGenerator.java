@@ -1,12 +1,18 @@
 package fr.xebia.android.freezer.generator;
 
 import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
 import com.squareup.javapoet.MethodSpec;
 import com.squareup.javapoet.TypeName;
 import com.squareup.javapoet.TypeSpec;
 
+import java.util.Collections;
+import java.util.List;
+
 import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.Modifier;
+import javax.lang.model.element.VariableElement;
 
 import fr.xebia.android.freezer.Constants;
 import fr.xebia.android.freezer.ProcessUtils;
@@ -64,7 +70,60 @@ public class ModelEntityProxyGenerator {
                         .addStatement("this.$L = id", idFieldName)
                         .build());
 
+        List<VariableElement> relations = ProcessUtils.getNonPrimitiveClassFields(element);
+        relations.addAll(ProcessUtils.getCollectionsOfPrimitiveFields(element));
+        if (ProcessUtils.hasLazyFields(element, relations)) {
+            builder.addField(ClassName.get(Constants.DAO_PACKAGE, Constants.QUERY_LOGGER), Constants.LAZY_LOGGER);
+        }
+        for (VariableElement variableElement : relations) {
+            addRelationAccessors(builder, variableElement);
+        }
+
         return builder.build();
     }
 
+    /**
+     * each relation has a flag set once it is loaded, the update of the CursorHelper does not write an unloaded one.
+     * The setter marks it loaded so the value set is kept, the getter of a @Lazy one loads it on its first call,
+     * with the logger of the query which read the object
+     */
+    private void addRelationAccessors(TypeSpec.Builder builder, VariableElement variableElement) {
+        String loaded = ProcessUtils.getLoadedFlagName(variableElement);
+        TypeName modelType = TypeName.get(element.asType());
+
+        builder.addField(TypeName.BOOLEAN, loaded);
+
+        ExecutableElement setter = ProcessUtils.getSetter(element, variableElement);
+        if (setter != null) {
+            builder.addMethod(MethodSpec.methodBuilder(setter.getSimpleName().toString())
+                    .addAnnotation(Override.class)
+                    .addModifiers(Modifier.PUBLIC)
+                    .addParameter(TypeName.get(variableElement.asType()), "value")
+                    .addStatement("$L = true", loaded)
+                    .addStatement("super.$L(value)", setter.getSimpleName())
+                    .build());
+        }
+
+        if (!ProcessUtils.isLazy(element, variableElement)) {
+            return;
+        }
+        CodeBlock load = CodeBlock.builder().addStatement("$T.$L(db, $T.<$T>singletonList(this), new $T(null, $T.UNLIMITED, $L))", ProcessUtils.getCursorHelper(element),
+                ProcessUtils.getLoadMethodName(variableElement), Collections.class, modelType, Constants.fetchPlanClassName, Constants.fetchPlanClassName, Constants.LAZY_LOGGER).build();
+        ExecutableElement getter = ProcessUtils.getGetter(element, variableElement);
+        builder.addMethod(MethodSpec.methodBuilder(getter.getSimpleName().toString())
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PUBLIC)
+                .returns(TypeName.get(getter.getReturnType()))
+                .beginControlFlow("if(!$L)", loaded)
+                .addStatement("$T db = $T.getInstance().acquireReadableDatabase()", Constants.databaseClassName, Constants.daoClassName)
+                .beginControlFlow("try")
+                .addCode(load)
+                .nextControlFlow("finally")
+                .addStatement("$T.getInstance().releaseReadableDatabase(db)", Constants.daoClassName)
+                .endControlFlow()
+                .endControlFlow()
+                .addStatement("return super.$L()", getter.getSimpleName())
+                .build());
+    }
+
 }
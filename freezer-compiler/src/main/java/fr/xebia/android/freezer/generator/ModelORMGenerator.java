@@ -2,16 +2,23 @@ package fr.xebia.android.freezer.generator;
 
 import com.squareup.javapoet.ArrayTypeName;
 import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.FieldSpec;
 import com.squareup.javapoet.MethodSpec;
 import com.squareup.javapoet.ParameterizedTypeName;
 import com.squareup.javapoet.TypeName;
 import com.squareup.javapoet.TypeSpec;
+import com.squareup.javapoet.WildcardTypeName;
 
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import javax.lang.model.element.Element;
@@ -20,9 +27,12 @@ import javax.lang.model.element.VariableElement;
 
 import fr.xebia.android.freezer.Constants;
 import fr.xebia.android.freezer.ProcessUtils;
+import fr.xebia.android.freezer.annotations.Index;
+import fr.xebia.android.freezer.annotations.Indices;
 import io.reactivex.Observable;
 import io.reactivex.ObservableEmitter;
 import io.reactivex.ObservableOnSubscribe;
+import io.reactivex.functions.Consumer;
 
 /**
  * Created by florentchampigny on 08/01/2016.
@@ -50,9 +60,18 @@ public class ModelORMGenerator {
     List<VariableElement> fields;
     List<VariableElement> otherClassFields;
     List<VariableElement> collections;
+    List<VariableElement> fullTextFields;
 
-    public ModelORMGenerator(Element element) {
+    boolean compactSchema;
+    boolean autoincrement;
+    //join tables of other models holding this one as a child
+    Set<String> parentJoinTables;
+
+    public ModelORMGenerator(Element element, boolean compactSchema, boolean autoincrement, Set<String> parentJoinTables) {
         this.element = element;
+        this.compactSchema = compactSchema;
+        this.autoincrement = autoincrement;
+        this.parentJoinTables = parentJoinTables;
         this.modelName = ProcessUtils.getObjectName(element);
         this.modelPackage = ProcessUtils.getObjectPackage(element);
 
@@ -67,6 +86,7 @@ public class ModelORMGenerator {
         this.fields = ProcessUtils.getPrimitiveFields(element);
         this.otherClassFields = ProcessUtils.getNonPrimitiveClassFields(element);
         this.collections = ProcessUtils.getCollectionsOfPrimitiveFields(element);
+        this.fullTextFields = ProcessUtils.getFullTextFields(element);
 
         this.fieldId = ProcessUtils.getIdField(element);
     }
@@ -89,6 +109,8 @@ public class ModelORMGenerator {
             .superclass(Constants.queryBuilderClassName)
 
             .addField(ProcessUtils.listOf(enumColums), "fields")
+            .addField(ParameterizedTypeName.get(ClassName.get(Set.class), ClassName.get(String.class)), "relations")
+            .addField(FieldSpec.builder(TypeName.INT, "maxDepth").initializer("$T.UNLIMITED", Constants.fetchPlanClassName).build())
 
             .addMethod(MethodSpec.constructorBuilder()
                 .addModifiers(Modifier.PUBLIC)
@@ -143,12 +165,100 @@ public class ModelORMGenerator {
                 .addStatement("return this")
                 .build())
 
+            .addMethod(MethodSpec.methodBuilder("after")
+                .returns(queryBuilderClassName)
+                .addModifiers(Modifier.PUBLIC)
+                .addParameter(modelClassName, "object")
+                .addStatement("$T id = object instanceof $T ? (($T)object).$L(): null", ClassName.get(Long.class), Constants.entityProxyClass, Constants.entityProxyClass, Constants.MODEL_ENTITY_PROXY_GET_ID_METHOD)
+                .addStatement("if(id == null) throw new $T($S)", ClassName.get(IllegalArgumentException.class), "object has not been read from the database")
+                .addStatement("return afterId(id)")
+                .build())
+
+            .addMethod(MethodSpec.methodBuilder("afterId")
+                .returns(queryBuilderClassName)
+                .addModifiers(Modifier.PUBLIC)
+                .addParameter(TypeName.LONG, "id")
+                .addStatement("super.seekAfter($S, id)", TABLE_NAME)
+                .addStatement("return this")
+                .build())
+
             .addMethod(MethodSpec.methodBuilder("asList")
                 .returns(listObjectsClassName)
                 .addModifiers(Modifier.PUBLIC)
                 .addStatement("return execute()")
                 .build())
 
+            .addMethod(MethodSpec.methodBuilder("ids")
+                .returns(TypeName.get(long[].class))
+                .addModifiers(Modifier.PUBLIC)
+                .addStatement("return pluckLongs($S, 0)", String.format("select distinct %s.%s from %s ", TABLE_NAME, Constants.FIELD_ID, TABLE_NAME))
+                .build())
+
+            .addMethod(MethodSpec.methodBuilder("pluckLong")
+                .returns(ArrayTypeName.of(TypeName.LONG))
+                .addModifiers(Modifier.PUBLIC)
+                .addParameter(enumColums, "column")
+                .addStatement("if(!column.isPrimitive()) throw new $T(column.getName() + $S)", ClassName.get(IllegalArgumentException.class), " is not a column")
+                .addStatement("return pluckLongs($S + column.getName() + $S, 1)", "select distinct " + TABLE_NAME + "." + Constants.FIELD_ID + ", " + TABLE_NAME + ".", String.format(" from %s ", TABLE_NAME))
+                .build())
+
+            .addMethod(MethodSpec.methodBuilder("pluckDouble")
+                .returns(ArrayTypeName.of(TypeName.DOUBLE))
+                .addModifiers(Modifier.PUBLIC)
+                .addParameter(enumColums, "column")
+                .addStatement("if(!column.isPrimitive()) throw new $T(column.getName() + $S)", ClassName.get(IllegalArgumentException.class), " is not a column")
+                .addStatement("return pluckDoubles($S + column.getName() + $S, 1)", "select distinct " + TABLE_NAME + "." + Constants.FIELD_ID + ", " + TABLE_NAME + ".", String.format(" from %s ", TABLE_NAME))
+                .build())
+
+            .addMethod(MethodSpec.methodBuilder("pluckString")
+                .returns(ArrayTypeName.of(ClassName.get(String.class)))
+                .addModifiers(Modifier.PUBLIC)
+                .addParameter(enumColums, "column")
+                .addStatement("if(!column.isPrimitive()) throw new $T(column.getName() + $S)", ClassName.get(IllegalArgumentException.class), " is not a column")
+                .addStatement("return pluckStrings($S + column.getName() + $S, 1)", "select distinct " + TABLE_NAME + "." + Constants.FIELD_ID + ", " + TABLE_NAME + ".", String.format(" from %s ", TABLE_NAME))
+                .build())
+
+            .addMethod(MethodSpec.methodBuilder("asLazyList")
+                .returns(ParameterizedTypeName.get(Constants.lazyListClassName, modelClassName))
+                .addModifiers(Modifier.PUBLIC)
+                .addStatement("return asLazyList($T.DEFAULT_PAGE_SIZE)", Constants.lazyListClassName)
+                .build())
+
+            .addMethod(MethodSpec.methodBuilder("asLazyList")
+                .returns(ParameterizedTypeName.get(Constants.lazyListClassName, modelClassName))
+                .addModifiers(Modifier.PUBLIC)
+                .addParameter(TypeName.INT, "pageSize")
+                .addStatement("final $T plan = fetchPlan()", Constants.fetchPlanClassName)
+                .addStatement("return new $T<$T>(ids(), pageSize) {\n"
+                    + "@$T\n"
+                    + "protected $T load(long[] ids) {\n"
+                    + "$T db = $T.getInstance().acquireReadableDatabase();\n"
+                    + "try {\n"
+                    + "$T cursor = db.rawQuery($S + $T.placeholders(ids.length) + \")\", $T.args(ids, 0, ids.length));\n"
+                    + "$T objects = $T.get(cursor, db, plan);\n"
+                    + "cursor.close();\n"
+                    + "return objects;\n"
+                    + "} finally {\n"
+                    + "$T.getInstance().releaseReadableDatabase(db);\n"
+                    + "}\n"
+                    + "}\n"
+                    + "@$T\n"
+                    + "protected long idOf($T object) {\n"
+                    + "return (($T)object).$L();\n"
+                    + "}\n"
+                    + "}",
+                    Constants.lazyListClassName, modelClassName,
+                    ClassName.get(Override.class),
+                    listObjectsClassName,
+                    Constants.databaseClassName, Constants.daoClassName,
+                    Constants.cursorClassName, String.format("select * from %s where %s in (", TABLE_NAME, Constants.FIELD_ID), Constants.batchQueriesClassName, Constants.batchQueriesClassName,
+                    listObjectsClassName, modelCursorHelperClassName,
+                    Constants.daoClassName,
+                    ClassName.get(Override.class),
+                    modelClassName,
+                    Constants.entityProxyClass, Constants.MODEL_ENTITY_PROXY_GET_ID_METHOD)
+                .build())
+
             .addMethod(MethodSpec.methodBuilder("asObservable")
                 .returns(ParameterizedTypeName.get(ClassName.get(Observable.class), listObjectsClassName))
                 .addModifiers(Modifier.PUBLIC)
@@ -182,11 +292,39 @@ public class ModelORMGenerator {
             .addMethod(MethodSpec.methodBuilder("first")
                 .returns(modelClassName)
                 .addModifiers(Modifier.PUBLIC)
-                .addStatement("$T objects = asList()", listObjectsClassName)
+                .addStatement("$T objects = executeAtMost(1)", listObjectsClassName)
+                .addStatement("if(objects.isEmpty()) return null")
+                .addStatement("else return objects.get(0)")
+                .build())
+
+            .addMethod(MethodSpec.methodBuilder("single")
+                .addJavadoc("@return the only object matching the query, null if there is none\n")
+                .addJavadoc("@throws IllegalStateException if several objects match\n")
+                .returns(modelClassName)
+                .addModifiers(Modifier.PUBLIC)
+                .addStatement("$T objects = executeAtMost(2)", listObjectsClassName)
+                .addStatement("if(objects.size() > 1) throw new $T($S)", ClassName.get(IllegalStateException.class), "more than one result")
                 .addStatement("if(objects.isEmpty()) return null")
                 .addStatement("else return objects.get(0)")
                 .build())
 
+            .addMethod(MethodSpec.methodBuilder("exists")
+                .returns(TypeName.BOOLEAN)
+                .addModifiers(Modifier.PUBLIC)
+                .addStatement("$T db = acquireQueryDatabase()", Constants.databaseClassName)
+                .beginControlFlow("try")
+                .addStatement("return simpleQueryForLong(db, $S + buildQuery($S) + $S, constructArgs()) != 0", "select exists(", String.format("select 1 from %s ", TABLE_NAME), ")")
+                .nextControlFlow("finally")
+                .addStatement("releaseQueryDatabase(db)")
+                .endControlFlow()
+                .build())
+
+            .addMethod(MethodSpec.methodBuilder("any")
+                .returns(TypeName.BOOLEAN)
+                .addModifiers(Modifier.PUBLIC)
+                .addStatement("return exists()")
+                .build())
+
             .addMethod(MethodSpec.methodBuilder("sortAsc")
                 .returns(queryBuilderClassName)
                 .addModifiers(Modifier.PUBLIC)
@@ -207,74 +345,111 @@ public class ModelORMGenerator {
                 .returns(TypeName.FLOAT)
                 .addParameter(enumColums, "column")
                 .addModifiers(Modifier.PUBLIC)
-                .addStatement("$T db = $T.getInstance().open().getDatabase()", Constants.databaseClassName, Constants.daoClassName)
-                .addStatement("$T cursor = db.rawQuery($S + column.getName() + $S + constructQuery(), constructArgs())", Constants.cursorClassName, String.format("select sum(%s.", TABLE_NAME), String.format(") from %s ", TABLE_NAME))
-                .addStatement("cursor.moveToNext()")
-                .addStatement("float value = cursor.getFloat(0)")
-
-                .addStatement("cursor.close()")
-                .addStatement("$T.getInstance().close()", Constants.daoClassName)
-
-                .addStatement("return value")
+                .addStatement("$T db = acquireQueryDatabase()", Constants.databaseClassName)
+                .beginControlFlow("try")
+                .addStatement("return simpleQueryForFloat(db, buildQuery($S + column.getName() + $S), constructArgs())", String.format("select sum(%s.", TABLE_NAME), String.format(") from %s ", TABLE_NAME))
+                .nextControlFlow("finally")
+                .addStatement("releaseQueryDatabase(db)")
+                .endControlFlow()
                 .build())
 
             .addMethod(MethodSpec.methodBuilder("min")
                 .returns(TypeName.FLOAT)
                 .addParameter(enumColums, "column")
                 .addModifiers(Modifier.PUBLIC)
-                .addStatement("$T db = $T.getInstance().open().getDatabase()", Constants.databaseClassName, Constants.daoClassName)
-                .addStatement("$T cursor = db.rawQuery($S + column.getName() + $S + constructQuery(), constructArgs())", Constants.cursorClassName, String.format("select min(%s.", TABLE_NAME), String.format(") from %s ", TABLE_NAME))
-                .addStatement("cursor.moveToNext()")
-                .addStatement("float value = cursor.getFloat(0)")
-
-                .addStatement("cursor.close()")
-                .addStatement("$T.getInstance().close()", Constants.daoClassName)
-
-                .addStatement("return value")
+                .addStatement("$T db = acquireQueryDatabase()", Constants.databaseClassName)
+                .beginControlFlow("try")
+                .addStatement("return simpleQueryForFloat(db, buildQuery($S + column.getName() + $S), constructArgs())", String.format("select min(%s.", TABLE_NAME), String.format(") from %s ", TABLE_NAME))
+                .nextControlFlow("finally")
+                .addStatement("releaseQueryDatabase(db)")
+                .endControlFlow()
                 .build())
 
             .addMethod(MethodSpec.methodBuilder("max")
                 .returns(TypeName.FLOAT)
                 .addParameter(enumColums, "column")
                 .addModifiers(Modifier.PUBLIC)
-                .addStatement("$T db = $T.getInstance().open().getDatabase()", Constants.databaseClassName, Constants.daoClassName)
-                .addStatement("$T cursor = db.rawQuery($S + column.getName() + $S + constructQuery(), constructArgs())", Constants.cursorClassName, String.format("select max(%s.", TABLE_NAME), String.format(") from %s ", TABLE_NAME))
-                .addStatement("cursor.moveToNext()")
-                .addStatement("float value = cursor.getFloat(0)")
-
-                .addStatement("cursor.close()")
-                .addStatement("$T.getInstance().close()", Constants.daoClassName)
-
-                .addStatement("return value")
+                .addStatement("$T db = acquireQueryDatabase()", Constants.databaseClassName)
+                .beginControlFlow("try")
+                .addStatement("return simpleQueryForFloat(db, buildQuery($S + column.getName() + $S), constructArgs())", String.format("select max(%s.", TABLE_NAME), String.format(") from %s ", TABLE_NAME))
+                .nextControlFlow("finally")
+                .addStatement("releaseQueryDatabase(db)")
+                .endControlFlow()
                 .build())
 
             .addMethod(MethodSpec.methodBuilder("average")
                 .returns(TypeName.FLOAT)
                 .addParameter(enumColums, "column")
                 .addModifiers(Modifier.PUBLIC)
-                .addStatement("$T db = $T.getInstance().open().getDatabase()", Constants.databaseClassName, Constants.daoClassName)
-                .addStatement("$T cursor = db.rawQuery($S + column.getName() + $S + constructQuery(), constructArgs())", Constants.cursorClassName, String.format("select avg(%s.", TABLE_NAME), String.format(") from %s ", TABLE_NAME))
-                .addStatement("cursor.moveToNext()")
-                .addStatement("float value = cursor.getFloat(0)")
-
-                .addStatement("cursor.close()")
-                .addStatement("$T.getInstance().close()", Constants.daoClassName)
-                .addStatement("return value")
-
+                .addStatement("$T db = acquireQueryDatabase()", Constants.databaseClassName)
+                .beginControlFlow("try")
+                .addStatement("return simpleQueryForFloat(db, buildQuery($S + column.getName() + $S), constructArgs())", String.format("select avg(%s.", TABLE_NAME), String.format(") from %s ", TABLE_NAME))
+                .nextControlFlow("finally")
+                .addStatement("releaseQueryDatabase(db)")
+                .endControlFlow()
                 .build())
 
             .addMethod(MethodSpec.methodBuilder("count")
                 .returns(TypeName.INT)
                 .addModifiers(Modifier.PUBLIC)
-                .addStatement("$T db = $T.getInstance().open().getDatabase()", Constants.databaseClassName, Constants.daoClassName)
-                .addStatement("$T cursor = db.rawQuery($S + constructQuery(), constructArgs())", Constants.cursorClassName, String.format("select count(distinct(%s.%s)) from %s ", TABLE_NAME, Constants.FIELD_ID, TABLE_NAME))
-                .addStatement("cursor.moveToNext()")
-                .addStatement("int value = cursor.getInt(0)")
+                .addStatement("$T db = acquireQueryDatabase()", Constants.databaseClassName)
+                .beginControlFlow("try")
+                .addStatement("return (int) simpleQueryForLong(db, buildQuery($S), constructArgs())", String.format("select count(distinct(%s.%s)) from %s ", TABLE_NAME, Constants.FIELD_ID, TABLE_NAME))
+                .nextControlFlow("finally")
+                .addStatement("releaseQueryDatabase(db)")
+                .endControlFlow()
+                .build())
 
-                .addStatement("cursor.close()")
-                .addStatement("$T.getInstance().close()", Constants.daoClassName)
-                .addStatement("return value")
+            .addMethod(MethodSpec.methodBuilder("aggregate")
+                .returns(ParameterizedTypeName.get(Constants.aggregateClassName, enumColums))
+                .addModifiers(Modifier.PUBLIC)
+                .addStatement("return new $T<$T>($S) {\n"
+                    + "@$T\n"
+                    + "protected $T columnName($T column) {\n"
+                    + "return column.getName();\n"
+                    + "}\n"
+                    + "@$T\n"
+                    + "protected $T query($T columns, $T groupBy) {\n"
+                    + "return aggregateRows($S + columns + $S, groupBy);\n"
+                    + "}\n"
+                    + "}",
+                    Constants.aggregateClassName, enumColums, TABLE_NAME,
+                    ClassName.get(Override.class),
+                    ClassName.get(String.class), enumColums,
+                    ClassName.get(Override.class),
+                    ProcessUtils.listOf(Constants.aggregateRowClassName), ClassName.get(String.class), ClassName.get(String.class),
+                    "select ", String.format(" from %s ", TABLE_NAME))
+                .build())
 
+            .addMethod(MethodSpec.methodBuilder("delete")
+                .addJavadoc("Deletes the matching rows with their relation rows, the related objects themselves are kept.\n")
+                .addJavadoc("@return the number of rows deleted\n")
+                .returns(TypeName.INT)
+                .addModifiers(Modifier.PUBLIC)
+                .addStatement("return deleteRows($S, $L)", TABLE_NAME, generateRelationCleanupsArray())
+                .build())
+
+            .addMethod(MethodSpec.methodBuilder("update")
+                .returns(ParameterizedTypeName.get(Constants.updateClassName, enumColums))
+                .addModifiers(Modifier.PUBLIC)
+                .addStatement("return new $T<$T>() {\n"
+                    + "@$T\n"
+                    + "protected $T columnName($T column) {\n"
+                    + "if(!column.isPrimitive()) throw new $T(column.getName() + $S);\n"
+                    + "return column.getName();\n"
+                    + "}\n"
+                    + "@$T\n"
+                    + "protected int update($T sets, $T args) {\n"
+                    + "return updateRows($S, sets, args);\n"
+                    + "}\n"
+                    + "}",
+                    Constants.updateClassName, enumColums,
+                    ClassName.get(Override.class),
+                    ClassName.get(String.class), enumColums,
+                    ClassName.get(IllegalArgumentException.class), " is not a column",
+                    ClassName.get(Override.class),
+                    ClassName.get(String.class), ProcessUtils.listOf(String.class),
+                    TABLE_NAME)
                 .build())
 
             .addMethod(MethodSpec.methodBuilder("fields")
@@ -307,15 +482,115 @@ public class ModelORMGenerator {
 
                 .build())
 
-            .addMethod(MethodSpec.methodBuilder("execute")
-                .returns(listObjectsClassName)
+            .addMethod(MethodSpec.methodBuilder("with")
+                .addJavadoc("Reads only these relations and collections with the objects, the others are left null.\n")
+                .returns(queryBuilderClassName)
+                .addModifiers(Modifier.PUBLIC)
+                .addParameter(ArrayTypeName.of(enumColums), "relations")
+                .varargs()
+                .addStatement("if(this.relations == null) this.relations = new $T<>()", ClassName.get(HashSet.class))
+                .beginControlFlow("for($T relation : relations)", enumColums)
+                .addStatement("if(relation.isPrimitive()) throw new $T(relation.getName() + $S)", ClassName.get(IllegalArgumentException.class), " is not a relation")
+                .addStatement("this.relations.add(relation.getName())")
+                .endControlFlow()
+                .addStatement("return this")
+                .build())
+
+            .addMethod(MethodSpec.methodBuilder("withoutRelations")
+                .returns(queryBuilderClassName)
+                .addModifiers(Modifier.PUBLIC)
+                .addStatement("return maxDepth(0)")
+                .build())
+
+            .addMethod(MethodSpec.methodBuilder("maxDepth")
+                .addJavadoc("@param depth levels of relations read with the objects, 1 reads their relations but not the relations of these ones\n")
+                .returns(queryBuilderClassName)
+                .addModifiers(Modifier.PUBLIC)
+                .addParameter(TypeName.INT, "depth")
+                .addStatement("if(depth < 0) throw new $T($S)", ClassName.get(IllegalArgumentException.class), "depth must be positive")
+                .addStatement("this.maxDepth = depth")
+                .addStatement("return this")
+                .build())
+
+            .addMethod(MethodSpec.methodBuilder("fetchPlan")
+                .addJavadoc("the relations chosen by with(), or else the ones selected by fields(), read with the logger of this query\n")
+                .returns(Constants.fetchPlanClassName)
                 .addModifiers(Modifier.PRIVATE)
-                .addStatement("$T db = $T.getInstance().open().getDatabase()", Constants.databaseClassName, Constants.daoClassName)
-                .addStatement("$T stringBuilder =  new $T()", Constants.stringBuilderClassName, Constants.stringBuilderClassName)
-                .addStatement("stringBuilder.append($S)", "select distinct ")
-                .addStatement("if(fields == null) stringBuilder.append(\"$L.* \")", TABLE_NAME)
+                .addStatement("$T<$T> relations = this.relations", ClassName.get(Set.class), ClassName.get(String.class))
+                .beginControlFlow("if(relations == null && fields != null)")
+                .addStatement("relations = new $T<>()", ClassName.get(HashSet.class))
+                .addStatement("for($T c : fields) if(!c.isPrimitive()) relations.add(c.getName())", enumColums)
+                .endControlFlow()
+                .addStatement("if(relations == null && maxDepth == $T.UNLIMITED && logger == null) return $T.ALL", Constants.fetchPlanClassName, Constants.fetchPlanClassName)
+                .addStatement("return new $T(relations, maxDepth, logger)", Constants.fetchPlanClassName)
+                .build())
+
+            .addMethod(MethodSpec.methodBuilder("iterator")
+                .addJavadoc("Runs the query, the objects are created row by row while iterating. The iterator holds a connection\n")
+                .addJavadoc("until its last row has been read, an iteration stopped before must {@link $T#close()} it in a finally block.\n", Constants.cursorIteratorClassName)
+                .addJavadoc("The rows of a query with an in() list going through a temp table, see {@link #MAX_BOUND_IN}, are all read into\n")
+                .addJavadoc("memory first: the temp table only lives in a transaction of this thread, which cannot stay open while iterating.\n")
+                .returns(ParameterizedTypeName.get(Constants.cursorIteratorClassName, modelClassName))
+                .addModifiers(Modifier.PUBLIC)
+                .addStatement("final $T db = $T.getInstance().acquireReadableDatabase()", Constants.databaseClassName, Constants.daoClassName)
+                .beginControlFlow("try")
+                .addStatement("$T query = selectQuery()", ClassName.get(String.class))
+                .addStatement("String[] args = constructArgs()")
+                .addStatement("if(logger != null) logger.onQuery(query,args)")
+                .addCode("//temp tables only live in a transaction of this thread, which cannot stay open while iterating\n")
+                .addStatement("final $T cursor = inTables.isEmpty() ? db.rawQuery(query, args) : copyQuery(query, args)", Constants.cursorClassName)
+                .addStatement("final int[] indexes = $T.columnIndexes(cursor)", modelCursorHelperClassName)
+                .addStatement("final $T plan = fetchPlan()", Constants.fetchPlanClassName)
+                .addCode("return new $T<$T>(db, cursor) {\n", Constants.cursorIteratorClassName, modelClassName)
+                .addCode("@$T\n", ClassName.get(Override.class))
+                .addCode("protected $T fromCursor($T cursor, $T db) {\n", modelClassName, Constants.cursorClassName, Constants.databaseClassName)
+                .addStatement("return $T.fromCursor(cursor, db, indexes, plan)", modelCursorHelperClassName)
+                .addCode("}\n")
+                .addCode("};\n")
+                .nextControlFlow("catch ($T e)", ClassName.get(RuntimeException.class))
+                .addStatement("$T.getInstance().releaseReadableDatabase(db)", Constants.daoClassName)
+                .addStatement("throw e")
+                .endControlFlow()
+                .build())
+
+            .addMethod(MethodSpec.methodBuilder("asIterable")
+                .addJavadoc("Runs the query each time it is iterated, see {@link #iterator()}. The iterable must be closed once done\n")
+                .addJavadoc("to release the iterators which have not been read until the end.\n")
+                .returns(ParameterizedTypeName.get(Constants.cursorIterableClassName, modelClassName))
+                .addModifiers(Modifier.PUBLIC)
+                .addCode("return new $T<$T>() {\n", Constants.cursorIterableClassName, modelClassName)
+                .addCode("@$T\n", ClassName.get(Override.class))
+                .addCode("protected $T<$T> open() {\n", Constants.cursorIteratorClassName, modelClassName)
+                .addStatement("return $T.this.iterator()", queryBuilderClassName)
+                .addCode("}\n")
+                .addCode("};\n")
+                .build())
+
+            .addMethod(MethodSpec.methodBuilder("forEach")
+                .addJavadoc("Gives the objects to the consumer row by row, the iterator is closed even if the consumer throws.\n")
+                .addJavadoc("Like {@link #iterator()}, a query with a large in() list is read into memory first.\n")
+                .addModifiers(Modifier.PUBLIC)
+                .addParameter(ParameterizedTypeName.get(ClassName.get(Consumer.class), WildcardTypeName.supertypeOf(modelClassName)), "consumer")
+                .addStatement("$T<$T> iterator = iterator()", Constants.cursorIteratorClassName, modelClassName)
+                .beginControlFlow("try")
+                .addStatement("while(iterator.hasNext()) consumer.accept(iterator.next())")
+                .nextControlFlow("catch ($T e)", ClassName.get(RuntimeException.class))
+                .addStatement("throw e")
+                .nextControlFlow("catch ($T e)", ClassName.get(Exception.class))
+                .addStatement("throw new $T(e)", ClassName.get(RuntimeException.class))
+                .nextControlFlow("finally")
+                .addStatement("iterator.close()")
+                .endControlFlow()
+                .build())
+
+            .addMethod(MethodSpec.methodBuilder("selectQuery")
+                .returns(ClassName.get(String.class))
+                .addModifiers(Modifier.PRIVATE)
+                .addStatement("$T select", ClassName.get(String.class))
+                .addStatement("if(fields == null) select = $S", String.format("select distinct %s.* from %s ", TABLE_NAME, TABLE_NAME))
                 .beginControlFlow("else")
-                .addStatement("stringBuilder.append($S)", TABLE_NAME + "." + Constants.FIELD_ID)
+                .addStatement("$T stringBuilder =  new $T()", Constants.stringBuilderClassName, Constants.stringBuilderClassName)
+                .addStatement("stringBuilder.append($S)", "select distinct " + TABLE_NAME + "." + Constants.FIELD_ID)
                 .addStatement("final int fieldsSize = fields.size()")
                 .beginControlFlow("for(int i=0;i<fieldsSize;++i)")
                 .addStatement("$T c = fields.get(i)", enumColums)
@@ -324,17 +599,42 @@ public class ModelORMGenerator {
                 .addStatement("stringBuilder.append($S+fields.get(i))", TABLE_NAME + ".")
                 .endControlFlow()
                 .endControlFlow()
-                .endControlFlow()
                 .addStatement("stringBuilder.append($S)", String.format(" from %s ", TABLE_NAME))
-                .addStatement("stringBuilder.append(constructQuery())")
-                .addStatement("$T query = stringBuilder.toString()", ClassName.get(String.class))
+                .addStatement("select = stringBuilder.toString()")
+                .endControlFlow()
+                .addStatement("return buildQuery(select)")
+                .build())
+
+            .addMethod(MethodSpec.methodBuilder("executeAtMost")
+                .returns(listObjectsClassName)
+                .addModifiers(Modifier.PRIVATE)
+                .addParameter(TypeName.INT, "count")
+                .addStatement("final int start = limitStart")
+                .addStatement("final int previousCount = limitCount")
+                .addStatement("if(start == -1) limitStartNumber(0, count)")
+                .addStatement("else limitStartNumber(start, Math.min(count, previousCount))")
+                .beginControlFlow("try")
+                .addStatement("return execute()")
+                .nextControlFlow("finally")
+                .addStatement("limitStartNumber(start, previousCount)")
+                .endControlFlow()
+                .build())
+
+            .addMethod(MethodSpec.methodBuilder("execute")
+                .returns(listObjectsClassName)
+                .addModifiers(Modifier.PRIVATE)
+                .addStatement("$T db = acquireQueryDatabase()", Constants.databaseClassName)
+                .beginControlFlow("try")
+                .addStatement("$T query = selectQuery()", ClassName.get(String.class))
                 .addStatement("String[] args = constructArgs()")
                 .addStatement("if(logger != null) logger.onQuery(query,args)")
                 .addStatement("$T cursor = db.rawQuery(query, args)", Constants.cursorClassName)
-                .addStatement("$T objects = $T.get(cursor,db)", listObjectsClassName, modelCursorHelperClassName)
+                .addStatement("$T objects = $T.get(cursor,db,fetchPlan())", listObjectsClassName, modelCursorHelperClassName)
                 .addStatement("cursor.close()")
-                .addStatement("$T.getInstance().close()", Constants.daoClassName)
                 .addStatement("return objects")
+                .nextControlFlow("finally")
+                .addStatement("releaseQueryDatabase(db)")
+                .endControlFlow()
                 .build())
 
             .build();
@@ -346,12 +646,21 @@ public class ModelORMGenerator {
 
             .addMethod(MethodSpec.constructorBuilder().addModifiers(Modifier.PUBLIC).build())
 
-            .addMethod(MethodSpec.methodBuilder("create")
+            .addMethod(generateCreate())
+
+            .addMethod(MethodSpec.methodBuilder("indexes")
+                .addJavadoc("indexes of the join tables and of the side tables, also created on the upgrades of an existing database\n")
                 .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
                 .returns(ArrayTypeName.get(String[].class))
+                .addStatement("return new $T[]{$L}", ClassName.get(String.class), generateJoinIndexes())
+                .build())
 
-                //for
-                .addStatement("return new $T[]{$L}", ClassName.get(String.class), generateCreationString())
+            .addMethod(MethodSpec.methodBuilder("upgrade")
+                .addJavadoc("converts the join tables created without the compact schema and creates the side tables missing from the database, on each of its openings\n")
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .addParameter(Constants.migrator, "migrator")
+                .addCode(generateJoinTablesUpgrade())
+                .addCode(generateSideTablesUpgrade())
                 .build())
 
             .addMethod(MethodSpec.methodBuilder("update")
@@ -385,21 +694,26 @@ public class ModelORMGenerator {
                 .addParameter(modelClassName, "object")
                 .returns(TypeName.LONG)
                 .addModifiers(Modifier.PUBLIC)
-                .addStatement("$T database = $T.getInstance().open().getDatabase()", Constants.databaseClassName, Constants.daoClassName)
+                .addStatement("$T database = $T.getInstance().beginTransaction()", Constants.databaseClassName, Constants.daoClassName)
+                .beginControlFlow("try")
                 .addStatement("long objectId = $T.insert(database,object)", modelCursorHelperClassName)
-                .addStatement("$T.getInstance().close()", Constants.daoClassName)
+                .addStatement("$T.getInstance().setTransactionSuccessful()", Constants.daoClassName)
                 .addStatement("return objectId")
+                .nextControlFlow("finally")
+                .addStatement("$T.getInstance().endTransaction()", Constants.daoClassName)
+                .endControlFlow()
                 .build())
 
             .addMethod(MethodSpec.methodBuilder("add")
                 .addParameter(ProcessUtils.listOf(modelClassName), "objects")
                 .addModifiers(Modifier.PUBLIC)
-                .addStatement("$T database = $T.getInstance().open().getDatabase()", Constants.databaseClassName, Constants.daoClassName)
-                .addStatement("database.beginTransaction()")
+                .addStatement("$T database = $T.getInstance().beginTransaction()", Constants.databaseClassName, Constants.daoClassName)
+                .beginControlFlow("try")
                 .addStatement("for($T object : objects) $T.insert(database, object)", modelClassName, modelCursorHelperClassName)
-                .addStatement("database.setTransactionSuccessful()")
-                .addStatement("database.endTransaction()")
-                .addStatement("$T.getInstance().close()", Constants.daoClassName)
+                .addStatement("$T.getInstance().setTransactionSuccessful()", Constants.daoClassName)
+                .nextControlFlow("finally")
+                .addStatement("$T.getInstance().endTransaction()", Constants.daoClassName)
+                .endControlFlow()
                 .build())
 
             .addMethod(MethodSpec.methodBuilder("addAsync")
@@ -457,21 +771,26 @@ public class ModelORMGenerator {
                 .addParameter(modelClassName, "object")
                 .returns(TypeName.LONG)
                 .addModifiers(Modifier.PUBLIC)
-                .addStatement("$T database = $T.getInstance().open().getDatabase()", Constants.databaseClassName, Constants.daoClassName)
+                .addStatement("$T database = $T.getInstance().beginTransaction()", Constants.databaseClassName, Constants.daoClassName)
+                .beginControlFlow("try")
                 .addStatement("long objectId = $T.update(database,object)", modelCursorHelperClassName)
-                .addStatement("$T.getInstance().close()", Constants.daoClassName)
+                .addStatement("$T.getInstance().setTransactionSuccessful()", Constants.daoClassName)
                 .addStatement("return objectId")
+                .nextControlFlow("finally")
+                .addStatement("$T.getInstance().endTransaction()", Constants.daoClassName)
+                .endControlFlow()
                 .build())
 
             .addMethod(MethodSpec.methodBuilder("update")
                 .addParameter(ProcessUtils.listOf(modelClassName), "objects")
                 .addModifiers(Modifier.PUBLIC)
-                .addStatement("$T database = $T.getInstance().open().getDatabase()", Constants.databaseClassName, Constants.daoClassName)
-                .addStatement("database.beginTransaction()")
+                .addStatement("$T database = $T.getInstance().beginTransaction()", Constants.databaseClassName, Constants.daoClassName)
+                .beginControlFlow("try")
                 .addStatement("for($T object : objects) $T.update(database, object)", modelClassName, modelCursorHelperClassName)
-                .addStatement("database.setTransactionSuccessful()")
-                .addStatement("database.endTransaction()")
-                .addStatement("$T.getInstance().close()", Constants.daoClassName)
+                .addStatement("$T.getInstance().setTransactionSuccessful()", Constants.daoClassName)
+                .nextControlFlow("finally")
+                .addStatement("$T.getInstance().endTransaction()", Constants.daoClassName)
+                .endControlFlow()
                 .build())
 
             .addMethod(MethodSpec.methodBuilder("updateAsync")
@@ -531,7 +850,10 @@ public class ModelORMGenerator {
                 .addModifiers(Modifier.PRIVATE)
                 .returns(TypeName.VOID)
                 .addStatement(ProcessUtils.getModelId(element, "object", "id"))
-                .addStatement("db.delete($S, $S, new String[]{String.valueOf(id)})", TABLE_NAME, "_id = ?")
+                .addStatement("if(id == null) return")
+                .addStatement("$T statement = $T.getInstance().compileStatement(db, $S)", Constants.statementClassName, Constants.daoClassName, "DELETE FROM " + TABLE_NAME + " WHERE " + Constants.FIELD_ID + " = ?")
+                .addStatement("statement.bindLong(1, id)")
+                .addStatement("statement.executeUpdateDelete()")
                 .build())
 
             .addMethod(MethodSpec.methodBuilder("exists")
@@ -540,7 +862,6 @@ public class ModelORMGenerator {
                     .addModifiers(Modifier.PUBLIC)
                     .returns(TypeName.BOOLEAN)
                     .addStatement(ProcessUtils.getModelId(element, "object", "id"))
-                    .addStatement("$T.getInstance().close()", Constants.daoClassName)
                     .addStatement("return id != null")
                     .build())
 
@@ -548,27 +869,41 @@ public class ModelORMGenerator {
                 .addParameter(modelClassName, "object")
                 .addModifiers(Modifier.PUBLIC)
                 .returns(TypeName.VOID)
-                .addStatement("$T db = $T.getInstance().open().getDatabase()", Constants.databaseClassName, Constants.daoClassName)
+                .addStatement("$T db = $T.getInstance().beginTransaction()", Constants.databaseClassName, Constants.daoClassName)
+                .beginControlFlow("try")
                 .addStatement("delete(db,object)")
-                .addStatement("$T.getInstance().close()", Constants.daoClassName)
+                .addStatement("$T.getInstance().setTransactionSuccessful()", Constants.daoClassName)
+                .nextControlFlow("finally")
+                .addStatement("$T.getInstance().endTransaction()", Constants.daoClassName)
+                .endControlFlow()
                 .build())
 
             .addMethod(MethodSpec.methodBuilder("delete")
                 .addParameter(listObjectsClassName, "objects")
                 .addModifiers(Modifier.PUBLIC)
                 .returns(TypeName.VOID)
-                .addStatement("$T db = $T.getInstance().open().getDatabase()", Constants.databaseClassName, Constants.daoClassName)
+                .addStatement("$T db = $T.getInstance().beginTransaction()", Constants.databaseClassName, Constants.daoClassName)
+                .beginControlFlow("try")
                 .beginControlFlow("for($T object : objects)", modelClassName)
                 .addStatement("delete(db,object)")
                 .endControlFlow()
-                .addStatement("$T.getInstance().close()", Constants.daoClassName)
+                .addStatement("$T.getInstance().setTransactionSuccessful()", Constants.daoClassName)
+                .nextControlFlow("finally")
+                .addStatement("$T.getInstance().endTransaction()", Constants.daoClassName)
+                .endControlFlow()
                 .build())
 
             .addMethod(MethodSpec.methodBuilder("deleteAll")
                 .addModifiers(Modifier.PUBLIC)
                 .returns(TypeName.VOID)
-                .addStatement("$T.getInstance().open().getDatabase().execSQL($S)", Constants.daoClassName, "delete from " + TABLE_NAME)
-                .addStatement("$T.getInstance().close()", Constants.daoClassName)
+                .addStatement("$T db = $T.getInstance().beginTransaction()", Constants.databaseClassName, Constants.daoClassName)
+                .beginControlFlow("try")
+                .addCode(generateDeleteAllCleanups())
+                .addStatement("db.execSQL($S)", "delete from " + TABLE_NAME)
+                .addStatement("$T.getInstance().setTransactionSuccessful()", Constants.daoClassName)
+                .nextControlFlow("finally")
+                .addStatement("$T.getInstance().endTransaction()", Constants.daoClassName)
+                .endControlFlow()
                 .build())
 
             .addMethod(MethodSpec.methodBuilder("deleteAllAsync")
@@ -644,13 +979,17 @@ public class ModelORMGenerator {
             .addMethod(MethodSpec.methodBuilder("count")
                 .addModifiers(Modifier.PUBLIC)
                 .returns(TypeName.INT)
-                .addStatement("$T db = $T.getInstance().open().getDatabase()", Constants.databaseClassName, Constants.daoClassName)
-                .addStatement("$T cursor = db.rawQuery($S,null)", Constants.cursorClassName, "select count(*) from " + TABLE_NAME)
-                .addStatement("cursor.moveToFirst()")
-                .addStatement("int recCount = cursor.getInt(0)")
-                .addStatement("cursor.close()")
-                .addStatement("$T.getInstance().close()", Constants.daoClassName)
-                .addStatement("return recCount")
+                .addStatement("$T db = $T.getInstance().acquireReadableDatabase()", Constants.databaseClassName, Constants.daoClassName)
+                .beginControlFlow("try")
+                .addStatement("$T statement = $T.getInstance().acquireReadStatement(db, $S)", Constants.statementClassName, Constants.daoClassName, "select count(*) from " + TABLE_NAME)
+                .beginControlFlow("try")
+                .addStatement("return (int) statement.simpleQueryForLong()")
+                .nextControlFlow("finally")
+                .addStatement("$T.getInstance().releaseReadStatement(db, $S, statement)", Constants.daoClassName, "select count(*) from " + TABLE_NAME)
+                .endControlFlow()
+                .nextControlFlow("finally")
+                .addStatement("$T.getInstance().releaseReadableDatabase(db)", Constants.daoClassName)
+                .endControlFlow()
                 .build())
 
             .addMethod(MethodSpec.methodBuilder("logQueries")
@@ -716,7 +1055,19 @@ public class ModelORMGenerator {
                 .returns(queryBuilderClassName)
                 .addModifiers(Modifier.PUBLIC)
                 .addParameter(ProcessUtils.getFieldQueryBuilderClass(variableElement), "query")
-                .addStatement("queryBuilder.append('(').append(query.query($S,getTableId($S),$S,$S,getTableId($S),$S,args)).append(')')", TABLE_NAME, JOINTABLE, ProcessUtils.getKeyName(modelName), ProcessUtils.getKeyName(variableElement), ProcessUtils.getTableName(variableElement), ProcessUtils.getObjectName(variableElement))
+                .addStatement("appendNested(query, query.query($S,getTableId($S),$S,$S,getTableId($S),$S,args))", TABLE_NAME, JOINTABLE, ProcessUtils.getKeyName(modelName), ProcessUtils.getKeyName(variableElement), ProcessUtils.getTableName(variableElement), ProcessUtils.getJoinFieldValue(element, variableElement, compactSchema))
+                .addStatement("return this")
+                .build());
+        }
+
+        if (!fullTextFields.isEmpty()) {
+            methodSpecs.add(MethodSpec.methodBuilder("matches")
+                .addJavadoc("Keeps the objects whose @FullText fields match this FTS query, through the full-text index.\n")
+                .addJavadoc("Outside of a nested query the results are ranked by their count of matched terms, before the sorts given afterwards.\n")
+                .returns(queryBuilderClassName)
+                .addModifiers(Modifier.PUBLIC)
+                .addParameter(ClassName.get(String.class), "query")
+                .addStatement("appendMatch($S, $T.getTableName($S), query)", TABLE_NAME, Constants.fullTextClassName, TABLE_NAME)
                 .addStatement("return this")
                 .build());
         }
@@ -724,9 +1075,82 @@ public class ModelORMGenerator {
         return methodSpecs;
     }
 
+    /**
+     * statements deleting the relation rows of the objects whose ids are selected by the query appended to them
+     */
+    protected List<String> generateRelationCleanups() {
+        Set<String> statements = new LinkedHashSet<>();
+        for (VariableElement variableElement : otherClassFields) {
+            String JOINTABLE = ProcessUtils.getTableName(modelName) + "_" + ProcessUtils.getTableName(variableElement);
+            statements.add("DELETE FROM " + JOINTABLE + " WHERE " + ProcessUtils.getKeyName(modelName) + " IN (");
+        }
+        for (String sideTable : generateSideTables().keySet()) {
+            statements.add("DELETE FROM " + sideTable + " WHERE _object_id IN (");
+        }
+        for (String joinTable : parentJoinTables) {
+            statements.add("DELETE FROM " + joinTable + " WHERE " + ProcessUtils.getKeyName(modelName) + " IN (");
+        }
+        return new ArrayList<>(statements);
+    }
+
+    /**
+     * the side table of each collection of primitives, with its creation
+     */
+    protected Map<String, String> generateSideTables() {
+        Map<String, String> sideTables = new LinkedHashMap<>();
+        for (VariableElement variableElement : collections) {
+            String sideTable = ProcessUtils.getSideTableName(element, variableElement);
+            if (sideTable != null) {
+                sideTables.put(sideTable, ProcessUtils.getSideTableCreation(element, variableElement, compactSchema));
+            }
+        }
+        return sideTables;
+    }
+
+    protected CodeBlock generateRelationCleanupsArray() {
+        CodeBlock.Builder builder = CodeBlock.builder().add("new $T[]{", ClassName.get(String.class));
+        List<String> cleanups = generateRelationCleanups();
+        for (int i = 0; i < cleanups.size(); ++i) {
+            builder.add(i == 0 ? "$S" : ", $S", cleanups.get(i));
+        }
+        return builder.add("}").build();
+    }
+
+    /**
+     * the join tables, the side tables and the join tables of the parents only hold rows of this model,
+     * they are emptied by an unqualified delete, which sqlite runs as a truncate
+     */
+    protected CodeBlock generateDeleteAllCleanups() {
+        Set<String> tables = new LinkedHashSet<>();
+        for (VariableElement variableElement : otherClassFields) {
+            tables.add(TABLE_NAME + "_" + ProcessUtils.getTableName(variableElement));
+        }
+        tables.addAll(generateSideTables().keySet());
+        tables.addAll(parentJoinTables);
+        CodeBlock.Builder builder = CodeBlock.builder();
+        for (String table : tables) {
+            builder.addStatement("db.execSQL($S)", "delete from " + table);
+        }
+        return builder.build();
+    }
+
+    protected MethodSpec generateCreate() {
+        MethodSpec.Builder builder = MethodSpec.methodBuilder("create")
+            .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+            .returns(ArrayTypeName.get(String[].class));
+        if (fullTextFields.isEmpty()) {
+            return builder.addStatement("return new $T[]{$L}", ClassName.get(String.class), generateCreationString()).build();
+        }
+        return builder
+            .addStatement("$T statements = new $T($T.asList($L))", ProcessUtils.listOf(String.class), ProcessUtils.arraylistOf(String.class), ClassName.get(Arrays.class), generateCreationString())
+            .addCode(generateFullTextCreations())
+            .addStatement("return statements.toArray(new $T[statements.size()])", ClassName.get(String.class))
+            .build();
+    }
+
     protected String generateCreationString() {
         StringBuilder stringBuilder = new StringBuilder();
-        stringBuilder.append('"').append("create table ").append(TABLE_NAME).append(" (_id integer primary key autoincrement, ").append(generateTableCreate()).append(")").append('"');
+        stringBuilder.append('"').append("create table ").append(TABLE_NAME).append(" (").append(ProcessUtils.getPrimaryKey(autoincrement)).append(", ").append(generateTableCreate()).append(")").append('"');
 
         Set<String> addedTables = new HashSet<>();
 
@@ -736,19 +1160,145 @@ public class ModelORMGenerator {
                 stringBuilder
                     .append(",\n")
                     .append('"')
-                    .append("create table ").append(table)
-                    .append(" ( _id integer primary key autoincrement, ")
-                    .append(ProcessUtils.getKeyName(modelName)).append(" integer, ")
-                    .append(ProcessUtils.getKeyName(variableElement)).append(" integer, ")
-                    .append(Constants.FIELD_NAME).append(" text )")
+                    .append(generateJoinTableCreation(table, variableElement))
                     .append('"');
                 addedTables.add(table);
             }
         }
 
+        for (String statement : generateSideTables().values()) {
+            stringBuilder.append(",\n").append('"').append(statement).append('"');
+        }
+
+        for (String statement : generateIndexCreations()) {
+            stringBuilder.append(",\n").append('"').append(statement).append('"');
+        }
+
         return stringBuilder.toString();
     }
 
+    /**
+     * with a compact schema, the rows are clustered by parent and field then ordered by their position in the lists,
+     * the key replaces both the rowid and the index
+     */
+    protected String generateJoinTableCreation(String table, VariableElement variableElement) {
+        String parentKey = ProcessUtils.getKeyName(modelName);
+        String childKey = ProcessUtils.getKeyName(variableElement);
+        if (!compactSchema) {
+            return "create table " + table + " ( _id integer primary key autoincrement, " + parentKey + " integer, " + childKey + " integer, " + Constants.FIELD_NAME + " text )";
+        }
+        return "create table " + table + " ( " + parentKey + " integer, " + childKey + " integer, " + Constants.FIELD_CODE + " integer, " + Constants.FIELD_POSITION + " integer, "
+            + "primary key (" + parentKey + ", " + Constants.FIELD_CODE + ", " + Constants.FIELD_POSITION + ") ) without rowid";
+    }
+
+    /**
+     * children are read by parent and field, values by object. The child id completes the index of a join table,
+     * which then covers the reads of the children, the order of the lists being given by the order by of the query.
+     * It replaces the index by parent and field of the previous versions
+     */
+    protected CodeBlock generateJoinIndexes() {
+        List<String> statements = new ArrayList<>();
+        Set<String> addedTables = new HashSet<>();
+        for (VariableElement variableElement : otherClassFields) {
+            String table = TABLE_NAME + "_" + ProcessUtils.getTableName(variableElement);
+            if (addedTables.add(table) && !compactSchema) {
+                String parentKey = ProcessUtils.getKeyName(modelName);
+                statements.add("drop index if exists " + ProcessUtils.getIndexName(table, parentKey, Constants.FIELD_NAME));
+                statements.add(ProcessUtils.getIndexCreation(table, false, parentKey, Constants.FIELD_NAME, ProcessUtils.getKeyName(variableElement)));
+            }
+        }
+        for (String sideTable : generateSideTables().keySet()) {
+            statements.add(ProcessUtils.getIndexCreation(sideTable, false, "_object_id"));
+        }
+        CodeBlock.Builder builder = CodeBlock.builder();
+        for (int i = 0; i < statements.size(); ++i) {
+            builder.add(i == 0 ? "$S" : ", $S", statements.get(i));
+        }
+        return builder.build();
+    }
+
+    /**
+     * with a compact schema, the join tables of a database created before it are converted.
+     * The names of the fields sharing a join table are listed by their code
+     */
+    protected CodeBlock generateJoinTablesUpgrade() {
+        CodeBlock.Builder builder = CodeBlock.builder();
+        if (!compactSchema) {
+            return builder.build();
+        }
+        Map<String, VariableElement> firstFields = new LinkedHashMap<>();
+        Map<String, List<String>> fieldNames = new HashMap<>();
+        for (VariableElement variableElement : otherClassFields) {
+            String table = TABLE_NAME + "_" + ProcessUtils.getTableName(variableElement);
+            if (!firstFields.containsKey(table)) {
+                firstFields.put(table, variableElement);
+                fieldNames.put(table, new ArrayList<String>());
+            }
+            fieldNames.get(table).add(ProcessUtils.getObjectName(variableElement));
+        }
+        for (Map.Entry<String, VariableElement> entry : firstFields.entrySet()) {
+            String table = entry.getKey();
+            VariableElement variableElement = entry.getValue();
+            CodeBlock.Builder names = CodeBlock.builder();
+            for (String name : fieldNames.get(table)) {
+                names.add(", $S", name);
+            }
+            builder.addStatement("migrator.compactJoinTable($S, $S, $S, $S$L)", table, generateJoinTableCreation(table, variableElement),
+                ProcessUtils.getKeyName(modelName), ProcessUtils.getKeyName(variableElement), names.build());
+        }
+        return builder.build();
+    }
+
+    /**
+     * side tables missing from a database created by a previous version, filled with the values
+     * of the tables shared by all the models then. It runs on each opening of the database
+     */
+    protected CodeBlock generateSideTablesUpgrade() {
+        CodeBlock.Builder builder = CodeBlock.builder();
+        for (VariableElement variableElement : collections) {
+            String sideTable = ProcessUtils.getSideTableName(element, variableElement);
+            if (sideTable != null) {
+                builder.addStatement("migrator.createSideTable($S, $S, $S, $S, $S, $S)", sideTable, ProcessUtils.getSideTableCreation(element, variableElement, compactSchema),
+                    ProcessUtils.getIndexCreation(sideTable, false, "_object_id"), TABLE_NAME, ProcessUtils.getPrimitiveTableName(variableElement), ProcessUtils.getObjectName(variableElement));
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * indexes of the @Index fields then of the @Indices of the model
+     */
+    protected List<String> generateIndexCreations() {
+        List<String> statements = new ArrayList<>();
+        for (VariableElement variableElement : fields) {
+            Index index = variableElement.getAnnotation(Index.class);
+            //the id is already the primary key
+            if (index != null && variableElement != fieldId) {
+                statements.add(ProcessUtils.getIndexCreation(TABLE_NAME, index.unique(), variableElement.getSimpleName().toString()));
+            }
+        }
+        Indices indices = element.getAnnotation(Indices.class);
+        if (indices != null) {
+            for (Index index : indices.value()) {
+                statements.add(ProcessUtils.getIndexCreation(TABLE_NAME, index.unique(), index.columns()));
+            }
+        }
+        return statements;
+    }
+
+    /**
+     * creation of the full-text index, whose schema is shared with the migrations
+     */
+    protected CodeBlock generateFullTextCreations() {
+        CodeBlock.Builder columns = CodeBlock.builder().add("new $T[]{", ClassName.get(String.class));
+        for (int i = 0; i < fullTextFields.size(); ++i) {
+            columns.add(i == 0 ? "$S" : ", $S", fullTextFields.get(i).getSimpleName().toString());
+        }
+        return CodeBlock.builder()
+            .addStatement("statements.addAll($T.getCreations($S, $L))", Constants.fullTextClassName, TABLE_NAME, columns.add("}").build())
+            .build();
+    }
+
     //protected String generateDropString() {
     //        StringBuilder stringBuilder = new StringBuilder();
     //        stringBuilder.append('"').append("drop table ").append(TABLE_NAME).append(")").append('"');
@@ -793,6 +1343,12 @@ public class ModelORMGenerator {
                 }
             }
         }
+        for (VariableElement variableElement : ProcessUtils.getPackedFields(element)) {
+            if (stringBuilder.length() > 0) {
+                stringBuilder.append(", ");
+            }
+            stringBuilder.append(variableElement.getSimpleName()).append(" blob");
+        }
         return stringBuilder.toString();
     }
 }
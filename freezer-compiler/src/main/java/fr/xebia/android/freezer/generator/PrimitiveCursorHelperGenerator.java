@@ -8,6 +8,11 @@ import com.squareup.javapoet.TypeSpec;
 import fr.xebia.android.freezer.Constants;
 import fr.xebia.android.freezer.ProcessUtils;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
 import javax.lang.model.element.Modifier;
 
 /**
@@ -17,108 +22,47 @@ public class PrimitiveCursorHelperGenerator {
     public TypeSpec generate() {
         return TypeSpec.classBuilder(Constants.PRIMITIVE_CURSOR_HELPER)
                 .addModifiers(Modifier.PUBLIC)
-                .addMethod(MethodSpec.methodBuilder("create")
-                        .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
-                        .returns(ArrayTypeName.get(String[].class))
-                        .addCode("return new String[]{ ")
-                        .addCode("\"create table $L ( $L integer primary key autoincrement, _object_id integer, value integer, $L text )\",\n", Constants.PRIMITIVE_TABLE_INT, Constants.FIELD_ID, Constants.FIELD_NAME)
-                        .addCode("\"create table $L ( $L integer primary key autoincrement, _object_id integer, value text, $L text )\",\n", Constants.PRIMITIVE_TABLE_STRING, Constants.FIELD_ID, Constants.FIELD_NAME)
-                        .addCode("\"create table $L ( $L integer primary key autoincrement, _object_id integer, value float, $L text )\",\n", Constants.PRIMITIVE_TABLE_FLOAT, Constants.FIELD_ID, Constants.FIELD_NAME)
-                        .addCode("\"create table $L ( $L integer primary key autoincrement, _object_id integer, value integer, $L text )\"\n", Constants.PRIMITIVE_TABLE_BOOLEAN, Constants.FIELD_ID, Constants.FIELD_NAME)
-                        .addCode("};")
-                        .build())
-
                 //region integers
 
-                .addMethod(MethodSpec.methodBuilder("getIntegers")
-                        .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
-                        .returns(ProcessUtils.listOf(Integer.class))
-                        .addParameter(Constants.databaseClassName, "db")
-                        .addParameter(TypeName.LONG, "objectId")
-                        .addParameter(ClassName.get(String.class), "variable")
-                        .addStatement("$T objects = new $T()", ProcessUtils.listOf(Integer.class), ProcessUtils.arraylistOf(Integer.class))
-                        .addStatement("$T cursor = db.rawQuery(\"SELECT value FROM $L WHERE _object_id = ? AND _field_name= ?\", new String[]{String.valueOf(objectId), variable})", Constants.cursorClassName, Constants.PRIMITIVE_TABLE_INT)
-                        .addStatement("cursor.moveToFirst()")
-                        .beginControlFlow("while (!cursor.isAfterLast())")
-                        .addStatement("objects.add(cursor.getInt(0))")
-                        .addStatement("cursor.moveToNext()")
-                        .addStatement("cursor.close()")
-                        .endControlFlow()
-                        .addStatement("return objects")
-                        .build())
-
-                .addMethod(MethodSpec.methodBuilder("getIntegersPrimitiveArray")
-                        .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
-                        .returns(ArrayTypeName.get(int[].class))
-                        .addParameter(Constants.databaseClassName, "db")
-                        .addParameter(TypeName.LONG, "objectId")
-                        .addParameter(ClassName.get(String.class), "variable")
-                        .addStatement("List<Integer> objects = getIntegers(db,objectId,variable)")
-                        .addStatement("if(objects == null) return null")
-                        .addStatement("int[] array = new int[objects.size()]")
-                        .beginControlFlow("for(int i=0,size=objects.size();i<size;++i)")
-                        .addStatement("array[i] = objects.get(i)")
-                        .endControlFlow()
-                        .addStatement("return array")
-                        .build())
-
-                .addMethod(MethodSpec.methodBuilder("getIntegersArray")
-                        .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
-                        .returns(ArrayTypeName.get(Integer[].class))
-                        .addParameter(Constants.databaseClassName, "db")
-                        .addParameter(TypeName.LONG, "objectId")
-                        .addParameter(ClassName.get(String.class), "variable")
-                        .addStatement("List<Integer> objects = getIntegers(db,objectId,variable)")
-                        .addStatement("if(objects == null) return null")
-                        .addStatement("Integer[] array = new Integer[objects.size()]")
-                        .beginControlFlow("for(int i=0,size=objects.size();i<size;++i)")
-                        .addStatement("array[i] = objects.get(i)")
-                        .endControlFlow()
-                        .addStatement("return array")
-                        .build())
-
                 .addMethod(MethodSpec.methodBuilder("addIntegers")
                         .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
                         .addParameter(Constants.databaseClassName, "db")
+                        .addParameter(ClassName.get(String.class), "table")
                         .addParameter(TypeName.LONG, "objectId")
-                        .addParameter(ClassName.get(String.class), "variable")
                         .addParameter(ProcessUtils.listOf(Integer.class), "values")
+                        .addStatement("$T statement = $T.getInstance().compileStatement(db, \"INSERT INTO \" + table + \" (_object_id, value) VALUES (?, ?)\")", Constants.statementClassName, Constants.daoClassName)
                         .beginControlFlow("for(Integer value : values)")
-                        .addStatement("$T contentValues = new $T()", Constants.contentValuesClassName, Constants.contentValuesClassName)
-                        .addStatement("contentValues.put($S,objectId)", "_object_id")
-                        .addStatement("contentValues.put($S,variable)", Constants.FIELD_NAME)
-                        .addStatement("contentValues.put($S,value)", "value")
-                        .addStatement("db.insert($S, null, contentValues)", Constants.PRIMITIVE_TABLE_INT)
+                        .addStatement("statement.bindLong(1, objectId)")
+                        .addStatement("if(value == null) statement.bindNull(2); else statement.bindLong(2, value)")
+                        .addStatement("statement.executeInsert()")
                         .endControlFlow()
                         .build())
 
                 .addMethod(MethodSpec.methodBuilder("addIntegers")
                         .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
                         .addParameter(Constants.databaseClassName, "db")
+                        .addParameter(ClassName.get(String.class), "table")
                         .addParameter(TypeName.LONG, "objectId")
-                        .addParameter(ClassName.get(String.class), "variable")
                         .addParameter(ArrayTypeName.get(int[].class), "values")
+                        .addStatement("$T statement = $T.getInstance().compileStatement(db, \"INSERT INTO \" + table + \" (_object_id, value) VALUES (?, ?)\")", Constants.statementClassName, Constants.daoClassName)
                         .beginControlFlow("for(int value : values)")
-                        .addStatement("$T contentValues = new $T()", Constants.contentValuesClassName, Constants.contentValuesClassName)
-                        .addStatement("contentValues.put($S,objectId)", "_object_id")
-                        .addStatement("contentValues.put($S,variable)", Constants.FIELD_NAME)
-                        .addStatement("contentValues.put($S,value)", "value")
-                        .addStatement("db.insert($S, null, contentValues)", Constants.PRIMITIVE_TABLE_INT)
+                        .addStatement("statement.bindLong(1, objectId)")
+                        .addStatement("statement.bindLong(2, value)")
+                        .addStatement("statement.executeInsert()")
                         .endControlFlow()
                         .build())
 
                 .addMethod(MethodSpec.methodBuilder("addIntegers")
                         .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
                         .addParameter(Constants.databaseClassName, "db")
+                        .addParameter(ClassName.get(String.class), "table")
                         .addParameter(TypeName.LONG, "objectId")
-                        .addParameter(ClassName.get(String.class), "variable")
                         .addParameter(ArrayTypeName.get(Integer[].class), "values")
+                        .addStatement("$T statement = $T.getInstance().compileStatement(db, \"INSERT INTO \" + table + \" (_object_id, value) VALUES (?, ?)\")", Constants.statementClassName, Constants.daoClassName)
                         .beginControlFlow("for(Integer value : values)")
-                        .addStatement("$T contentValues = new $T()", Constants.contentValuesClassName, Constants.contentValuesClassName)
-                        .addStatement("contentValues.put($S,objectId)", "_object_id")
-                        .addStatement("contentValues.put($S,variable)", Constants.FIELD_NAME)
-                        .addStatement("contentValues.put($S,value)", "value")
-                        .addStatement("db.insert($S, null, contentValues)", Constants.PRIMITIVE_TABLE_INT)
+                        .addStatement("statement.bindLong(1, objectId)")
+                        .addStatement("if(value == null) statement.bindNull(2); else statement.bindLong(2, value)")
+                        .addStatement("statement.executeInsert()")
                         .endControlFlow()
                         .build())
 
@@ -126,95 +70,45 @@ public class PrimitiveCursorHelperGenerator {
 
                 //region longs
 
-                .addMethod(MethodSpec.methodBuilder("getLongs")
-                        .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
-                        .returns(ProcessUtils.listOf(Long.class))
-                        .addParameter(Constants.databaseClassName, "db")
-                        .addParameter(TypeName.LONG, "objectId")
-                        .addParameter(ClassName.get(String.class), "variable")
-                        .addStatement("$T objects = new $T()", ProcessUtils.listOf(Long.class), ProcessUtils.arraylistOf(Long.class))
-                        .addStatement("$T cursor = db.rawQuery(\"SELECT value FROM $L WHERE _object_id = ? AND _field_name= ?\", new String[]{String.valueOf(objectId), variable})", Constants.cursorClassName, Constants.PRIMITIVE_TABLE_LONG)
-                        .addStatement("cursor.moveToFirst()")
-                        .beginControlFlow("while (!cursor.isAfterLast())")
-                        .addStatement("objects.add(cursor.getLong(0))")
-                        .addStatement("cursor.moveToNext()")
-                        .addStatement("cursor.close()")
-                        .endControlFlow()
-                        .addStatement("return objects")
-                        .build())
-
-                .addMethod(MethodSpec.methodBuilder("getLongsPrimitiveArray")
-                        .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
-                        .returns(ArrayTypeName.get(long[].class))
-                        .addParameter(Constants.databaseClassName, "db")
-                        .addParameter(TypeName.LONG, "objectId")
-                        .addParameter(ClassName.get(String.class), "variable")
-                        .addStatement("List<Long> objects = getLongs(db,objectId,variable)")
-                        .addStatement("if(objects == null) return null")
-                        .addStatement("long[] array = new long[objects.size()]")
-                        .beginControlFlow("for(int i=0,size=objects.size();i<size;++i)")
-                        .addStatement("array[i] = objects.get(i)")
-                        .endControlFlow()
-                        .addStatement("return array")
-                        .build())
-
-                .addMethod(MethodSpec.methodBuilder("getLongsArray")
-                        .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
-                        .returns(ArrayTypeName.get(Long[].class))
-                        .addParameter(Constants.databaseClassName, "db")
-                        .addParameter(TypeName.LONG, "objectId")
-                        .addParameter(ClassName.get(String.class), "variable")
-                        .addStatement("List<Long> objects = getLongs(db,objectId,variable)")
-                        .addStatement("if(objects == null) return null")
-                        .addStatement("Long[] array = new Long[objects.size()]")
-                        .beginControlFlow("for(int i=0,size=objects.size();i<size;++i)")
-                        .addStatement("array[i] = objects.get(i)")
-                        .endControlFlow()
-                        .addStatement("return array")
-                        .build())
-
                 .addMethod(MethodSpec.methodBuilder("addLongs")
                         .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
                         .addParameter(Constants.databaseClassName, "db")
+                        .addParameter(ClassName.get(String.class), "table")
                         .addParameter(TypeName.LONG, "objectId")
-                        .addParameter(ClassName.get(String.class), "variable")
                         .addParameter(ProcessUtils.listOf(Long.class), "values")
+                        .addStatement("$T statement = $T.getInstance().compileStatement(db, \"INSERT INTO \" + table + \" (_object_id, value) VALUES (?, ?)\")", Constants.statementClassName, Constants.daoClassName)
                         .beginControlFlow("for(Long value : values)")
-                        .addStatement("$T contentValues = new $T()", Constants.contentValuesClassName, Constants.contentValuesClassName)
-                        .addStatement("contentValues.put($S,objectId)", "_object_id")
-                        .addStatement("contentValues.put($S,variable)", Constants.FIELD_NAME)
-                        .addStatement("contentValues.put($S,value)", "value")
-                        .addStatement("db.insert($S, null, contentValues)", Constants.PRIMITIVE_TABLE_LONG)
+                        .addStatement("statement.bindLong(1, objectId)")
+                        .addStatement("if(value == null) statement.bindNull(2); else statement.bindLong(2, value)")
+                        .addStatement("statement.executeInsert()")
                         .endControlFlow()
                         .build())
 
                 .addMethod(MethodSpec.methodBuilder("addLongs")
                         .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
                         .addParameter(Constants.databaseClassName, "db")
+                        .addParameter(ClassName.get(String.class), "table")
                         .addParameter(TypeName.LONG, "objectId")
-                        .addParameter(ClassName.get(String.class), "variable")
                         .addParameter(ArrayTypeName.get(long[].class), "values")
+                        .addStatement("$T statement = $T.getInstance().compileStatement(db, \"INSERT INTO \" + table + \" (_object_id, value) VALUES (?, ?)\")", Constants.statementClassName, Constants.daoClassName)
                         .beginControlFlow("for(long value : values)")
-                        .addStatement("$T contentValues = new $T()", Constants.contentValuesClassName, Constants.contentValuesClassName)
-                        .addStatement("contentValues.put($S,objectId)", "_object_id")
-                        .addStatement("contentValues.put($S,variable)", Constants.FIELD_NAME)
-                        .addStatement("contentValues.put($S,value)", "value")
-                        .addStatement("db.insert($S, null, contentValues)", Constants.PRIMITIVE_TABLE_LONG)
+                        .addStatement("statement.bindLong(1, objectId)")
+                        .addStatement("statement.bindLong(2, value)")
+                        .addStatement("statement.executeInsert()")
                         .endControlFlow()
                         .build())
 
                 .addMethod(MethodSpec.methodBuilder("addLongs")
                         .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
                         .addParameter(Constants.databaseClassName, "db")
+                        .addParameter(ClassName.get(String.class), "table")
                         .addParameter(TypeName.LONG, "objectId")
-                        .addParameter(ClassName.get(String.class), "variable")
                         .addParameter(ArrayTypeName.get(Long[].class), "values")
+                        .addStatement("$T statement = $T.getInstance().compileStatement(db, \"INSERT INTO \" + table + \" (_object_id, value) VALUES (?, ?)\")", Constants.statementClassName, Constants.daoClassName)
                         .beginControlFlow("for(Long value : values)")
-                        .addStatement("$T contentValues = new $T()", Constants.contentValuesClassName, Constants.contentValuesClassName)
-                        .addStatement("contentValues.put($S,objectId)", "_object_id")
-                        .addStatement("contentValues.put($S,variable)", Constants.FIELD_NAME)
-                        .addStatement("contentValues.put($S,value)", "value")
-                        .addStatement("db.insert($S, null, contentValues)", Constants.PRIMITIVE_TABLE_LONG)
+                        .addStatement("statement.bindLong(1, objectId)")
+                        .addStatement("if(value == null) statement.bindNull(2); else statement.bindLong(2, value)")
+                        .addStatement("statement.executeInsert()")
                         .endControlFlow()
                         .build())
 
@@ -222,65 +116,31 @@ public class PrimitiveCursorHelperGenerator {
 
                 //region strings
 
-                .addMethod(MethodSpec.methodBuilder("getStrings")
-                        .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
-                        .returns(ProcessUtils.listOf(String.class))
-                        .addParameter(Constants.databaseClassName, "db")
-                        .addParameter(TypeName.LONG, "objectId")
-                        .addParameter(ClassName.get(String.class), "variable")
-                        .addStatement("$T objects = new $T()", ProcessUtils.listOf(String.class), ProcessUtils.arraylistOf(String.class))
-                        .addStatement("$T cursor = db.rawQuery(\"SELECT value FROM $L WHERE _object_id = ? AND _field_name= ?\", new String[]{String.valueOf(objectId), variable})", Constants.cursorClassName, Constants.PRIMITIVE_TABLE_STRING)
-                        .addStatement("cursor.moveToFirst()")
-                        .beginControlFlow("while (!cursor.isAfterLast())")
-                        .addStatement("objects.add(cursor.getString(0))")
-                        .addStatement("cursor.moveToNext()")
-                        .addStatement("cursor.close()")
-                        .endControlFlow()
-                        .addStatement("return objects")
-                        .build())
-
-                .addMethod(MethodSpec.methodBuilder("getStringsArray")
-                        .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
-                        .returns(ArrayTypeName.get(String[].class))
-                        .addParameter(Constants.databaseClassName, "db")
-                        .addParameter(TypeName.LONG, "objectId")
-                        .addParameter(ClassName.get(String.class), "variable")
-                        .addStatement("List<String> objects = getStrings(db,objectId,variable)")
-                        .addStatement("if(objects == null) return null")
-                        .addStatement("String[] array = new String[objects.size()]")
-                        .beginControlFlow("for(int i=0,size=objects.size();i<size;++i)")
-                        .addStatement("array[i] = objects.get(i)")
-                        .endControlFlow()
-                        .addStatement("return array")
-                        .build())
-
                 .addMethod(MethodSpec.methodBuilder("addStrings")
                         .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
                         .addParameter(Constants.databaseClassName, "db")
+                        .addParameter(ClassName.get(String.class), "table")
                         .addParameter(TypeName.LONG, "objectId")
-                        .addParameter(ClassName.get(String.class), "variable")
                         .addParameter(ProcessUtils.listOf(String.class), "values")
+                        .addStatement("$T statement = $T.getInstance().compileStatement(db, \"INSERT INTO \" + table + \" (_object_id, value) VALUES (?, ?)\")", Constants.statementClassName, Constants.daoClassName)
                         .beginControlFlow("for(String value : values)")
-                        .addStatement("$T contentValues = new $T()", Constants.contentValuesClassName, Constants.contentValuesClassName)
-                        .addStatement("contentValues.put($S,objectId)", "_object_id")
-                        .addStatement("contentValues.put($S,variable)", Constants.FIELD_NAME)
-                        .addStatement("contentValues.put($S,value)", "value")
-                        .addStatement("db.insert($S, null, contentValues)", Constants.PRIMITIVE_TABLE_STRING)
+                        .addStatement("statement.bindLong(1, objectId)")
+                        .addStatement("if(value == null) statement.bindNull(2); else statement.bindString(2, value)")
+                        .addStatement("statement.executeInsert()")
                         .endControlFlow()
                         .build())
 
                 .addMethod(MethodSpec.methodBuilder("addStrings")
                         .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
                         .addParameter(Constants.databaseClassName, "db")
+                        .addParameter(ClassName.get(String.class), "table")
                         .addParameter(TypeName.LONG, "objectId")
-                        .addParameter(ClassName.get(String.class), "variable")
                         .addParameter(ArrayTypeName.get(String[].class), "values")
+                        .addStatement("$T statement = $T.getInstance().compileStatement(db, \"INSERT INTO \" + table + \" (_object_id, value) VALUES (?, ?)\")", Constants.statementClassName, Constants.daoClassName)
                         .beginControlFlow("for(String value : values)")
-                        .addStatement("$T contentValues = new $T()", Constants.contentValuesClassName, Constants.contentValuesClassName)
-                        .addStatement("contentValues.put($S,objectId)", "_object_id")
-                        .addStatement("contentValues.put($S,variable)", Constants.FIELD_NAME)
-                        .addStatement("contentValues.put($S,value)", "value")
-                        .addStatement("db.insert($S, null, contentValues)", Constants.PRIMITIVE_TABLE_STRING)
+                        .addStatement("statement.bindLong(1, objectId)")
+                        .addStatement("if(value == null) statement.bindNull(2); else statement.bindString(2, value)")
+                        .addStatement("statement.executeInsert()")
                         .endControlFlow()
                         .build())
 
@@ -288,95 +148,45 @@ public class PrimitiveCursorHelperGenerator {
 
                 //region floats
 
-                .addMethod(MethodSpec.methodBuilder("getFloats")
-                        .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
-                        .returns(ProcessUtils.listOf(Float.class))
-                        .addParameter(Constants.databaseClassName, "db")
-                        .addParameter(TypeName.LONG, "objectId")
-                        .addParameter(ClassName.get(String.class), "variable")
-                        .addStatement("$T objects = new $T()", ProcessUtils.listOf(Float.class), ProcessUtils.arraylistOf(Float.class))
-                        .addStatement("$T cursor = db.rawQuery(\"SELECT value FROM $L WHERE _object_id = ? AND _field_name= ?\", new String[]{String.valueOf(objectId), variable})", Constants.cursorClassName, Constants.PRIMITIVE_TABLE_FLOAT)
-                        .addStatement("cursor.moveToFirst()")
-                        .beginControlFlow("while (!cursor.isAfterLast())")
-                        .addStatement("objects.add(cursor.getFloat(0))")
-                        .addStatement("cursor.moveToNext()")
-                        .addStatement("cursor.close()")
-                        .endControlFlow()
-                        .addStatement("return objects")
-                        .build())
-
-                .addMethod(MethodSpec.methodBuilder("getFloatsArray")
-                        .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
-                        .returns(ArrayTypeName.get(Float[].class))
-                        .addParameter(Constants.databaseClassName, "db")
-                        .addParameter(TypeName.LONG, "objectId")
-                        .addParameter(ClassName.get(String.class), "variable")
-                        .addStatement("List<Float> objects = getFloats(db,objectId,variable)")
-                        .addStatement("if(objects == null) return null")
-                        .addStatement("Float[] array = new Float[objects.size()]")
-                        .beginControlFlow("for(int i=0,size=objects.size();i<size;++i)")
-                        .addStatement("array[i] = objects.get(i)")
-                        .endControlFlow()
-                        .addStatement("return array")
-                        .build())
-
-                .addMethod(MethodSpec.methodBuilder("getFloatsPrimitiveArray")
-                        .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
-                        .returns(ArrayTypeName.get(float[].class))
-                        .addParameter(Constants.databaseClassName, "db")
-                        .addParameter(TypeName.LONG, "objectId")
-                        .addParameter(ClassName.get(String.class), "variable")
-                        .addStatement("List<Float> objects = getFloats(db,objectId,variable)")
-                        .addStatement("if(objects == null) return null")
-                        .addStatement("float[] array = new float[objects.size()]")
-                        .beginControlFlow("for(int i=0,size=objects.size();i<size;++i)")
-                        .addStatement("array[i] = objects.get(i)")
-                        .endControlFlow()
-                        .addStatement("return array")
-                        .build())
-
                 .addMethod(MethodSpec.methodBuilder("addFloats")
                         .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
                         .addParameter(Constants.databaseClassName, "db")
+                        .addParameter(ClassName.get(String.class), "table")
                         .addParameter(TypeName.LONG, "objectId")
-                        .addParameter(ClassName.get(String.class), "variable")
                         .addParameter(ProcessUtils.listOf(Float.class), "values")
+                        .addStatement("$T statement = $T.getInstance().compileStatement(db, \"INSERT INTO \" + table + \" (_object_id, value) VALUES (?, ?)\")", Constants.statementClassName, Constants.daoClassName)
                         .beginControlFlow("for(float value : values)")
-                        .addStatement("$T contentValues = new $T()", Constants.contentValuesClassName, Constants.contentValuesClassName)
-                        .addStatement("contentValues.put($S,objectId)", "_object_id")
-                        .addStatement("contentValues.put($S,variable)", Constants.FIELD_NAME)
-                        .addStatement("contentValues.put($S,value)", "value")
-                        .addStatement("db.insert($S, null, contentValues)", Constants.PRIMITIVE_TABLE_FLOAT)
+                        .addStatement("statement.bindLong(1, objectId)")
+                        .addStatement("statement.bindDouble(2, value)")
+                        .addStatement("statement.executeInsert()")
                         .endControlFlow()
                         .build())
 
                 .addMethod(MethodSpec.methodBuilder("addFloats")
                         .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
                         .addParameter(Constants.databaseClassName, "db")
+                        .addParameter(ClassName.get(String.class), "table")
                         .addParameter(TypeName.LONG, "objectId")
-                        .addParameter(ClassName.get(String.class), "variable")
                         .addParameter(ArrayTypeName.get(float[].class), "values")
+                        .addStatement("$T statement = $T.getInstance().compileStatement(db, \"INSERT INTO \" + table + \" (_object_id, value) VALUES (?, ?)\")", Constants.statementClassName, Constants.daoClassName)
                         .beginControlFlow("for(float value : values)")
-                        .addStatement("$T contentValues = new $T()", Constants.contentValuesClassName, Constants.contentValuesClassName)
-                        .addStatement("contentValues.put($S,objectId)", "_object_id")
-                        .addStatement("contentValues.put($S,variable)", Constants.FIELD_NAME)
-                        .addStatement("contentValues.put($S,value)", "value")
-                        .addStatement("db.insert($S, null, contentValues)", Constants.PRIMITIVE_TABLE_FLOAT)
+                        .addStatement("statement.bindLong(1, objectId)")
+                        .addStatement("statement.bindDouble(2, value)")
+                        .addStatement("statement.executeInsert()")
                         .endControlFlow()
                         .build())
 
                 .addMethod(MethodSpec.methodBuilder("addFloats")
                         .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
                         .addParameter(Constants.databaseClassName, "db")
+                        .addParameter(ClassName.get(String.class), "table")
                         .addParameter(TypeName.LONG, "objectId")
-                        .addParameter(ClassName.get(String.class), "variable")
                         .addParameter(ArrayTypeName.get(Float[].class), "values")
+                        .addStatement("$T statement = $T.getInstance().compileStatement(db, \"INSERT INTO \" + table + \" (_object_id, value) VALUES (?, ?)\")", Constants.statementClassName, Constants.daoClassName)
                         .beginControlFlow("for(Float value : values)")
-                        .addStatement("$T contentValues = new $T()", Constants.contentValuesClassName, Constants.contentValuesClassName)
-                        .addStatement("contentValues.put($S,objectId)", "_object_id")
-                        .addStatement("contentValues.put($S,variable)", Constants.FIELD_NAME)
-                        .addStatement("contentValues.put($S,value)", "value")
-                        .addStatement("db.insert($S, null, contentValues)", Constants.PRIMITIVE_TABLE_FLOAT)
+                        .addStatement("statement.bindLong(1, objectId)")
+                        .addStatement("if(value == null) statement.bindNull(2); else statement.bindDouble(2, value)")
+                        .addStatement("statement.executeInsert()")
                         .endControlFlow()
                         .build())
 
@@ -384,95 +194,45 @@ public class PrimitiveCursorHelperGenerator {
 
                 //region double
 
-                .addMethod(MethodSpec.methodBuilder("getDoubles")
-                        .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
-                        .returns(ProcessUtils.listOf(Double.class))
-                        .addParameter(Constants.databaseClassName, "db")
-                        .addParameter(TypeName.LONG, "objectId")
-                        .addParameter(ClassName.get(String.class), "variable")
-                        .addStatement("$T objects = new $T()", ProcessUtils.listOf(Double.class), ProcessUtils.arraylistOf(Double.class))
-                        .addStatement("$T cursor = db.rawQuery(\"SELECT value FROM $L WHERE _object_id = ? AND _field_name= ?\", new String[]{String.valueOf(objectId), variable})", Constants.cursorClassName, Constants.PRIMITIVE_TABLE_DOUBLE)
-                        .addStatement("cursor.moveToFirst()")
-                        .beginControlFlow("while (!cursor.isAfterLast())")
-                        .addStatement("objects.add(cursor.getDouble(0))")
-                        .addStatement("cursor.moveToNext()")
-                        .addStatement("cursor.close()")
-                        .endControlFlow()
-                        .addStatement("return objects")
-                        .build())
-
-                .addMethod(MethodSpec.methodBuilder("getDoublesPrimitiveArray")
-                        .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
-                        .returns(ArrayTypeName.get(double[].class))
-                        .addParameter(Constants.databaseClassName, "db")
-                        .addParameter(TypeName.LONG, "objectId")
-                        .addParameter(ClassName.get(String.class), "variable")
-                        .addStatement("List<Double> objects = getDoubles(db,objectId,variable)")
-                        .addStatement("if(objects == null) return null")
-                        .addStatement("double[] array = new double[objects.size()]")
-                        .beginControlFlow("for(int i=0,size=objects.size();i<size;++i)")
-                        .addStatement("array[i] = objects.get(i)")
-                        .endControlFlow()
-                        .addStatement("return array")
-                        .build())
-
-                .addMethod(MethodSpec.methodBuilder("getDoublesArray")
-                        .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
-                        .returns(ArrayTypeName.get(Double[].class))
-                        .addParameter(Constants.databaseClassName, "db")
-                        .addParameter(TypeName.LONG, "objectId")
-                        .addParameter(ClassName.get(String.class), "variable")
-                        .addStatement("List<Double> objects = getDoubles(db,objectId,variable)")
-                        .addStatement("if(objects == null) return null")
-                        .addStatement("Double[] array = new Double[objects.size()]")
-                        .beginControlFlow("for(int i=0,size=objects.size();i<size;++i)")
-                        .addStatement("array[i] = objects.get(i)")
-                        .endControlFlow()
-                        .addStatement("return array")
-                        .build())
-
                 .addMethod(MethodSpec.methodBuilder("addDoubles")
                         .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
                         .addParameter(Constants.databaseClassName, "db")
+                        .addParameter(ClassName.get(String.class), "table")
                         .addParameter(TypeName.LONG, "objectId")
-                        .addParameter(ClassName.get(String.class), "variable")
                         .addParameter(ProcessUtils.listOf(Double.class), "values")
+                        .addStatement("$T statement = $T.getInstance().compileStatement(db, \"INSERT INTO \" + table + \" (_object_id, value) VALUES (?, ?)\")", Constants.statementClassName, Constants.daoClassName)
                         .beginControlFlow("for(double value : values)")
-                        .addStatement("$T contentValues = new $T()", Constants.contentValuesClassName, Constants.contentValuesClassName)
-                        .addStatement("contentValues.put($S,objectId)", "_object_id")
-                        .addStatement("contentValues.put($S,variable)", Constants.FIELD_NAME)
-                        .addStatement("contentValues.put($S,value)", "value")
-                        .addStatement("db.insert($S, null, contentValues)", Constants.PRIMITIVE_TABLE_DOUBLE)
+                        .addStatement("statement.bindLong(1, objectId)")
+                        .addStatement("statement.bindDouble(2, value)")
+                        .addStatement("statement.executeInsert()")
                         .endControlFlow()
                         .build())
 
                 .addMethod(MethodSpec.methodBuilder("addDoubles")
                         .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
                         .addParameter(Constants.databaseClassName, "db")
+                        .addParameter(ClassName.get(String.class), "table")
                         .addParameter(TypeName.LONG, "objectId")
-                        .addParameter(ClassName.get(String.class), "variable")
                         .addParameter(ArrayTypeName.get(double[].class), "values")
+                        .addStatement("$T statement = $T.getInstance().compileStatement(db, \"INSERT INTO \" + table + \" (_object_id, value) VALUES (?, ?)\")", Constants.statementClassName, Constants.daoClassName)
                         .beginControlFlow("for(double value : values)")
-                        .addStatement("$T contentValues = new $T()", Constants.contentValuesClassName, Constants.contentValuesClassName)
-                        .addStatement("contentValues.put($S,objectId)", "_object_id")
-                        .addStatement("contentValues.put($S,variable)", Constants.FIELD_NAME)
-                        .addStatement("contentValues.put($S,value)", "value")
-                        .addStatement("db.insert($S, null, contentValues)", Constants.PRIMITIVE_TABLE_DOUBLE)
+                        .addStatement("statement.bindLong(1, objectId)")
+                        .addStatement("statement.bindDouble(2, value)")
+                        .addStatement("statement.executeInsert()")
                         .endControlFlow()
                         .build())
 
                 .addMethod(MethodSpec.methodBuilder("addDoubles")
                         .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
                         .addParameter(Constants.databaseClassName, "db")
+                        .addParameter(ClassName.get(String.class), "table")
                         .addParameter(TypeName.LONG, "objectId")
-                        .addParameter(ClassName.get(String.class), "variable")
                         .addParameter(ArrayTypeName.get(Double[].class), "values")
+                        .addStatement("$T statement = $T.getInstance().compileStatement(db, \"INSERT INTO \" + table + \" (_object_id, value) VALUES (?, ?)\")", Constants.statementClassName, Constants.daoClassName)
                         .beginControlFlow("for(Double value : values)")
-                        .addStatement("$T contentValues = new $T()", Constants.contentValuesClassName, Constants.contentValuesClassName)
-                        .addStatement("contentValues.put($S,objectId)", "_object_id")
-                        .addStatement("contentValues.put($S,variable)", Constants.FIELD_NAME)
-                        .addStatement("contentValues.put($S,value)", "value")
-                        .addStatement("db.insert($S, null, contentValues)", Constants.PRIMITIVE_TABLE_DOUBLE)
+                        .addStatement("statement.bindLong(1, objectId)")
+                        .addStatement("if(value == null) statement.bindNull(2); else statement.bindDouble(2, value)")
+                        .addStatement("statement.executeInsert()")
                         .endControlFlow()
                         .build())
 
@@ -480,100 +240,147 @@ public class PrimitiveCursorHelperGenerator {
 
                 //region booleans
 
-                .addMethod(MethodSpec.methodBuilder("getBooleans")
-                        .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
-                        .returns(ProcessUtils.listOf(Boolean.class))
-                        .addParameter(Constants.databaseClassName, "db")
-                        .addParameter(TypeName.LONG, "objectId")
-                        .addParameter(ClassName.get(String.class), "variable")
-                        .addStatement("$T objects = new $T()", ProcessUtils.listOf(Boolean.class), ProcessUtils.arraylistOf(Boolean.class))
-                        .addStatement("$T cursor = db.rawQuery(\"SELECT value FROM $L WHERE _object_id = ? AND _field_name= ?\", new String[]{String.valueOf(objectId), variable})", Constants.cursorClassName, Constants.PRIMITIVE_TABLE_BOOLEAN)
-                        .addStatement("cursor.moveToFirst()")
-                        .beginControlFlow("while (!cursor.isAfterLast())")
-                        .addStatement("objects.add(cursor.getInt(0) == 1 ? true : false)")
-                        .addStatement("cursor.moveToNext()")
-                        .addStatement("cursor.close()")
-                        .endControlFlow()
-                        .addStatement("return objects")
-                        .build())
-
-                .addMethod(MethodSpec.methodBuilder("getBooleansPrimitiveArray")
-                        .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
-                        .returns(ArrayTypeName.get(boolean[].class))
-                        .addParameter(Constants.databaseClassName, "db")
-                        .addParameter(TypeName.LONG, "objectId")
-                        .addParameter(ClassName.get(String.class), "variable")
-                        .addStatement("List<Boolean> objects = getBooleans(db,objectId,variable)")
-                        .addStatement("if(objects == null) return null")
-                        .addStatement("boolean[] array = new boolean[objects.size()]")
-                        .beginControlFlow("for(int i=0,size=objects.size();i<size;++i)")
-                        .addStatement("array[i] = objects.get(i)")
-                        .endControlFlow()
-                        .addStatement("return array")
-                        .build())
-
-                .addMethod(MethodSpec.methodBuilder("getBooleansArray")
-                        .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
-                        .returns(ArrayTypeName.get(Boolean[].class))
-                        .addParameter(Constants.databaseClassName, "db")
-                        .addParameter(TypeName.LONG, "objectId")
-                        .addParameter(ClassName.get(String.class), "variable")
-                        .addStatement("List<Boolean> objects = getBooleans(db,objectId,variable)")
-                        .addStatement("if(objects == null) return null")
-                        .addStatement("Boolean[] array = new Boolean[objects.size()]")
-                        .beginControlFlow("for(int i=0,size=objects.size();i<size;++i)")
-                        .addStatement("array[i] = objects.get(i)")
-                        .endControlFlow()
-                        .addStatement("return array")
-                        .build())
-
                 .addMethod(MethodSpec.methodBuilder("addBooleans")
                         .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
                         .addParameter(Constants.databaseClassName, "db")
+                        .addParameter(ClassName.get(String.class), "table")
                         .addParameter(TypeName.LONG, "objectId")
-                        .addParameter(ClassName.get(String.class), "variable")
                         .addParameter(ProcessUtils.listOf(Boolean.class), "values")
+                        .addStatement("$T statement = $T.getInstance().compileStatement(db, \"INSERT INTO \" + table + \" (_object_id, value) VALUES (?, ?)\")", Constants.statementClassName, Constants.daoClassName)
                         .beginControlFlow("for(boolean value : values)")
-                        .addStatement("$T contentValues = new $T()", Constants.contentValuesClassName, Constants.contentValuesClassName)
-                        .addStatement("contentValues.put($S,objectId)", "_object_id")
-                        .addStatement("contentValues.put($S,variable)", Constants.FIELD_NAME)
-                        .addStatement("contentValues.put($S,value ? 1 : 0)", "value")
-                        .addStatement("db.insert($S, null, contentValues)", Constants.PRIMITIVE_TABLE_BOOLEAN)
+                        .addStatement("statement.bindLong(1, objectId)")
+                        .addStatement("statement.bindLong(2, value ? 1 : 0)")
+                        .addStatement("statement.executeInsert()")
                         .endControlFlow()
                         .build())
 
                 .addMethod(MethodSpec.methodBuilder("addBooleans")
                         .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
                         .addParameter(Constants.databaseClassName, "db")
+                        .addParameter(ClassName.get(String.class), "table")
                         .addParameter(TypeName.LONG, "objectId")
-                        .addParameter(ClassName.get(String.class), "variable")
                         .addParameter(ArrayTypeName.get(boolean[].class), "values")
+                        .addStatement("$T statement = $T.getInstance().compileStatement(db, \"INSERT INTO \" + table + \" (_object_id, value) VALUES (?, ?)\")", Constants.statementClassName, Constants.daoClassName)
                         .beginControlFlow("for(boolean value : values)")
-                        .addStatement("$T contentValues = new $T()", Constants.contentValuesClassName, Constants.contentValuesClassName)
-                        .addStatement("contentValues.put($S,objectId)", "_object_id")
-                        .addStatement("contentValues.put($S,variable)", Constants.FIELD_NAME)
-                        .addStatement("contentValues.put($S,value ? 1 : 0)", "value")
-                        .addStatement("db.insert($S, null, contentValues)", Constants.PRIMITIVE_TABLE_BOOLEAN)
+                        .addStatement("statement.bindLong(1, objectId)")
+                        .addStatement("statement.bindLong(2, value ? 1 : 0)")
+                        .addStatement("statement.executeInsert()")
                         .endControlFlow()
                         .build())
 
                 .addMethod(MethodSpec.methodBuilder("addBooleans")
                         .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
                         .addParameter(Constants.databaseClassName, "db")
+                        .addParameter(ClassName.get(String.class), "table")
                         .addParameter(TypeName.LONG, "objectId")
-                        .addParameter(ClassName.get(String.class), "variable")
                         .addParameter(ArrayTypeName.get(Boolean[].class), "values")
+                        .addStatement("$T statement = $T.getInstance().compileStatement(db, \"INSERT INTO \" + table + \" (_object_id, value) VALUES (?, ?)\")", Constants.statementClassName, Constants.daoClassName)
                         .beginControlFlow("for(Boolean value : values)")
-                        .addStatement("$T contentValues = new $T()", Constants.contentValuesClassName, Constants.contentValuesClassName)
-                        .addStatement("contentValues.put($S,objectId)", "_object_id")
-                        .addStatement("contentValues.put($S,variable)", Constants.FIELD_NAME)
-                        .addStatement("contentValues.put($S,value ? 1 : 0)", "value")
-                        .addStatement("db.insert($S, null, contentValues)", Constants.PRIMITIVE_TABLE_BOOLEAN)
+                        .addStatement("statement.bindLong(1, objectId)")
+                        .addStatement("statement.bindLong(2, value ? 1 : 0)")
+                        .addStatement("statement.executeInsert()")
                         .endControlFlow()
                         .build())
 
                         //endregion
 
+                .addMethods(generateBatchGetters("Integers", TypeName.INT, "cursor.getInt(1)", true))
+                .addMethods(generateBatchGetters("Longs", TypeName.LONG, "cursor.getLong(1)", true))
+                .addMethods(generateBatchGetters("Strings", ClassName.get(String.class), "cursor.getString(1)", false))
+                .addMethods(generateBatchGetters("Floats", TypeName.FLOAT, "cursor.getFloat(1)", true))
+                .addMethods(generateBatchGetters("Doubles", TypeName.DOUBLE, "cursor.getDouble(1)", true))
+                .addMethods(generateBatchGetters("Booleans", TypeName.BOOLEAN, "cursor.getInt(1) == 1", true))
+
+                .build();
+    }
+
+    /**
+     * getters of the values of a batch of objects, with one query by BATCH_SIZE objects, given to the logger if any.
+     * They return the values of objectIds[i] at the index i, an empty collection if it has none.
+     * An id repeated in objectIds is read once, each of its indexes gets its own collection
+     */
+    private List<MethodSpec> generateBatchGetters(String name, TypeName type, String read, boolean hasPrimitiveArray) {
+        List<MethodSpec> methods = new ArrayList<>();
+        TypeName boxed = type.box();
+        methods.add(generateBatchListGetter("get" + name, boxed, read));
+        methods.add(generateBatchArrayGetter("get" + name + "Array", boxed, read));
+        if (hasPrimitiveArray) {
+            methods.add(generateBatchArrayGetter("get" + name + "PrimitiveArray", type, read));
+        }
+        return methods;
+    }
+
+    private MethodSpec.Builder batchGetter(String methodName, TypeName returnType) {
+        return MethodSpec.methodBuilder(methodName)
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .returns(returnType)
+                .addParameter(Constants.databaseClassName, "db")
+                .addParameter(ClassName.get(String.class), "table")
+                .addParameter(TypeName.get(long[].class), "objectIds")
+                .addParameter(ClassName.get(Constants.DAO_PACKAGE, Constants.QUERY_LOGGER), "logger")
+                .addStatement("$T<$T, int[]> positions = $T.positions(objectIds)", ClassName.get(Map.class), ClassName.get(Long.class), Constants.batchQueriesClassName)
+                .addStatement("long[] distinctIds = $T.distinct(objectIds)", Constants.batchQueriesClassName);
+    }
+
+    private MethodSpec.Builder beginBatch(MethodSpec.Builder builder) {
+        return builder.beginControlFlow("for(int start = 0; start < distinctIds.length; start += $T.BATCH_SIZE)", Constants.batchQueriesClassName)
+                .addStatement("final int end = Math.min(distinctIds.length, start + $T.BATCH_SIZE)", Constants.batchQueriesClassName)
+                .addStatement("final $T query = $S + table + $S + $T.placeholders(end - start) + $S", ClassName.get(String.class),
+                        "SELECT _object_id, value FROM ", " WHERE _object_id IN (", Constants.batchQueriesClassName, ") ORDER BY _object_id, " + Constants.FIELD_ID)
+                .addStatement("final String[] args = $T.args(distinctIds, start, end)", Constants.batchQueriesClassName)
+                .addStatement("if(logger != null) logger.onQuery(query, args)")
+                .addStatement("$T cursor = db.rawQuery(query, args)", Constants.cursorClassName);
+    }
+
+    private MethodSpec generateBatchListGetter(String methodName, TypeName boxed, String read) {
+        TypeName listType = ProcessUtils.listOf(boxed);
+        MethodSpec.Builder builder = batchGetter(methodName, ProcessUtils.listOf(listType))
+                .addStatement("$T values = new $T<>(objectIds.length)", ProcessUtils.listOf(listType), ClassName.get(ArrayList.class))
+                .addStatement("for(int i=0;i<objectIds.length;++i) values.add(new $T())", ProcessUtils.arraylistOf(boxed));
+        beginBatch(builder)
+                .addStatement("long currentId = 0")
+                .addStatement("int[] current = null")
+                .beginControlFlow("while(cursor.moveToNext())")
+                .addStatement("long objectId = cursor.getLong(0)")
+                .beginControlFlow("if(current == null || objectId != currentId)")
+                .addStatement("current = positions.get(objectId)")
+                .addStatement("currentId = objectId")
+                .endControlFlow()
+                .addStatement("$T value = " + read, boxed)
+                .addStatement("for(int index : current) values.get(index).add(value)")
+                .endControlFlow()
+                .addStatement("cursor.close()")
+                .endControlFlow();
+        return builder.addStatement("return values").build();
+    }
+
+    /**
+     * the values of an object are contiguous, they are copied from a buffer once all of them are read
+     */
+    private MethodSpec generateBatchArrayGetter(String methodName, TypeName component, String read) {
+        MethodSpec.Builder builder = batchGetter(methodName, ArrayTypeName.of(ArrayTypeName.of(component)))
+                .addStatement("$T[][] values = new $T[objectIds.length][]", component, component)
+                .addStatement("$T[] buffer = new $T[16]", component, component);
+        beginBatch(builder)
+                .addStatement("long currentId = 0")
+                .addStatement("int count = 0")
+                .beginControlFlow("while(cursor.moveToNext())")
+                .addStatement("long objectId = cursor.getLong(0)")
+                .beginControlFlow("if(count != 0 && objectId != currentId)")
+                .addStatement("for(int index : positions.get(currentId)) values[index] = $T.copyOf(buffer, count)", ClassName.get(Arrays.class))
+                .addStatement("count = 0")
+                .endControlFlow()
+                .addStatement("currentId = objectId")
+                .addStatement("if(count == buffer.length) buffer = $T.copyOf(buffer, count * 2)", ClassName.get(Arrays.class))
+                .addStatement("buffer[count++] = " + read)
+                .endControlFlow()
+                .beginControlFlow("if(count != 0)")
+                .addStatement("for(int index : positions.get(currentId)) values[index] = $T.copyOf(buffer, count)", ClassName.get(Arrays.class))
+                .endControlFlow()
+                .addStatement("cursor.close()")
+                .endControlFlow();
+        return builder.addStatement("for(int i=0;i<values.length;++i) if(values[i] == null) values[i] = new $T[0]", component)
+                .addStatement("return values")
                 .build();
     }
 }
\ No newline at end of file
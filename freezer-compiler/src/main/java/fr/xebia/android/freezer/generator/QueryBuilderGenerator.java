@@ -2,6 +2,7 @@ package fr.xebia.android.freezer.generator;
 
 import com.squareup.javapoet.ArrayTypeName;
 import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.FieldSpec;
 import com.squareup.javapoet.MethodSpec;
 import com.squareup.javapoet.ParameterizedTypeName;
 import com.squareup.javapoet.TypeName;
@@ -9,6 +10,7 @@ import com.squareup.javapoet.TypeSpec;
 import com.squareup.javapoet.TypeVariableName;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import javax.lang.model.element.Modifier;
@@ -21,18 +23,84 @@ import fr.xebia.android.freezer.ProcessUtils;
  */
 public class QueryBuilderGenerator {
 
+    boolean compactSchema;
+
+    public QueryBuilderGenerator(boolean compactSchema) {
+        this.compactSchema = compactSchema;
+    }
+
+    /**
+     * reads one column of the result straight from the cursor, without creating the objects
+     */
+    private MethodSpec pluckMethod(String name, TypeName type, String cursorGetter) {
+        return MethodSpec.methodBuilder(name)
+            .returns(ArrayTypeName.of(type))
+            .addModifiers(Modifier.PROTECTED)
+            .addParameter(TypeName.get(String.class), "select")
+            .addParameter(TypeName.INT, "column")
+            .addStatement("$T db = acquireQueryDatabase()", Constants.databaseClassName)
+            .beginControlFlow("try")
+            .addStatement("$T query = buildQuery(select)", ClassName.get(String.class))
+            .addStatement("String[] args = constructArgs()")
+            .addStatement("if(logger != null) logger.onQuery(query,args)")
+            .addStatement("$T cursor = db.rawQuery(query, args)", Constants.cursorClassName)
+            .addStatement("$T values = new $T[cursor.getCount()]", ArrayTypeName.of(type), type)
+            .addStatement("for(int i=0;cursor.moveToNext();++i) values[i] = cursor.$L(column)", cursorGetter)
+            .addStatement("cursor.close()")
+            .addStatement("return values")
+            .nextControlFlow("finally")
+            .addStatement("releaseQueryDatabase(db)")
+            .endControlFlow()
+            .build();
+    }
+
     public TypeSpec generate() {
         return TypeSpec.classBuilder(Constants.QUERY_BUILDER_SUFFIX)
             .addModifiers(Modifier.PUBLIC, Modifier.ABSTRACT)
 
+            .addField(FieldSpec.builder(TypeName.CHAR, "SHAPE_WHERE", Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                .addJavadoc("kinds of the parts appended to the shape\n")
+                .initializer("'w'")
+                .build())
+            .addField(FieldSpec.builder(TypeName.CHAR, "SHAPE_ORDER", Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL).initializer("'o'").build())
+            .addField(FieldSpec.builder(TypeName.CHAR, "SHAPE_TABLE", Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL).initializer("'t'").build())
+            .addField(FieldSpec.builder(TypeName.CHAR, "SHAPE_MATCH", Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL).initializer("'m'").build())
+            .addField(FieldSpec.builder(TypeName.CHAR, "SHAPE_SELECT", Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL).initializer("'s'").build())
+            .addField(FieldSpec.builder(TypeName.CHAR, "SHAPE_GROUP_BY", Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL).initializer("'g'").build())
+            .addField(FieldSpec.builder(TypeName.CHAR, "SHAPE_LIMIT", Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL).initializer("'l'").build())
+            .addField(FieldSpec.builder(TypeName.CHAR, "SHAPE_SEEK", Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL).initializer("'k'").build())
+            .addField(FieldSpec.builder(TypeName.INT, "MAX_BOUND_IN", Modifier.PROTECTED, Modifier.STATIC, Modifier.FINAL)
+                .addJavadoc("larger IN lists go through a temp table, see {@link $T}\n", Constants.inTablesClassName)
+                .initializer("256")
+                .build())
+            .addField(FieldSpec.builder(TypeName.INT, "MAX_BOUND_ARGS", Modifier.PROTECTED, Modifier.STATIC, Modifier.FINAL)
+                .addJavadoc("the default SQLITE_MAX_VARIABLE_NUMBER, an IN list which would leave less than MAX_BOUND_IN free arguments\n")
+                .addJavadoc("goes through a temp table\n")
+                .initializer("999")
+                .build())
             .addField(ClassName.get(StringBuilder.class), "queryBuilder", Modifier.PROTECTED)
             .addField(ClassName.get(StringBuilder.class), "orderBuilder", Modifier.PROTECTED)
-            .addField(ClassName.get(StringBuilder.class), "limitBuilder", Modifier.PROTECTED)
+            .addField(TypeName.INT, "limitStart", Modifier.PROTECTED)
+            .addField(TypeName.INT, "limitCount", Modifier.PROTECTED)
             .addField(ProcessUtils.listOf(String.class), "args", Modifier.PROTECTED)
             .addField(ProcessUtils.listOf(String.class), "fromTables", Modifier.PROTECTED)
             .addField(ProcessUtils.listOf(String.class), "fromTablesNames", Modifier.PROTECTED)
             .addField(ProcessUtils.listOf(String.class), "fromTablesId", Modifier.PROTECTED)
+            .addField(ProcessUtils.listOf(String.class), "sortColumns", Modifier.PROTECTED)
+            .addField(ProcessUtils.listOf(String.class), "sortNames", Modifier.PROTECTED)
+            .addField(ProcessUtils.listOf(Boolean.class), "sortAscending", Modifier.PROTECTED)
+            .addField(TypeName.get(String.class), "seekTable", Modifier.PROTECTED)
+            .addField(TypeName.get(String.class), "seekId", Modifier.PROTECTED)
+            .addField(TypeName.get(String.class), "matchJoin", Modifier.PROTECTED)
+            .addField(TypeName.get(String.class), "matchArg", Modifier.PROTECTED)
             .addField(TypeName.BOOLEAN, "named", Modifier.PROTECTED)
+            .addField(FieldSpec.builder(ProcessUtils.listOf(TypeName.get(String[].class)), "inTables", Modifier.PROTECTED)
+                .addJavadoc("values of the temp table {@link $T#name(int)} of each index, filled before the query runs\n", Constants.inTablesClassName)
+                .build())
+            .addField(FieldSpec.builder(ClassName.get(StringBuilder.class), "shape", Modifier.PROTECTED)
+                .addJavadoc("signature of the parts appended so far, without the argument values, the key of the sql in the {@link QueryCache}\n")
+                .initializer("new $T()", ClassName.get(StringBuilder.class))
+                .build())
             .addField(ClassName.get(Constants.DAO_PACKAGE, Constants.QUERY_LOGGER), "logger", Modifier.PROTECTED)
 
             .addMethod(MethodSpec.constructorBuilder()
@@ -43,6 +111,11 @@ public class QueryBuilderGenerator {
                 .addStatement("this.fromTables = new $T()", ProcessUtils.arraylistOf(String.class))
                 .addStatement("this.fromTablesNames = new $T()", ProcessUtils.arraylistOf(String.class))
                 .addStatement("this.fromTablesId = new $T()", ProcessUtils.arraylistOf(String.class))
+                .addStatement("this.sortColumns = new $T()", ProcessUtils.arraylistOf(String.class))
+                .addStatement("this.sortNames = new $T()", ProcessUtils.arraylistOf(String.class))
+                .addStatement("this.sortAscending = new $T()", ProcessUtils.arraylistOf(Boolean.class))
+                .addStatement("this.inTables = new $T()", ProcessUtils.arraylistOf(TypeName.get(String[].class)))
+                .addStatement("this.limitStart = -1")
                 .build())
 
             .addMethod(MethodSpec.constructorBuilder()
@@ -56,48 +129,129 @@ public class QueryBuilderGenerator {
 
             .addMethod(MethodSpec.methodBuilder("appendOr")
                 .addModifiers(Modifier.PROTECTED)
-                .addStatement("queryBuilder.append($S)", " or ")
+                .addStatement("appendWhere($S)", " or ")
                 .build())
 
             .addMethod(MethodSpec.methodBuilder("appendAnd")
                 .addModifiers(Modifier.PROTECTED)
-                .addStatement("queryBuilder.append($S)", " and ")
+                .addStatement("appendWhere($S)", " and ")
                 .build())
 
             .addMethod(MethodSpec.methodBuilder("appendBeginGroup")
                 .addModifiers(Modifier.PROTECTED)
-                .addStatement("queryBuilder.append($S)", " ( ")
+                .addStatement("appendWhere($S)", " ( ")
                 .build())
 
             .addMethod(MethodSpec.methodBuilder("appendEndGroup")
                 .addModifiers(Modifier.PROTECTED)
-                .addStatement("queryBuilder.append($S)", " ) ")
+                .addStatement("appendWhere($S)", " ) ")
                 .build())
 
             .addMethod(MethodSpec.methodBuilder("limitStartNumber")
                 .addModifiers(Modifier.PROTECTED)
                 .addParameter(TypeName.INT, "start")
                 .addParameter(TypeName.INT, "count")
-                .addStatement("this.limitBuilder = new $T()", ClassName.get(StringBuilder.class))
-                .addStatement("this.limitBuilder.append(start).append($S).append(count)", ", ")
+                .addStatement("this.limitStart = start")
+                .addStatement("this.limitCount = count")
                 .build())
 
             .addMethod(MethodSpec.methodBuilder("appendSortAsc")
                 .addModifiers(Modifier.PROTECTED)
                 .addParameter(ClassName.get(String.class), "tableName")
                 .addParameter(ClassName.get(String.class), "column")
-                .addStatement("if(orderBuilder.length() != 0) queryBuilder.append(',')")
-                .addStatement("orderBuilder.append(tableName).append(column)")
-                .addStatement("orderBuilder.append($S)", " ASC ")
+                .addStatement("appendOrder(tableName + column + $S)", " ASC ")
+                .addStatement("sortColumns.add(tableName + column)")
+                .addStatement("sortNames.add(column)")
+                .addStatement("sortAscending.add(true)")
                 .build())
 
             .addMethod(MethodSpec.methodBuilder("appendSortDesc")
                 .addModifiers(Modifier.PROTECTED)
                 .addParameter(ClassName.get(String.class), "tableName")
                 .addParameter(ClassName.get(String.class), "column")
-                .addStatement("if(orderBuilder.length() != 0) queryBuilder.append(',')")
-                .addStatement("orderBuilder.append(tableName).append(column)")
-                .addStatement("orderBuilder.append($S)", " DESC ")
+                .addStatement("appendOrder(tableName + column + $S)", " DESC ")
+                .addStatement("sortColumns.add(tableName + column)")
+                .addStatement("sortNames.add(column)")
+                .addStatement("sortAscending.add(false)")
+                .build())
+
+            .addMethod(MethodSpec.methodBuilder("appendWhere")
+                .addJavadoc("appends a part of the where clause, folded into the shape of the query\n")
+                .addModifiers(Modifier.PRIVATE)
+                .addParameter(TypeName.get(String.class), "part")
+                .addStatement("queryBuilder.append(part)")
+                .addStatement("fold(shape, SHAPE_WHERE, part)")
+                .build())
+
+            .addMethod(MethodSpec.methodBuilder("appendOrder")
+                .addJavadoc("appends a sort to the order by clause, folded into the shape of the query\n")
+                .addModifiers(Modifier.PRIVATE)
+                .addParameter(TypeName.get(String.class), "sort")
+                .addStatement("if(orderBuilder.length() != 0) orderBuilder.append(',')")
+                .addStatement("orderBuilder.append(sort)")
+                .addStatement("fold(shape, SHAPE_ORDER, sort)")
+                .build())
+
+            .addMethod(MethodSpec.methodBuilder("fold")
+                .addJavadoc("Appends a part of the query to a shape, after its kind and its length\n")
+                .addJavadoc("so that the parts of different clauses, or the same chars split differently, give different shapes.\n")
+                .addJavadoc("@param part null to only append the kind\n")
+                .addModifiers(Modifier.PROTECTED, Modifier.STATIC)
+                .addParameter(ClassName.get(StringBuilder.class), "shape")
+                .addParameter(TypeName.CHAR, "kind")
+                .addParameter(TypeName.get(String.class), "part")
+                .addStatement("shape.append(kind)")
+                .addStatement("if(part != null) shape.append(part.length()).append(':').append(part)")
+                .build())
+
+            .addMethod(MethodSpec.methodBuilder("seekAfter")
+                .addJavadoc("Only keeps the rows sorted after the row with this id, through a keyset seek on the sort columns then the id.\n")
+                .addJavadoc("The anchor row must still exist, and its sort columns must not be null.\n")
+                .addModifiers(Modifier.PROTECTED)
+                .addParameter(TypeName.get(String.class), "table")
+                .addParameter(TypeName.LONG, "id")
+                .addStatement("this.seekTable = table")
+                .addStatement("this.seekId = String.valueOf(id)")
+                .build())
+
+            .addMethod(MethodSpec.methodBuilder("constructSeek")
+                .returns(TypeName.get(String.class))
+                .addModifiers(Modifier.PROTECTED)
+                .addStatement("final int size = sortColumns.size()")
+                .addStatement("$T seek = new $T()", ClassName.get(StringBuilder.class), ClassName.get(StringBuilder.class))
+                .addCode("//bounds the first sort column alone so that an index on it can be used\n")
+                .addStatement("if(size != 0) seek.append(sortColumns.get(0)).append(sortAscending.get(0) ? $S : $S).append(seekAnchor(0)).append($S)", " >= ", " <= ", " and ")
+                .addStatement("seek.append('(')")
+                .beginControlFlow("for(int i=0;i<=size;++i)")
+                .addStatement("if(i != 0) seek.append($S)", " or ")
+                .addStatement("seek.append('(')")
+                .addStatement("for(int j=0;j<i;++j) seek.append(sortColumns.get(j)).append($S).append(seekAnchor(j)).append($S)", " = ", " and ")
+                .addStatement("if(i < size) seek.append(sortColumns.get(i)).append(sortAscending.get(i) ? $S : $S).append(seekAnchor(i))", " > ", " < ")
+                .addStatement("else seek.append(seekTable).append($S).append(idAscending() ? $S : $S).append('?')", "." + Constants.FIELD_ID, " > ", " < ")
+                .addStatement("seek.append(')')")
+                .endControlFlow()
+                .addStatement("seek.append(')')")
+                .addStatement("return seek.toString()")
+                .build())
+
+            .addMethod(MethodSpec.methodBuilder("seekAnchor")
+                .returns(TypeName.get(String.class))
+                .addModifiers(Modifier.PRIVATE)
+                .addParameter(TypeName.INT, "index")
+                .addStatement("return \"(select \" + sortNames.get(index) + \" from \" + seekTable + \" where $L = ?)\"", Constants.FIELD_ID)
+                .build())
+
+            .addMethod(MethodSpec.methodBuilder("seekArgsCount")
+                .returns(TypeName.INT)
+                .addModifiers(Modifier.PRIVATE)
+                .addStatement("final int size = sortColumns.size()")
+                .addStatement("return (size == 0 ? 0 : 1) + (size + 1) * (size + 2) / 2")
+                .build())
+
+            .addMethod(MethodSpec.methodBuilder("idAscending")
+                .returns(TypeName.BOOLEAN)
+                .addModifiers(Modifier.PRIVATE)
+                .addStatement("return sortAscending.isEmpty() || sortAscending.get(sortAscending.size() - 1)")
                 .build())
 
             .addMethod(MethodSpec.methodBuilder("query")
@@ -113,38 +267,360 @@ public class QueryBuilderGenerator {
                 .addStatement("args.addAll(this.args)")
                 .addStatement("queryBuilder.append(\" AND \").append(joinTable).append(\".\").append(joinIdFrom).append(\"  = \").append(fromTable).append(\".$L\")", Constants.FIELD_ID)
                 .addStatement("queryBuilder.append(\" AND \").append(joinTable).append(\".\").append(joinIdTo).append(\"  = \").append(table).append(\".$L\")", Constants.FIELD_ID)
-                .addStatement("queryBuilder.append(\" AND \").append(joinTable).append(\".$L  = '\").append(variable).append(\"'\")", Constants.FIELD_NAME)
+                .addStatement("queryBuilder.append(\" AND \").append(joinTable).append(\".$L  = '\").append(variable).append(\"'\")", ProcessUtils.getJoinFieldColumn(compactSchema))
                 .addStatement("return queryBuilder.toString().replace($S,table)", Constants.QUERY_NAMED)
                 .build())
 
             .addMethod(MethodSpec.methodBuilder("constructArgs")
+                .addJavadoc("@return the arguments to bind to {@link #buildQuery(String)}\n")
                 .returns(TypeName.get(String[].class))
                 .addModifiers(Modifier.PROTECTED)
-                .addStatement("return args.toArray(new String[args.size()])")
+                .addStatement("if(limitStart == -1 && seekId == null && matchJoin == null) return args.toArray(new String[args.size()])")
+                .addCode("//the argument of the match join comes first, as it is in the from clause\n")
+                .addStatement("final int matchCount = matchJoin == null ? 0 : 1")
+                .addStatement("final int seekCount = seekId == null ? 0 : seekArgsCount()")
+                .addStatement("String[] array = new String[matchCount + args.size() + seekCount + (limitStart == -1 ? 0 : 2)]")
+                .addStatement("if(matchJoin != null) array[0] = matchArg")
+                .addStatement("for(int i=0;i<args.size();++i) array[matchCount + i] = args.get(i)")
+                .addStatement("for(int i=0;i<seekCount;++i) array[matchCount + args.size() + i] = seekId")
+                .beginControlFlow("if(limitStart != -1)")
+                .addStatement("array[matchCount + args.size() + seekCount] = String.valueOf(limitStart)")
+                .addStatement("array[matchCount + args.size() + seekCount + 1] = String.valueOf(limitCount)")
+                .endControlFlow()
+                .addStatement("return array")
                 .build())
 
             .addMethod(MethodSpec.methodBuilder("constructQuery")
                 .returns(TypeName.get(String.class))
                 .addModifiers(Modifier.PUBLIC)
+                .addStatement("return constructQuery(null)")
+                .build())
+
+            .addMethod(MethodSpec.methodBuilder("constructQuery")
+                .returns(TypeName.get(String.class))
+                .addModifiers(Modifier.PUBLIC)
+                .addParameter(TypeName.get(String.class), "groupBy")
                 .addStatement("$T query = new $T()", ClassName.get(StringBuilder.class), ClassName.get(StringBuilder.class))
+                .addStatement("if(matchJoin != null) query.append(matchJoin)")
                 .addStatement("for($T s : fromTables) query.append($S).append(s)", ClassName.get(String.class), ", ")
+                .beginControlFlow("if(seekId == null)")
                 .addStatement("if (queryBuilder.length() != 0) query.append($S)", " where ")
                 .addStatement("query.append(queryBuilder.toString())")
+                .nextControlFlow("else")
+                .addStatement("query.append($S)", " where ")
+                .addStatement("if (queryBuilder.length() != 0) query.append('(').append(queryBuilder.toString()).append($S)", ") and ")
+                .addStatement("query.append(constructSeek())")
+                .endControlFlow()
+                .addStatement("if(groupBy != null) query.append($S).append(groupBy)", " GROUP BY ")
+                .beginControlFlow("if(seekId == null)")
                 .addStatement("if(orderBuilder.length() != 0) query.append($S)", " ORDER BY ")
                 .addStatement("query.append(orderBuilder.toString())")
-                .addStatement("if(limitBuilder != null && limitBuilder.length() != 0){ query.append($S); query.append(limitBuilder.toString()); }", " LIMIT ")
+                .nextControlFlow("else")
+                .addCode("//the id breaks the ties between rows having the same sort values\n")
+                .addStatement("query.append($S).append(orderBuilder.toString())", " ORDER BY ")
+                .addStatement("if(orderBuilder.length() != 0) query.append(',')")
+                .addStatement("query.append(seekTable).append($S).append(idAscending() ? $S : $S)", "." + Constants.FIELD_ID, " ASC ", " DESC ")
+                .endControlFlow()
+                .addStatement("if(limitStart != -1) query.append($S)", " LIMIT ?, ?")
                 .addStatement("return query.toString()")
                 .build())
 
+            .addMethod(MethodSpec.methodBuilder("buildQuery")
+                .returns(TypeName.get(String.class))
+                .addModifiers(Modifier.PROTECTED)
+                .addParameter(TypeName.get(String.class), "select")
+                .addStatement("return buildQuery(select, null)")
+                .build())
+
+            .addMethod(MethodSpec.methodBuilder("buildQuery")
+                .returns(TypeName.get(String.class))
+                .addModifiers(Modifier.PROTECTED)
+                .addParameter(TypeName.get(String.class), "select")
+                .addParameter(TypeName.get(String.class), "groupBy")
+                .addCode("//the limit and the seek are folded here, first() and single() set a limit for one execution\n")
+                .addStatement("final int length = shape.length()")
+                .addStatement("fold(shape, SHAPE_SELECT, select)")
+                .addStatement("if(groupBy != null) fold(shape, SHAPE_GROUP_BY, groupBy)")
+                .addStatement("if(limitStart != -1) fold(shape, SHAPE_LIMIT, null)")
+                .addStatement("if(seekId != null) fold(shape, SHAPE_SEEK, seekTable)")
+                .addStatement("final $T key = shape.toString()", ClassName.get(String.class))
+                .addStatement("shape.setLength(length)")
+                .addStatement("$T cache = $T.getInstance().getQueryCache()", Constants.queryCacheClassName, Constants.daoClassName)
+                .addStatement("$T query = cache.get(key)", ClassName.get(String.class))
+                .beginControlFlow("if(query == null)")
+                .addStatement("query = select + constructQuery(groupBy)")
+                .addStatement("cache.put(key, query)")
+                .endControlFlow()
+                .addStatement("return query")
+                .build())
+
+            .addMethod(MethodSpec.methodBuilder("acquireQueryDatabase")
+                .addJavadoc("Leases a connection to run this query on. When it has temp tables, they are filled in a transaction\n")
+                .addJavadoc("of the shared connection, which is returned instead of a reader.\n")
+                .addJavadoc("Each call must be balanced by a {@link #releaseQueryDatabase($T)}.\n", Constants.databaseClassName)
+                .returns(Constants.databaseClassName)
+                .addModifiers(Modifier.PROTECTED)
+                .addStatement("if(inTables.isEmpty()) return $T.getInstance().acquireReadableDatabase()", Constants.daoClassName)
+                .addStatement("$T db = $T.getInstance().beginTransaction()", Constants.databaseClassName, Constants.daoClassName)
+                .beginControlFlow("try")
+                .addStatement("fillInTables(db)")
+                .nextControlFlow("catch ($T e)", ClassName.get(RuntimeException.class))
+                .addStatement("$T.getInstance().endTransaction()", Constants.daoClassName)
+                .addStatement("throw e")
+                .endControlFlow()
+                .addStatement("return db")
+                .build())
+
+            .addMethod(MethodSpec.methodBuilder("releaseQueryDatabase")
+                .addModifiers(Modifier.PROTECTED)
+                .addParameter(Constants.databaseClassName, "db")
+                .addStatement("if(inTables.isEmpty()) $T.getInstance().releaseReadableDatabase(db)", Constants.daoClassName)
+                .addCode("//never marked successful, the rollback drops the temp tables\n")
+                .addStatement("else $T.getInstance().endTransaction()", Constants.daoClassName)
+                .build())
+
+            .addMethod(MethodSpec.methodBuilder("fillInTables")
+                .addJavadoc("creates the temp tables of this query, in a transaction of the shared connection\n")
+                .addModifiers(Modifier.PROTECTED)
+                .addParameter(Constants.databaseClassName, "db")
+                .addStatement("for(int i=0;i<inTables.size();++i) $T.fill(db, $T.name(i), inTables.get(i))", Constants.inTablesClassName, Constants.inTablesClassName)
+                .build())
+
+            .addMethod(MethodSpec.methodBuilder("dropInTables")
+                .addJavadoc("drops the temp tables of this query before a transaction writing rows is committed\n")
+                .addModifiers(Modifier.PROTECTED)
+                .addParameter(Constants.databaseClassName, "db")
+                .addStatement("for(int i=0;i<inTables.size();++i) $T.drop(db, $T.name(i))", Constants.inTablesClassName, Constants.inTablesClassName)
+                .build())
+
+            .addMethod(MethodSpec.methodBuilder("copyQuery")
+                .addJavadoc("@return the rows of the query, copied so that they stay readable once its temp tables are dropped\n")
+                .returns(Constants.cursorClassName)
+                .addModifiers(Modifier.PROTECTED)
+                .addParameter(TypeName.get(String.class), "query")
+                .addParameter(TypeName.get(String[].class), "args")
+                .addStatement("$T db = acquireQueryDatabase()", Constants.databaseClassName)
+                .beginControlFlow("try")
+                .addStatement("return $T.copy(db.rawQuery(query, args))", Constants.inTablesClassName)
+                .nextControlFlow("finally")
+                .addStatement("releaseQueryDatabase(db)")
+                .endControlFlow()
+                .build())
+
+            .addMethod(MethodSpec.methodBuilder("simpleQueryForLong")
+                .returns(TypeName.LONG)
+                .addModifiers(Modifier.PROTECTED)
+                .addParameter(Constants.databaseClassName, "db")
+                .addParameter(TypeName.get(String.class), "query")
+                .addParameter(TypeName.get(String[].class), "args")
+                .addStatement("$T statement = $T.getInstance().acquireReadStatement(db, query)", Constants.statementClassName, Constants.daoClassName)
+                .beginControlFlow("try")
+                .addStatement("statement.bindAllArgsAsStrings(args)")
+                .addStatement("return statement.simpleQueryForLong()")
+                .nextControlFlow("finally")
+                .addStatement("$T.getInstance().releaseReadStatement(db, query, statement)", Constants.daoClassName)
+                .endControlFlow()
+                .build())
+
+            .addMethod(MethodSpec.methodBuilder("simpleQueryForFloat")
+                .returns(TypeName.FLOAT)
+                .addModifiers(Modifier.PROTECTED)
+                .addParameter(Constants.databaseClassName, "db")
+                .addParameter(TypeName.get(String.class), "query")
+                .addParameter(TypeName.get(String[].class), "args")
+                .addStatement("$T statement = $T.getInstance().acquireReadStatement(db, query)", Constants.statementClassName, Constants.daoClassName)
+                .addStatement("$T value", ClassName.get(String.class))
+                .beginControlFlow("try")
+                .addStatement("statement.bindAllArgsAsStrings(args)")
+                .addStatement("value = statement.simpleQueryForString()")
+                .nextControlFlow("finally")
+                .addStatement("$T.getInstance().releaseReadStatement(db, query, statement)", Constants.daoClassName)
+                .endControlFlow()
+                .addStatement("return value == null ? 0 : Float.parseFloat(value)")
+                .build())
+
+            .addMethod(MethodSpec.methodBuilder("aggregateRows")
+                .returns(ProcessUtils.listOf(Constants.aggregateRowClassName))
+                .addModifiers(Modifier.PROTECTED)
+                .addParameter(TypeName.get(String.class), "select")
+                .addParameter(TypeName.get(String.class), "groupBy")
+                .addStatement("$T db = acquireQueryDatabase()", Constants.databaseClassName)
+                .beginControlFlow("try")
+                .addStatement("$T query = buildQuery(select, groupBy)", ClassName.get(String.class))
+                .addStatement("String[] args = constructArgs()")
+                .addStatement("if(logger != null) logger.onQuery(query,args)")
+                .addStatement("$T cursor = db.rawQuery(query, args)", Constants.cursorClassName)
+                .addStatement("$T rows = new $T(cursor.getCount())", ProcessUtils.listOf(Constants.aggregateRowClassName), ProcessUtils.arraylistOf(Constants.aggregateRowClassName))
+                .addStatement("while(cursor.moveToNext()) rows.add(new $T(cursor))", Constants.aggregateRowClassName)
+                .addStatement("cursor.close()")
+                .addStatement("return rows")
+                .nextControlFlow("finally")
+                .addStatement("releaseQueryDatabase(db)")
+                .endControlFlow()
+                .build())
+
+            .addMethod(MethodSpec.methodBuilder("updateRows")
+                .returns(TypeName.INT)
+                .addModifiers(Modifier.PROTECTED)
+                .addParameter(TypeName.get(String.class), "table")
+                .addParameter(TypeName.get(String.class), "sets")
+                .addParameter(ProcessUtils.listOf(String.class), "setArgs")
+                .addStatement("$T query = \"UPDATE \" + table + \" SET \" + sets + \" WHERE $L IN (\" + matchingIds(table) + \")\"", ClassName.get(String.class), Constants.FIELD_ID)
+                .addStatement("$T args = new $T(setArgs)", ProcessUtils.listOf(String.class), ProcessUtils.arraylistOf(String.class))
+                .addStatement("args.addAll($T.asList(constructArgs()))", ClassName.get(Arrays.class))
+                .addStatement("String[] array = args.toArray(new String[args.size()])")
+                .addStatement("$T db = $T.getInstance().beginTransaction()", Constants.databaseClassName, Constants.daoClassName)
+                .beginControlFlow("try")
+                .addStatement("fillInTables(db)")
+                .addStatement("int count = executeUpdateDelete(db, query, array)")
+                .addStatement("dropInTables(db)")
+                .addStatement("$T.getInstance().setTransactionSuccessful()", Constants.daoClassName)
+                .addStatement("return count")
+                .nextControlFlow("finally")
+                .addStatement("$T.getInstance().endTransaction()", Constants.daoClassName)
+                .endControlFlow()
+                .build())
+
+            .addMethod(MethodSpec.methodBuilder("deleteRows")
+                .addJavadoc("Deletes the rows matching this builder, after the rows of their relation tables.\n")
+                .addJavadoc("The ids are written first into a temp table of the transaction, as a cleanup may remove the join rows that\n")
+                .addJavadoc("the where clause goes through, then each cleanup and the delete run once against it.\n")
+                .addJavadoc("@param cleanups statements deleting the relation rows, each one is completed by the ids and a closing parenthesis\n")
+                .returns(TypeName.INT)
+                .addModifiers(Modifier.PROTECTED)
+                .addParameter(TypeName.get(String.class), "table")
+                .addParameter(TypeName.get(String[].class), "cleanups")
+                .addStatement("$T db = $T.getInstance().beginTransaction()", Constants.databaseClassName, Constants.daoClassName)
+                .beginControlFlow("try")
+                .addStatement("fillInTables(db)")
+                .addCode("//the next index, not used by the temp tables of the where clause\n")
+                .addStatement("$T ids = $T.name(inTables.size())", ClassName.get(String.class), Constants.inTablesClassName)
+                .addStatement("$T query = matchingIds(table)", ClassName.get(String.class))
+                .addStatement("String[] args = constructArgs()")
+                .addStatement("if(logger != null) logger.onQuery(query,args)")
+                .addStatement("$T.fill(db, ids, query, args)", Constants.inTablesClassName)
+                .addStatement("dropInTables(db)")
+                .addStatement("$T in = $S + ids + ')'", ClassName.get(String.class), "select value from temp.")
+                .addStatement("String[] noArgs = new String[0]")
+                .addStatement("for($T cleanup : cleanups) executeUpdateDelete(db, cleanup + in, noArgs)", ClassName.get(String.class))
+                .addStatement("int count = executeUpdateDelete(db, \"DELETE FROM \" + table + \" WHERE $L IN (\" + in, noArgs)", Constants.FIELD_ID)
+                .addStatement("$T.drop(db, ids)", Constants.inTablesClassName)
+                .addStatement("$T.getInstance().setTransactionSuccessful()", Constants.daoClassName)
+                .addStatement("return count")
+                .nextControlFlow("finally")
+                .addStatement("$T.getInstance().endTransaction()", Constants.daoClassName)
+                .endControlFlow()
+                .build())
+
+            .addMethod(MethodSpec.methodBuilder("executeUpdateDelete")
+                .returns(TypeName.INT)
+                .addModifiers(Modifier.PRIVATE)
+                .addParameter(Constants.databaseClassName, "db")
+                .addParameter(TypeName.get(String.class), "query")
+                .addParameter(TypeName.get(String[].class), "args")
+                .addStatement("if(logger != null) logger.onQuery(query,args)")
+                .addStatement("$T statement = $T.getInstance().compileStatement(db, query)", Constants.statementClassName, Constants.daoClassName)
+                .addStatement("statement.bindAllArgsAsStrings(args)")
+                .addStatement("return statement.executeUpdateDelete()")
+                .build())
+
+            .addMethod(MethodSpec.methodBuilder("matchingIds")
+                .addJavadoc("@return a query selecting the ids of the rows matching this builder, to be used in an IN clause\n")
+                .returns(TypeName.get(String.class))
+                .addModifiers(Modifier.PROTECTED)
+                .addParameter(TypeName.get(String.class), "table")
+                .addStatement("$T query = buildQuery(\"select distinct \" + table + \".$L from \" + table + \" \")", ClassName.get(String.class), Constants.FIELD_ID)
+                .addStatement("return named ? query.replace($S, table) : query", Constants.QUERY_NAMED)
+                .build())
+
+            .addMethod(pluckMethod("pluckLongs", TypeName.LONG, "getLong"))
+            .addMethod(pluckMethod("pluckDoubles", TypeName.DOUBLE, "getDouble"))
+            .addMethod(pluckMethod("pluckStrings", ClassName.get(String.class), "getString"))
+
             .addMethod(MethodSpec.methodBuilder("appendQuery")
                 .addModifiers(Modifier.PROTECTED)
                 .addParameter(TypeName.get(String.class), "conditional")
                 .addParameter(TypeName.get(String.class), "arg")
-                .addStatement("if (named) queryBuilder.append($S)", "NAMED.")
-                .addStatement("queryBuilder.append(conditional)")
+                .addStatement("if (named) appendWhere($S)", "NAMED.")
+                .addStatement("appendWhere(conditional)")
                 .addStatement("if(arg != null) args.add(arg)")
                 .build())
 
+            .addMethod(MethodSpec.methodBuilder("appendIn")
+                .addJavadoc("Binds the values of an IN clause, their count rounded up to a power of 2 (repeating the last value)\n")
+                .addJavadoc("so that lists of close sizes share their statement. Above MAX_BOUND_IN values, or when the query would\n")
+                .addJavadoc("come close to MAX_BOUND_ARGS arguments, the values go through a temp table instead.\n")
+                .addModifiers(Modifier.PROTECTED)
+                .addParameter(TypeName.get(String.class), "column")
+                .addParameter(TypeName.get(String[].class), "values")
+                .addStatement("$T bound = new $T(values.length)", ProcessUtils.listOf(String.class), ProcessUtils.arraylistOf(String.class))
+                .addCode("//null never matches an IN clause\n")
+                .addStatement("for($T value : values) if(value != null) bound.add(value)", ClassName.get(String.class))
+                .addStatement("$T sb = new $T(column).append($S)", Constants.stringBuilderClassName, Constants.stringBuilderClassName, " in (")
+                .addStatement("int size = bound.isEmpty() ? 0 : 1")
+                .addStatement("while(size < bound.size()) size <<= 1")
+                .beginControlFlow("if(size > MAX_BOUND_IN || args.size() + size > MAX_BOUND_ARGS - MAX_BOUND_IN)")
+                .addStatement("appendQuery(column + $S + $T.name(inTables.size()) + ')', null)", " in (select value from temp.", Constants.inTablesClassName)
+                .addStatement("inTables.add(bound.toArray(new String[bound.size()]))")
+                .addStatement("return")
+                .endControlFlow()
+                .beginControlFlow("for(int i=0;i<size;++i)")
+                .addStatement("if(i != 0) sb.append(',')")
+                .addStatement("sb.append('?')")
+                .endControlFlow()
+                .addStatement("sb.append(')')")
+                .addStatement("appendQuery(sb.toString(), null)")
+                .addStatement("for(int i=0;i<size;++i) args.add(bound.get(Math.min(i, bound.size() - 1)))")
+                .build())
+
+            .addMethod(MethodSpec.methodBuilder("appendNested")
+                .addModifiers(Modifier.PROTECTED)
+                .addParameter(Constants.queryBuilderClassName, "query")
+                .addParameter(TypeName.get(String.class), "nestedQuery")
+                .addCode("//the temp tables of the nested query are numbered after the ones of this query\n")
+                .addStatement("if(!query.inTables.isEmpty()) nestedQuery = $T.shift(nestedQuery, inTables.size())", Constants.inTablesClassName)
+                .addStatement("inTables.addAll(query.inTables)")
+                .addStatement("appendWhere($S)", "(")
+                .addStatement("appendWhere(nestedQuery)")
+                .addStatement("appendWhere($S)", ")")
+                .build())
+
+            .addMethod(MethodSpec.methodBuilder("appendMatch")
+                .addJavadoc("Filters on the full-text index through the docids it returns, which stays valid in or groups and nested queries.\n")
+                .addJavadoc("The first match of a query which is not nested also ranks the rows by their count of matched terms,\n")
+                .addJavadoc("offsets() giving 4 numbers by matched term. The ranking is not kept by a keyset seek.\n")
+                .addModifiers(Modifier.PROTECTED)
+                .addParameter(TypeName.get(String.class), "table")
+                .addParameter(TypeName.get(String.class), "ftsTable")
+                .addParameter(TypeName.get(String.class), "match")
+                .addStatement("$T docids = $S + ftsTable + $S + ftsTable + $S", ClassName.get(String.class), "in (select docid from ", " where ", " match ?)")
+                .beginControlFlow("if(named)")
+                .addStatement("appendQuery($S + docids, match)", Constants.FIELD_ID + " ")
+                .addStatement("return")
+                .endControlFlow()
+                .addCode("//qualified, the join tables have an $L too\n", Constants.FIELD_ID)
+                .addStatement("appendWhere(table + $S + docids)", "." + Constants.FIELD_ID + " ")
+                .addStatement("args.add(match)")
+                .beginControlFlow("if(matchJoin == null)")
+                .addStatement("fold(shape, SHAPE_MATCH, table)")
+                .addStatement("fold(shape, SHAPE_MATCH, ftsTable)")
+                .addStatement("$T offsets = $S + ftsTable + $S", ClassName.get(String.class), "offsets(", ")")
+                .addStatement("matchJoin = $S + offsets + $S + offsets + $S + ftsTable + $S + ftsTable + $S + table + $S",
+                    " LEFT JOIN (select docid, (length(", ") - length(replace(", ", ' ', '')) + 1) / 4 as rank from ", " where ",
+                    " match ?) fts_rank ON fts_rank.docid = ", "." + Constants.FIELD_ID + " ")
+                .addStatement("matchArg = match")
+                .addStatement("appendOrder($S)", "fts_rank.rank DESC ")
+                .endControlFlow()
+                .build())
+
+            .addMethod(MethodSpec.methodBuilder("numberString")
+                .returns(TypeName.get(String.class))
+                .addModifiers(Modifier.PROTECTED, Modifier.STATIC)
+                .addParameter(TypeName.get(Number.class), "number")
+                .addStatement("if(number instanceof Double || number instanceof Float) return String.valueOf(number.doubleValue())")
+                .addStatement("return String.valueOf(number.longValue())")
+                .build())
+
             .addMethod(MethodSpec.methodBuilder("getTableId")
                 .addModifiers(Modifier.PROTECTED)
                 .returns(ClassName.get(String.class))
@@ -152,7 +628,7 @@ public class QueryBuilderGenerator {
                 .addStatement("$T tableId", ClassName.get(String.class))
                 .addStatement("int tablePos = fromTablesNames.indexOf(tableName)")
                 .addStatement("if(tablePos != -1) tableId = fromTablesId.get(tablePos)")
-                .addStatement("else{ tableId = $S + fromTables.size(); fromTablesId.add(tableId); fromTables.add(tableName + \" \" + tableId); fromTablesNames.add(tableName); }", Constants.QUERY_TABLE_VARIABLE)
+                .addStatement("else{ tableId = $S + fromTables.size(); fromTablesId.add(tableId); fromTables.add(tableName + \" \" + tableId); fromTablesNames.add(tableName); fold(shape, SHAPE_TABLE, tableName); }", Constants.QUERY_TABLE_VARIABLE)
                 .addStatement("return tableId")
 
                 .build())
@@ -213,14 +689,9 @@ public class QueryBuilderGenerator {
                 .returns(TypeVariableName.get("Q1"))
                 .varargs()
                 .addParameter(ArrayTypeName.of(TypeVariableName.get("M1")), "values")
-                .addStatement("$T sb = new $T()", Constants.stringBuilderClassName, Constants.stringBuilderClassName)
-                .addStatement("sb.append($S)", " in (")
-                .beginControlFlow("for(int i=0;i<values.length;++i)")
-                .addStatement("sb.append(values[i])")
-                .addStatement("if(i != values.length-1) sb.append($S)", ",")
-                .endControlFlow()
-                .addStatement("sb.append($S)", ")")
-                .addStatement("queryBuilder.appendQuery(column+sb.toString(), null)")
+                .addStatement("String[] strings = new String[values.length]")
+                .addStatement("for(int i=0;i<values.length;++i) strings[i] = values[i] == null ? null : numberString(values[i])")
+                .addStatement("queryBuilder.appendIn(column, strings)")
                 .addStatement("return queryBuilder")
                 .build())
 
@@ -299,7 +770,7 @@ public class QueryBuilderGenerator {
                 .addModifiers(Modifier.PUBLIC)
                 .returns(TypeVariableName.get("Q2"))
                 .addParameter(TypeName.get(String.class), "value")
-                .addStatement("queryBuilder.appendQuery(column+\" LIKE '%\"+value+\"%'\",null)")
+                .addStatement("queryBuilder.appendQuery(column+$S, \"%\" + value + \"%\")", " LIKE ?")
                 .addStatement("return queryBuilder")
                 .build())
 
@@ -307,7 +778,7 @@ public class QueryBuilderGenerator {
                 .addModifiers(Modifier.PUBLIC)
                 .returns(TypeVariableName.get("Q2"))
                 .addParameter(TypeName.get(String.class), "value")
-                .addStatement("queryBuilder.appendQuery(column+\" LIKE '\"+value+\"'\",null)")
+                .addStatement("queryBuilder.appendQuery(column+$S, value)", " LIKE ?")
                 .addStatement("return queryBuilder")
                 .build())
 
@@ -316,14 +787,7 @@ public class QueryBuilderGenerator {
                 .returns(TypeVariableName.get("Q2"))
                 .varargs()
                 .addParameter(ArrayTypeName.of(TypeName.get(String.class)), "values")
-                .addStatement("$T sb = new $T()", Constants.stringBuilderClassName, Constants.stringBuilderClassName)
-                .addStatement("sb.append($S)", " in (")
-                .beginControlFlow("for(int i=0;i<values.length;++i)")
-                .addStatement("sb.append($S).append(values[i]).append($S)", "'", "'")
-                .addStatement("if(i != values.length-1) sb.append($S)", ",")
-                .endControlFlow()
-                .addStatement("sb.append($S)", ")")
-                .addStatement("queryBuilder.appendQuery(column+sb.toString(), null)")
+                .addStatement("queryBuilder.appendIn(column, values)")
                 .addStatement("return queryBuilder")
                 .build())
 
@@ -429,7 +893,7 @@ public class QueryBuilderGenerator {
                 .addModifiers(Modifier.PUBLIC)
                 .returns(TypeVariableName.get("Q3"))
                 .addParameter(Constants.dateClassName, "date")
-                .addStatement("queryBuilder.appendQuery(column+\" = Datetime(?)\", new $T($S).format(date))", Constants.simpleDateFormatClassName, Constants.DATE_FORMAT)
+                .addStatement("queryBuilder.appendQuery(column+\" = Datetime(?)\", new $T($T.DATE_FORMAT).format(date))", Constants.simpleDateFormatClassName, Constants.daoClassName)
                 .addStatement("return queryBuilder")
                 .build())
 
@@ -437,7 +901,7 @@ public class QueryBuilderGenerator {
                 .addModifiers(Modifier.PUBLIC)
                 .returns(TypeVariableName.get("Q3"))
                 .addParameter(Constants.dateClassName, "date")
-                .addStatement("queryBuilder.appendQuery(column+\" != Datetime(?)\", new $T($S).format(date))", Constants.simpleDateFormatClassName, Constants.DATE_FORMAT)
+                .addStatement("queryBuilder.appendQuery(column+\" != Datetime(?)\", new $T($T.DATE_FORMAT).format(date))", Constants.simpleDateFormatClassName, Constants.daoClassName)
                 .addStatement("return queryBuilder")
                 .build())
 
@@ -445,7 +909,7 @@ public class QueryBuilderGenerator {
                 .addModifiers(Modifier.PUBLIC)
                 .returns(TypeVariableName.get("Q3"))
                 .addParameter(Constants.dateClassName, "date")
-                .addStatement("queryBuilder.appendQuery(column+\" < Datetime(?)\", new $T($S).format(date))", Constants.simpleDateFormatClassName, Constants.DATE_FORMAT)
+                .addStatement("queryBuilder.appendQuery(column+\" < Datetime(?)\", new $T($T.DATE_FORMAT).format(date))", Constants.simpleDateFormatClassName, Constants.daoClassName)
                 .addStatement("return queryBuilder")
                 .build())
 
@@ -453,7 +917,7 @@ public class QueryBuilderGenerator {
                 .addModifiers(Modifier.PUBLIC)
                 .returns(TypeVariableName.get("Q3"))
                 .addParameter(Constants.dateClassName, "date")
-                .addStatement("queryBuilder.appendQuery(column+\" > Datetime(?)\", new $T($S).format(date))", Constants.simpleDateFormatClassName, Constants.DATE_FORMAT)
+                .addStatement("queryBuilder.appendQuery(column+\" > Datetime(?)\", new $T($T.DATE_FORMAT).format(date))", Constants.simpleDateFormatClassName, Constants.daoClassName)
                 .addStatement("return queryBuilder")
                 .build())
 
@@ -462,9 +926,9 @@ public class QueryBuilderGenerator {
                 .returns(TypeVariableName.get("Q3"))
                 .addParameter(Constants.dateClassName, "min")
                 .addParameter(Constants.dateClassName, "max")
-                .addStatement("queryBuilder.appendQuery(column+\" > Datetime(?)\", new $T($S).format(min))", Constants.simpleDateFormatClassName, Constants.DATE_FORMAT)
+                .addStatement("queryBuilder.appendQuery(column+\" > Datetime(?)\", new $T($T.DATE_FORMAT).format(min))", Constants.simpleDateFormatClassName, Constants.daoClassName)
                 .addStatement("queryBuilder.appendAnd()")
-                .addStatement("queryBuilder.appendQuery(column+\" < Datetime(?)\", new $T($S).format(max))", Constants.simpleDateFormatClassName, Constants.DATE_FORMAT)
+                .addStatement("queryBuilder.appendQuery(column+\" < Datetime(?)\", new $T($T.DATE_FORMAT).format(max))", Constants.simpleDateFormatClassName, Constants.daoClassName)
                 .addStatement("return queryBuilder")
                 .build())
 
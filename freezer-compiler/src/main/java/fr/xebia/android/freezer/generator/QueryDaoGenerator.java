@@ -0,0 +1,395 @@
+package fr.xebia.android.freezer.generator;
+
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.annotation.processing.Messager;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.VariableElement;
+import javax.tools.Diagnostic;
+
+import fr.xebia.android.freezer.Constants;
+import fr.xebia.android.freezer.ProcessUtils;
+import fr.xebia.android.freezer.annotations.Query;
+
+/**
+ * Implements the @Query methods of a @Dao interface with constant sql.
+ * The tables and the :parameters of each query are checked at compile time, not its columns.
+ */
+public class QueryDaoGenerator {
+
+    private static final String NAME = "[A-Za-z_][A-Za-z0-9_]*";
+    /**
+     * a table and its optional alias, a from clause can list several ones separated by commas
+     */
+    private static final String TABLE = NAME + "(?:\\s+(?:as\\s+)?" + NAME + ")?";
+    private static final Pattern TABLE_PATTERN = Pattern.compile("(?i)\\b(?:from|join|into|update)\\s+(" + TABLE + "(?:\\s*,\\s*" + TABLE + ")*)");
+    private static final Pattern WRITE_PATTERN = Pattern.compile("(?i)^\\s*(insert|update|delete|replace)\\b.*", Pattern.DOTALL);
+
+    private final Element element;
+    private final Map<TypeName, Element> models;
+    private final Set<String> tables;
+    private final Messager messager;
+    private final List<FieldSpec> indexFields = new ArrayList<>();
+    private final Set<String> indexFieldNames = new HashSet<>();
+    private boolean valid = true;
+
+    public QueryDaoGenerator(Element element, Map<TypeName, Element> models, Set<String> tables, Messager messager) {
+        this.element = element;
+        this.models = models;
+        this.tables = tables;
+        this.messager = messager;
+    }
+
+    /**
+     * @return the implementation, null if an error has been reported
+     */
+    public TypeSpec generate() {
+        if (element.getKind() != ElementKind.INTERFACE) {
+            error(element, "@Dao can only be put on an interface");
+            return null;
+        }
+
+        TypeSpec.Builder builder = TypeSpec.classBuilder(ProcessUtils.getObjectName(element) + Constants.DAO_IMPL_SUFFIX)
+            .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+            .addSuperinterface(TypeName.get(element.asType()));
+
+        for (Element enclosed : element.getEnclosedElements()) {
+            if (enclosed.getKind() == ElementKind.METHOD) {
+                MethodSpec method = generateMethod((ExecutableElement) enclosed);
+                if (method != null) {
+                    builder.addMethod(method);
+                }
+            }
+        }
+
+        return valid ? builder.addFields(indexFields).build() : null;
+    }
+
+    private MethodSpec generateMethod(ExecutableElement method) {
+        Query query = method.getAnnotation(Query.class);
+        if (query == null) {
+            error(method, "methods of a @Dao must be annotated with @Query");
+            return null;
+        }
+
+        List<String> parameters = new ArrayList<>();
+        String sql = replaceParameters(query.value().trim(), parameters);
+        if (!checkTables(method, sql) || !checkParameters(method, parameters)) {
+            return null;
+        }
+
+        MethodSpec.Builder builder = MethodSpec.methodBuilder(method.getSimpleName().toString())
+            .addAnnotation(Override.class)
+            .addModifiers(Modifier.PUBLIC)
+            .returns(TypeName.get(method.getReturnType()));
+        for (VariableElement parameter : method.getParameters()) {
+            builder.addParameter(TypeName.get(parameter.asType()), parameter.getSimpleName().toString(), Modifier.FINAL);
+        }
+
+        TypeName returnType = TypeName.get(method.getReturnType());
+        boolean generated;
+        if (WRITE_PATTERN.matcher(sql).matches()) {
+            generated = generateWrite(builder, method, sql, parameters, returnType);
+        } else if (returnType instanceof ParameterizedTypeName
+            && ((ParameterizedTypeName) returnType).rawType.equals(ClassName.get(List.class))
+            && models.containsKey(((ParameterizedTypeName) returnType).typeArguments.get(0))) {
+            generated = generateRead(builder, method, sql, parameters, models.get(((ParameterizedTypeName) returnType).typeArguments.get(0)), true);
+        } else if (models.containsKey(returnType)) {
+            generated = generateRead(builder, method, sql, parameters, models.get(returnType), false);
+        } else {
+            generated = generateScalar(builder, method, sql, parameters, returnType);
+        }
+        return generated ? builder.build() : null;
+    }
+
+    private boolean generateRead(MethodSpec.Builder builder, ExecutableElement method, String sql, List<String> parameters, Element model, boolean list) {
+        CodeBlock args = stringArgs(method, parameters);
+        if (args == null) {
+            return false;
+        }
+        addNullChecks(builder, method, parameters);
+        TypeName cursorHelper = ProcessUtils.getCursorHelper(model);
+        String indexes = indexField(method);
+        builder.addStatement("$T db = $T.getInstance().acquireReadableDatabase()", Constants.databaseClassName, Constants.daoClassName)
+            .beginControlFlow("try")
+            .addStatement("$T cursor = db.rawQuery($S, $L)", Constants.cursorClassName, sql, args)
+            .beginControlFlow("try")
+            .addStatement("int[] indexes = $L", indexes)
+            .beginControlFlow("if(indexes == null)")
+            .addStatement("indexes = $T.columnIndexes(cursor)", cursorHelper)
+            .addStatement("$L = indexes", indexes)
+            .endControlFlow();
+        if (list) {
+            builder.addStatement("return $T.get(cursor, db, indexes, $T.ALL)", cursorHelper, Constants.fetchPlanClassName);
+        } else {
+            builder.addStatement("return cursor.moveToFirst() ? $T.fromCursor(cursor, db, indexes) : null", cursorHelper);
+        }
+        builder.nextControlFlow("finally")
+            .addStatement("cursor.close()")
+            .endControlFlow()
+            .nextControlFlow("finally")
+            .addStatement("$T.getInstance().releaseReadableDatabase(db)", Constants.daoClassName)
+            .endControlFlow();
+        return true;
+    }
+
+    /**
+     * the columns of a constant query are the same on every call, their indexes are resolved by the first one
+     * and kept in a static field of the implementation
+     */
+    private String indexField(ExecutableElement method) {
+        String name = method.getSimpleName() + "Indexes";
+        for (int i = 2; !indexFieldNames.add(name); ++i) {
+            name = method.getSimpleName() + "Indexes" + i;
+        }
+        indexFields.add(FieldSpec.builder(TypeName.get(int[].class), name, Modifier.PRIVATE, Modifier.STATIC, Modifier.VOLATILE).build());
+        return name;
+    }
+
+    private boolean generateScalar(MethodSpec.Builder builder, ExecutableElement method, String sql, List<String> parameters, TypeName returnType) {
+        TypeName type = returnType;
+        String read;
+        String empty;
+        if (type.equals(TypeName.LONG)) {
+            read = "return statement.simpleQueryForLong()";
+            empty = "return 0";
+        } else if (type.equals(TypeName.INT)) {
+            read = "return (int) statement.simpleQueryForLong()";
+            empty = "return 0";
+        } else if (type.equals(TypeName.BOOLEAN)) {
+            read = "return statement.simpleQueryForLong() != 0";
+            empty = "return false";
+        } else if (type.equals(TypeName.DOUBLE) || type.equals(TypeName.FLOAT)) {
+            //simpleQueryForLong would truncate the value, null is returned by an aggregate on no row
+            read = "String value = statement.simpleQueryForString()\n"
+                + "return value == null ? 0 : " + (type.equals(TypeName.DOUBLE) ? "Double.parseDouble(value)" : "Float.parseFloat(value)");
+            empty = "return 0";
+        } else if (type.equals(ClassName.get(String.class))) {
+            read = "return statement.simpleQueryForString()";
+            empty = "return null";
+        } else {
+            error(method, "unsupported return type " + returnType + ", expected a model, a list of models, a number, a boolean or a String");
+            return false;
+        }
+
+        builder.addStatement("$T db = $T.getInstance().acquireReadableDatabase()", Constants.databaseClassName, Constants.daoClassName)
+            .beginControlFlow("try")
+            .addCode("//a statement is bound to its connection, the reader ones are not cached\n")
+            .addStatement("$T statement = db.compileStatement($S)", Constants.statementClassName, sql)
+            .beginControlFlow("try");
+        if (!addBinds(builder, method, parameters)) {
+            return false;
+        }
+        for (String statement : read.split("\n")) {
+            builder.addStatement(statement);
+        }
+        builder.nextControlFlow("finally")
+            .addStatement("statement.close()")
+            .endControlFlow()
+            .nextControlFlow("catch ($T e)", ClassName.get("android.database.sqlite", "SQLiteDoneException"))
+            .addCode("//no row\n")
+            .addStatement(empty)
+            .nextControlFlow("finally")
+            .addStatement("$T.getInstance().releaseReadableDatabase(db)", Constants.daoClassName)
+            .endControlFlow();
+        return true;
+    }
+
+    private boolean generateWrite(MethodSpec.Builder builder, ExecutableElement method, String sql, List<String> parameters, TypeName returnType) {
+        String execute;
+        boolean insert = sql.toLowerCase().startsWith("insert") || sql.toLowerCase().startsWith("replace");
+        if (returnType.equals(TypeName.VOID)) {
+            execute = insert ? "statement.executeInsert()" : "statement.executeUpdateDelete()";
+        } else if (returnType.equals(TypeName.INT) && !insert) {
+            execute = "result = statement.executeUpdateDelete()";
+        } else if (returnType.equals(TypeName.LONG) && insert) {
+            execute = "result = statement.executeInsert()";
+        } else {
+            error(method, "an insert returns void or the long id of the row, an update or a delete returns void or the int count of rows");
+            return false;
+        }
+
+        builder.addStatement("$T db = $T.getInstance().beginTransaction()", Constants.databaseClassName, Constants.daoClassName)
+            .beginControlFlow("try")
+            .addStatement("$T statement = $T.getInstance().compileStatement(db, $S)", Constants.statementClassName, Constants.daoClassName, sql);
+        if (!returnType.equals(TypeName.VOID)) {
+            builder.addStatement("$T result", returnType);
+        }
+        builder.addStatement("statement.clearBindings()");
+        if (!addBinds(builder, method, parameters)) {
+            return false;
+        }
+        builder.addStatement(execute)
+            .addStatement("$T.getInstance().setTransactionSuccessful()", Constants.daoClassName);
+        if (!returnType.equals(TypeName.VOID)) {
+            builder.addStatement("return result");
+        }
+        builder.nextControlFlow("finally")
+            .addStatement("$T.getInstance().endTransaction()", Constants.daoClassName)
+            .endControlFlow();
+        return true;
+    }
+
+    /**
+     * binds each parameter with the statement method matching its type
+     */
+    private boolean addBinds(MethodSpec.Builder builder, ExecutableElement method, List<String> parameters) {
+        for (int i = 0; i < parameters.size(); ++i) {
+            String name = parameters.get(i);
+            TypeName type = TypeName.get(getParameter(method, name).asType());
+            TypeName unboxed = ProcessUtils.unbox(type);
+            int index = i + 1;
+            if (!type.isPrimitive()) {
+                builder.addCode("if($L == null) statement.bindNull($L); else ", name, index);
+            }
+            if (unboxed.equals(TypeName.LONG) || unboxed.equals(TypeName.INT) || unboxed.equals(TypeName.SHORT) || unboxed.equals(TypeName.BYTE)) {
+                builder.addStatement("statement.bindLong($L, $L)", index, name);
+            } else if (unboxed.equals(TypeName.DOUBLE) || unboxed.equals(TypeName.FLOAT)) {
+                builder.addStatement("statement.bindDouble($L, $L)", index, name);
+            } else if (unboxed.equals(TypeName.BOOLEAN)) {
+                builder.addStatement("statement.bindLong($L, $L ? 1 : 0)", index, name);
+            } else if (type.equals(ClassName.get(String.class))) {
+                builder.addStatement("statement.bindString($L, $L)", index, name);
+            } else if (ProcessUtils.isDate(type)) {
+                builder.addStatement("statement.bindString($L, new $T($T.DATE_FORMAT).format($L))", index, Constants.simpleDateFormatClassName, Constants.daoClassName, name);
+            } else {
+                error(method, "unsupported type " + type + " for parameter " + name);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * rawQuery cannot bind null, a null object parameter is rejected before the query with its name
+     */
+    private void addNullChecks(MethodSpec.Builder builder, ExecutableElement method, List<String> parameters) {
+        List<String> checked = new ArrayList<>();
+        for (String name : parameters) {
+            if (!checked.contains(name) && !TypeName.get(getParameter(method, name).asType()).isPrimitive()) {
+                checked.add(name);
+                builder.addStatement("if($L == null) throw new $T($S)", name, ClassName.get(IllegalArgumentException.class),
+                    "parameter " + name + " of " + method.getSimpleName() + "() cannot be null, a query reading models binds its parameters as strings");
+            }
+        }
+    }
+
+    /**
+     * rawQuery only takes strings, values are given the way they are stored, null checked by addNullChecks
+     */
+    private CodeBlock stringArgs(ExecutableElement method, List<String> parameters) {
+        CodeBlock.Builder args = CodeBlock.builder().add("new String[]{");
+        for (int i = 0; i < parameters.size(); ++i) {
+            String name = parameters.get(i);
+            TypeName type = TypeName.get(getParameter(method, name).asType());
+            TypeName unboxed = ProcessUtils.unbox(type);
+            if (i != 0) {
+                args.add(", ");
+            }
+            if (type.equals(ClassName.get(String.class))) {
+                args.add("$L", name);
+            } else if (unboxed.equals(TypeName.BOOLEAN)) {
+                args.add("$L ? \"1\" : \"0\"", name);
+            } else if (ProcessUtils.isDate(type)) {
+                args.add("new $T($T.DATE_FORMAT).format($L)", Constants.simpleDateFormatClassName, Constants.daoClassName, name);
+            } else if (unboxed.isPrimitive()) {
+                args.add("String.valueOf($L)", name);
+            } else {
+                error(method, "unsupported type " + type + " for parameter " + name);
+                return null;
+            }
+        }
+        return args.add("}").build();
+    }
+
+    /**
+     * replaces the :name placeholders outside of the string literals by ?, filling the names in order
+     */
+    private static String replaceParameters(String sql, List<String> parameters) {
+        StringBuilder result = new StringBuilder(sql.length());
+        boolean inString = false;
+        for (int i = 0; i < sql.length(); ++i) {
+            char c = sql.charAt(i);
+            if (c == '\'') {
+                inString = !inString;
+            }
+            if (!inString && c == ':' && i + 1 < sql.length() && Character.isJavaIdentifierStart(sql.charAt(i + 1))) {
+                int end = i + 1;
+                while (end < sql.length() && Character.isJavaIdentifierPart(sql.charAt(end))) {
+                    ++end;
+                }
+                parameters.add(sql.substring(i + 1, end));
+                result.append('?');
+                i = end - 1;
+            } else {
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * checks each table of the from, join, into and update clauses, the first name of each item of a from list
+     */
+    private boolean checkTables(ExecutableElement method, String sql) {
+        Matcher matcher = TABLE_PATTERN.matcher(sql.replaceAll("'[^']*'", "''"));
+        boolean found = true;
+        while (matcher.find()) {
+            for (String item : matcher.group(1).split(",")) {
+                String name = item.trim().split("\\s+")[0];
+                if (!tables.contains(name.toUpperCase())) {
+                    error(method, "unknown table " + name + " in " + sql);
+                    found = false;
+                }
+            }
+        }
+        return found;
+    }
+
+    private boolean checkParameters(ExecutableElement method, List<String> parameters) {
+        boolean found = true;
+        for (String name : parameters) {
+            if (getParameter(method, name) == null) {
+                error(method, "no parameter named " + name);
+                found = false;
+            }
+        }
+        for (VariableElement parameter : method.getParameters()) {
+            if (!parameters.contains(parameter.getSimpleName().toString())) {
+                messager.printMessage(Diagnostic.Kind.WARNING, "parameter " + parameter.getSimpleName() + " is not used by the query", method);
+            }
+        }
+        return found;
+    }
+
+    private static VariableElement getParameter(ExecutableElement method, String name) {
+        for (VariableElement parameter : method.getParameters()) {
+            if (parameter.getSimpleName().contentEquals(name)) {
+                return parameter;
+            }
+        }
+        return null;
+    }
+
+    private void error(Element element, String message) {
+        valid = false;
+        messager.printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
@@ -0,0 +1,81 @@
+package fr.xebia.android.freezer;
+
+import java.util.List;
+
+/**
+ * Computes several aggregates of a query in a single statement, optionally by group.
+ * Each row holds the values in the order of the calls, for example
+ * aggregate().sum(age).max(age).count().groupBy(hacker) gives rows of (sum, max, count, hacker).
+ */
+public abstract class Aggregate<C> {
+
+    private final String table;
+    private final StringBuilder columns = new StringBuilder();
+    private final StringBuilder groupBy = new StringBuilder();
+
+    protected Aggregate(String table) {
+        this.table = table;
+    }
+
+    protected abstract String columnName(C column);
+
+    /**
+     * Runs the query of the builder, selecting these columns and grouping by these ones (null if no group).
+     */
+    protected abstract List<AggregateRow> query(String columns, String groupBy);
+
+    public Aggregate<C> sum(C column) {
+        return select("sum(" + column(column) + ")");
+    }
+
+    public Aggregate<C> min(C column) {
+        return select("min(" + column(column) + ")");
+    }
+
+    public Aggregate<C> max(C column) {
+        return select("max(" + column(column) + ")");
+    }
+
+    public Aggregate<C> average(C column) {
+        return select("avg(" + column(column) + ")");
+    }
+
+    public Aggregate<C> count() {
+        return select("count(distinct(" + table + "._id))");
+    }
+
+    public Aggregate<C> groupBy(C column) {
+        if (groupBy.length() != 0) {
+            groupBy.append(',');
+        }
+        groupBy.append(column(column));
+        return select(column(column));
+    }
+
+    public List<AggregateRow> asList() {
+        if (columns.length() == 0) {
+            throw new IllegalStateException("no aggregate selected");
+        }
+        return query(columns.toString(), groupBy.length() == 0 ? null : groupBy.toString());
+    }
+
+    /**
+     * @return the first row, the only one when there is no group
+     */
+    public AggregateRow first() {
+        final List<AggregateRow> rows = asList();
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    private String column(C column) {
+        return table + "." + columnName(column);
+    }
+
+    private Aggregate<C> select(String expression) {
+        if (columns.length() != 0) {
+            columns.append(", ");
+        }
+        columns.append(expression);
+        return this;
+    }
+}
@@ -0,0 +1,66 @@
+package fr.xebia.android.freezer;
+
+import android.database.Cursor;
+
+/**
+ * One row returned by an {@link Aggregate}, values are in the order the aggregates and groups were declared.
+ */
+public class AggregateRow {
+
+    private final Object[] values;
+
+    AggregateRow(Cursor cursor) {
+        values = new Object[cursor.getColumnCount()];
+        for (int i = 0; i < values.length; ++i) {
+            switch (cursor.getType(i)) {
+                case Cursor.FIELD_TYPE_INTEGER:
+                    values[i] = cursor.getLong(i);
+                    break;
+                case Cursor.FIELD_TYPE_FLOAT:
+                    values[i] = cursor.getDouble(i);
+                    break;
+                case Cursor.FIELD_TYPE_NULL:
+                    values[i] = null;
+                    break;
+                default:
+                    values[i] = cursor.getString(i);
+                    break;
+            }
+        }
+    }
+
+    public int size() {
+        return values.length;
+    }
+
+    public boolean isNull(int index) {
+        return values[index] == null;
+    }
+
+    /**
+     * @return the value, 0 if it is null
+     */
+    public long getLong(int index) {
+        final Object value = values[index];
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        return value == null ? 0 : Long.parseLong(value.toString());
+    }
+
+    /**
+     * @return the value, 0 if it is null
+     */
+    public double getDouble(int index) {
+        final Object value = values[index];
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        return value == null ? 0 : Double.parseDouble(value.toString());
+    }
+
+    public String getString(int index) {
+        final Object value = values[index];
+        return value == null ? null : value.toString();
+    }
+}
@@ -0,0 +1,89 @@
+package fr.xebia.android.freezer;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Helpers of the generated queries reading the relations of many objects at once, by batches of ids.
+ */
+public final class BatchQueries {
+
+    //stays below the default SQLITE_MAX_VARIABLE_NUMBER of 999 with the other arguments
+    public static final int BATCH_SIZE = 500;
+
+    private BatchQueries() {
+    }
+
+    /**
+     * @return "?,?,...", one placeholder by id
+     */
+    public static String placeholders(int count) {
+        final StringBuilder builder = new StringBuilder(count * 2);
+        for (int i = 0; i < count; ++i) {
+            if (i != 0) {
+                builder.append(',');
+            }
+            builder.append('?');
+        }
+        return builder.toString();
+    }
+
+    /**
+     * @return first, then the ids from start (inclusive) to end (exclusive)
+     */
+    public static String[] args(String first, long[] ids, int start, int end) {
+        final String[] args = new String[end - start + 1];
+        args[0] = first;
+        for (int i = start; i < end; ++i) {
+            args[i - start + 1] = String.valueOf(ids[i]);
+        }
+        return args;
+    }
+
+    /**
+     * @return the ids from start (inclusive) to end (exclusive)
+     */
+    public static String[] args(long[] ids, int start, int end) {
+        final String[] args = new String[end - start];
+        for (int i = start; i < end; ++i) {
+            args[i - start] = String.valueOf(ids[i]);
+        }
+        return args;
+    }
+
+    /**
+     * @return the indexes of each id in ids, an id can be repeated
+     */
+    public static Map<Long, int[]> positions(long[] ids) {
+        final Map<Long, int[]> positions = new HashMap<>(ids.length * 2);
+        for (int i = 0; i < ids.length; ++i) {
+            final int[] indexes = positions.get(ids[i]);
+            if (indexes == null) {
+                positions.put(ids[i], new int[]{i});
+            } else {
+                final int[] grown = Arrays.copyOf(indexes, indexes.length + 1);
+                grown[indexes.length] = i;
+                positions.put(ids[i], grown);
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * @return the ids without their repetitions, in the order of their first occurrence
+     */
+    public static long[] distinct(long[] ids) {
+        final Set<Long> seen = new HashSet<>(ids.length * 2);
+        final long[] distinct = new long[ids.length];
+        int count = 0;
+        for (long id : ids) {
+            if (seen.add(id)) {
+                distinct[count++] = id;
+            }
+        }
+        return count == ids.length ? distinct : Arrays.copyOf(distinct, count);
+    }
+}
@@ -0,0 +1,46 @@
+package fr.xebia.android.freezer;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs the query each time it is iterated, see {@link CursorIterator}.
+ * Callers must call {@link #close()} once done, in a finally block: it releases the iterators which have not been
+ * read until the end, as a for-each loop left by a break or an exception does not close its iterator.
+ * An iterator is forgotten once it is exhausted or closed.
+ */
+public abstract class CursorIterable<T> implements Iterable<T>, Closeable {
+
+    private final List<CursorIterator<T>> iterators = new ArrayList<>();
+
+    protected abstract CursorIterator<T> open();
+
+    @Override
+    public CursorIterator<T> iterator() {
+        final CursorIterator<T> iterator = open();
+        synchronized (iterators) {
+            iterators.add(iterator);
+        }
+        iterator.setIterable(this);
+        return iterator;
+    }
+
+    void onIteratorClosed(CursorIterator<T> iterator) {
+        synchronized (iterators) {
+            iterators.remove(iterator);
+        }
+    }
+
+    @Override
+    public void close() {
+        final List<CursorIterator<T>> opened;
+        synchronized (iterators) {
+            opened = new ArrayList<>(iterators);
+            iterators.clear();
+        }
+        for (CursorIterator<T> iterator : opened) {
+            iterator.close();
+        }
+    }
+}
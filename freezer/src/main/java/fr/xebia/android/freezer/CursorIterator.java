@@ -0,0 +1,88 @@
+package fr.xebia.android.freezer;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterates over a query result, creating one object per row.
+ * The cursor and the database lease are released once the last row has been read. Callers stopping the iteration
+ * before must call {@link #close()}, in a finally block: until then the iterator holds a connection, in WAL mode one
+ * of the readers of the pool. The finalizer only releases an abandoned iterator once it is garbage collected.
+ */
+public abstract class CursorIterator<T> implements Iterator<T>, Closeable {
+
+    private final SQLiteDatabase db;
+    private final Cursor cursor;
+    private CursorIterable<T> iterable;
+    private boolean closed;
+    private boolean fetched;
+    private boolean hasNext;
+
+    public CursorIterator(SQLiteDatabase db, Cursor cursor) {
+        this.db = db;
+        this.cursor = cursor;
+    }
+
+    void setIterable(CursorIterable<T> iterable) {
+        if (closed) {
+            iterable.onIteratorClosed(this);
+        } else {
+            this.iterable = iterable;
+        }
+    }
+
+    protected abstract T fromCursor(Cursor cursor, SQLiteDatabase db);
+
+    @Override
+    public boolean hasNext() {
+        if (!fetched) {
+            hasNext = !closed && cursor.moveToNext();
+            fetched = true;
+            if (!hasNext) {
+                close();
+            }
+        }
+        return hasNext;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        fetched = false;
+        return fromCursor(cursor, db);
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            cursor.close();
+            Freezer.getInstance().releaseReadableDatabase(db);
+            if (iterable != null) {
+                iterable.onIteratorClosed(this);
+                iterable = null;
+            }
+        }
+    }
+
+    @Override
+    protected void finalize() throws Throwable {
+        try {
+            //abandoned before the end
+            close();
+        } finally {
+            super.finalize();
+        }
+    }
+}
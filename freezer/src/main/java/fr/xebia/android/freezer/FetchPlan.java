@@ -0,0 +1,58 @@
+package fr.xebia.android.freezer;
+
+import java.util.Set;
+
+/**
+ * Relations and collections read with the objects of a query.
+ * The selection of relations only applies to the queried model, the relations of its relations
+ * are all read until the depth limit.
+ */
+public final class FetchPlan {
+
+    public static final int UNLIMITED = -1;
+
+    public static final FetchPlan ALL = new FetchPlan(null, UNLIMITED);
+
+    private final Set<String> relations;
+    private final int maxDepth;
+    private final QueryLogger logger;
+
+    public FetchPlan(Set<String> relations, int maxDepth) {
+        this(relations, maxDepth, null);
+    }
+
+    /**
+     * @param relations names of the fields to read, null to read all of them
+     * @param maxDepth  number of levels of relations to read, 0 reads none, UNLIMITED reads them all
+     * @param logger    receives the queries reading the relations, null for none
+     */
+    public FetchPlan(Set<String> relations, int maxDepth, QueryLogger logger) {
+        this.relations = relations;
+        this.maxDepth = maxDepth;
+        this.logger = logger;
+    }
+
+    public boolean loads(String field) {
+        return maxDepth != 0 && (relations == null || relations.contains(field));
+    }
+
+    public QueryLogger getLogger() {
+        return logger;
+    }
+
+    public void onQuery(String query, String[] args) {
+        if (logger != null) {
+            logger.onQuery(query, args);
+        }
+    }
+
+    /**
+     * @return the plan of the objects of a relation
+     */
+    public FetchPlan child() {
+        if (maxDepth == UNLIMITED) {
+            return logger == null ? ALL : new FetchPlan(null, UNLIMITED, logger);
+        }
+        return new FetchPlan(null, maxDepth - 1, logger);
+    }
+}
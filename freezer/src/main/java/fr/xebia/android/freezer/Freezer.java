@@ -3,23 +3,80 @@ package fr.xebia.android.freezer;
 import android.app.Application;
 import android.content.Context;
 import android.database.SQLException;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 
 import java.lang.reflect.Constructor;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
 
 /**
  * Created by florentchampigny on 18/05/2016.
  */
 public final class Freezer {
     private static final String TAG = "Freezer";
+    /**
+     * Format of the dates stored in the database, used by the generated code and {@link Update}
+     */
+    public static final String DATE_FORMAT = "yyyy-MM-dd HH:mm:ss";
+    private static final long DEFAULT_IDLE_TIMEOUT = 30 * 1000;
     private static Freezer INSTANCE;
 
     private SQLiteDatabase database;
 
     private SQLiteOpenHelper helper;
 
+    private FreezerConfig config = new FreezerConfig();
+
+    //read-only connections used in WAL mode, idle or leased
+    private final Set<SQLiteDatabase> readers = new HashSet<>();
+    private final LinkedList<SQLiteDatabase> idleReaders = new LinkedList<>();
+    //readers still leased when the database has been closed, closed on release
+    private final Set<SQLiteDatabase> retiredReaders = new HashSet<>();
+
+    //leases of the readers, by connection since a reader can be given back by another thread than its owner
+    private final Map<SQLiteDatabase, ReaderLease> readerLeases = new HashMap<>();
+
+    //compiled write statements of the shared connection
+    private StatementCache statements;
+    //compiled read statements, by connection
+    private final Map<SQLiteDatabase, ReadStatementCache> readStatements = new HashMap<>();
+    private QueryCache queryCache;
+
+    //per thread, one entry by opened transaction level, true once marked successful
+    private final ThreadLocal<LinkedList<Boolean>> transactions = new ThreadLocal<LinkedList<Boolean>>() {
+        @Override
+        protected LinkedList<Boolean> initialValue() {
+            return new LinkedList<>();
+        }
+    };
+
+    //number of callers currently using the database, the connection is kept open while > 0
+    private int references;
+    private long idleTimeout = DEFAULT_IDLE_TIMEOUT;
+    private Handler idleHandler;
+
+    private final Runnable idleClose = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (Freezer.this) {
+                if (references == 0) {
+                    closeDatabase();
+                }
+            }
+        }
+    };
+
     private Freezer() {
     }
 
@@ -32,12 +89,21 @@ public final class Freezer {
 
     public static Freezer onDestroy() {
         Freezer freezer = getInstance();
-        freezer.close();
+        synchronized (freezer) {
+            freezer.references = 0;
+            freezer.closeDatabase();
+        }
         return freezer;
     }
 
     public static Freezer onCreate(Application application) {
+        return onCreate(application, new FreezerConfig());
+    }
+
+    public static Freezer onCreate(Application application, FreezerConfig config) {
         Freezer freezer = getInstance();
+        freezer.config = config;
+        freezer.queryCache = null;
         freezer.helper = freezer.findDatabaseHelper(application);
         return freezer;
     }
@@ -46,18 +112,399 @@ public final class Freezer {
         return database;
     }
 
-    public Freezer open() throws SQLException {
+    /**
+     * Leases the shared connection, opening it if needed.
+     * Each call must be balanced by a {@link #releaseDatabase()}.
+     */
+    public synchronized SQLiteDatabase acquireDatabase() throws SQLException {
         if (helper != null) {
-            database = helper.getWritableDatabase();
+            cancelIdleClose();
+            if (database == null || !database.isOpen()) {
+                database = helper.getWritableDatabase();
+                configureDatabase(database);
+            }
+            references++;
+        }
+        return database;
+    }
+
+    /**
+     * Leases a connection to run a read on. In WAL mode it comes from the reader pool,
+     * otherwise (or inside a transaction, to see its pending writes) it is the shared connection.
+     * A thread which already holds a reader gets the same one back, so nested reads cannot exhaust the pool.
+     * Each call must be balanced by a {@link #releaseReadableDatabase(SQLiteDatabase)}.
+     */
+    public synchronized SQLiteDatabase acquireReadableDatabase() throws SQLException {
+        final SQLiteDatabase writer = acquireDatabase();
+        if (writer == null || !config.isWriteAheadLogging() || writer.inTransaction()) {
+            return writer;
+        }
+        final Thread thread = Thread.currentThread();
+        for (ReaderLease lease : readerLeases.values()) {
+            if (lease.owner == thread) {
+                lease.count++;
+                return lease.reader;
+            }
+        }
+        final SQLiteDatabase reader = leaseReader(writer);
+        if (reader != writer) {
+            readerLeases.put(reader, new ReaderLease(reader, thread));
+        }
+        return reader;
+    }
+
+    private SQLiteDatabase leaseReader(SQLiteDatabase writer) {
+        while (idleReaders.isEmpty() && readers.size() >= config.getReaderConnections()) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return writer;
+            }
+        }
+        if (!idleReaders.isEmpty()) {
+            return idleReaders.removeFirst();
+        }
+        try {
+            final SQLiteDatabase reader = SQLiteDatabase.openDatabase(writer.getPath(), null, SQLiteDatabase.OPEN_READONLY);
+            readers.add(reader);
+            return reader;
+        } catch (SQLiteException e) {
+            Log.e(TAG, "cannot open a reader connection", e);
+            return writer;
+        }
+    }
+
+    /**
+     * Gives back a connection obtained with {@link #acquireReadableDatabase()}, from any thread.
+     */
+    public synchronized void releaseReadableDatabase(SQLiteDatabase db) {
+        final ReaderLease lease = db == null ? null : readerLeases.get(db);
+        if (lease != null) {
+            if (--lease.count > 0) {
+                releaseDatabase();
+                return;
+            }
+            readerLeases.remove(db);
+        }
+        if (db != null && db != database) {
+            if (retiredReaders.remove(db)) {
+                closeReadStatements(db);
+                db.close();
+            } else if (readers.contains(db)) {
+                if (db.isOpen()) {
+                    idleReaders.addFirst(db);
+                } else {
+                    closeReadStatements(db);
+                    readers.remove(db);
+                }
+                notifyAll();
+            }
+        }
+        releaseDatabase();
+    }
+
+    /**
+     * Returns a compiled write statement for this sql, cached on the shared connection.
+     * A statement is bound to the connection which compiled it, so this must be called in a transaction
+     * of the current thread (see {@link #beginTransaction()}), which holds the shared connection until it ends.
+     * Reads use {@link #acquireReadStatement(SQLiteDatabase, String)}.
+     */
+    public synchronized SQLiteStatement compileStatement(SQLiteDatabase db, String sql) {
+        if (db != database || !inTransaction()) {
+            throw new IllegalStateException("cached statements are only used by writes, in a transaction of the shared connection");
+        }
+        SQLiteStatement statement = getStatementCache().get(sql);
+        if (statement == null) {
+            statement = db.compileStatement(sql);
+            statements.put(sql, statement);
+        }
+        return statement;
+    }
+
+    /**
+     * Takes a compiled read statement for this sql out of the cache of the connection, compiling it on a miss.
+     * Only the calling thread uses it until it is given back by {@link #releaseReadStatement(SQLiteDatabase, String, SQLiteStatement)},
+     * while the connection is still leased.
+     */
+    public SQLiteStatement acquireReadStatement(SQLiteDatabase db, String sql) {
+        ReadStatementCache cache;
+        synchronized (this) {
+            cache = readStatements.get(db);
+            if (cache == null) {
+                cache = new ReadStatementCache(config.getStatementCacheSize());
+                readStatements.put(db, cache);
+            }
+        }
+        return cache.take(db, sql);
+    }
+
+    /**
+     * Puts back in the cache of its connection a statement obtained with {@link #acquireReadStatement(SQLiteDatabase, String)},
+     * or closes it if the connection has been closed meanwhile.
+     */
+    public synchronized void releaseReadStatement(SQLiteDatabase db, String sql, SQLiteStatement statement) {
+        final ReadStatementCache cache = readStatements.get(db);
+        if (cache == null) {
+            statement.close();
+        } else {
+            cache.giveBack(sql, statement);
+        }
+    }
+
+    /**
+     * @return the compiled write statements of the shared connection, by sql, dropped when it closes
+     */
+    public synchronized StatementCache getStatementCache() {
+        if (statements == null) {
+            statements = new StatementCache(config.getStatementCacheSize());
+        }
+        return statements;
+    }
+
+    /**
+     * @return the sql of the generated queries, by query shape
+     */
+    public synchronized QueryCache getQueryCache() {
+        if (queryCache == null) {
+            queryCache = new QueryCache(config.getQueryCacheSize());
+        }
+        return queryCache;
+    }
+
+    /**
+     * Copies the WAL content back into the database file, useful when the automatic checkpoint is disabled.
+     */
+    public void checkpoint() {
+        final SQLiteDatabase db = acquireDatabase();
+        try {
+            if (db != null && config.isWriteAheadLogging()) {
+                runPragma(db, "PRAGMA wal_checkpoint(PASSIVE)");
+            }
+        } finally {
+            releaseDatabase();
+        }
+    }
+
+    /**
+     * Runs the body in a transaction, committed if it returns normally.
+     * Generated entity managers join the current transaction, nested calls are mapped to savepoints.
+     */
+    public void runInTransaction(Runnable body) {
+        beginTransaction();
+        try {
+            body.run();
+            setTransactionSuccessful();
+        } finally {
+            endTransaction();
+        }
+    }
+
+    /**
+     * Same as {@link #runInTransaction(Runnable)}, returning the result of the body.
+     * Checked exceptions thrown by the body are wrapped in a RuntimeException.
+     */
+    public <T> T runInTransaction(Callable<T> body) {
+        beginTransaction();
+        try {
+            final T result = body.call();
+            setTransactionSuccessful();
+            return result;
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        } finally {
+            endTransaction();
+        }
+    }
+
+    /**
+     * Begins a transaction on the shared connection, or a savepoint if the current thread is already in one.
+     * Must be balanced by an {@link #endTransaction()}, in a finally block.
+     */
+    public SQLiteDatabase beginTransaction() {
+        final SQLiteDatabase db = acquireDatabase();
+        final LinkedList<Boolean> levels = transactions.get();
+        try {
+            if (levels.isEmpty()) {
+                db.beginTransaction();
+            } else {
+                db.execSQL("SAVEPOINT " + savepointName(levels.size()));
+            }
+        } catch (RuntimeException e) {
+            releaseDatabase();
+            throw e;
+        }
+        levels.addLast(false);
+        return db;
+    }
+
+    /**
+     * Marks the innermost transaction of the current thread as successful.
+     */
+    public void setTransactionSuccessful() {
+        final LinkedList<Boolean> levels = transactions.get();
+        if (levels.isEmpty()) {
+            throw new IllegalStateException("no transaction pending");
         }
+        levels.set(levels.size() - 1, true);
+    }
+
+    /**
+     * Commits (or releases the savepoint of) the innermost transaction if it has been marked successful,
+     * rolls it back otherwise.
+     */
+    public void endTransaction() {
+        final LinkedList<Boolean> levels = transactions.get();
+        if (levels.isEmpty()) {
+            throw new IllegalStateException("no transaction pending");
+        }
+        final boolean successful = levels.removeLast();
+        final SQLiteDatabase db = database;
+        try {
+            if (levels.isEmpty()) {
+                if (successful) {
+                    db.setTransactionSuccessful();
+                }
+                db.endTransaction();
+                closeEvictedStatements();
+            } else {
+                final String savepoint = savepointName(levels.size());
+                if (!successful) {
+                    //android takes any statement starting with ROLLBACK for the end of the whole transaction
+                    db.execSQL("/* savepoint */ ROLLBACK TO " + savepoint);
+                }
+                db.execSQL("RELEASE " + savepoint);
+            }
+        } finally {
+            releaseDatabase();
+        }
+    }
+
+    public boolean inTransaction() {
+        return !transactions.get().isEmpty();
+    }
+
+    public FreezerConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Gives back a connection obtained with {@link #acquireDatabase()}.
+     * When nobody uses it anymore, the connection is closed after the idle timeout.
+     */
+    public synchronized void releaseDatabase() {
+        if (references > 0) {
+            references--;
+            if (references == 0) {
+                scheduleIdleClose();
+            }
+        }
+    }
+
+    /**
+     * @param idleTimeout delay in milliseconds before closing an unused connection,
+     *                    0 to close it as soon as it is released, a negative value to keep it open
+     */
+    public synchronized Freezer setIdleTimeout(long idleTimeout) {
+        this.idleTimeout = idleTimeout;
         return this;
     }
 
+    public synchronized long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    /**
+     * @deprecated use {@link #acquireDatabase()}
+     */
+    @Deprecated
+    public Freezer open() throws SQLException {
+        acquireDatabase();
+        return this;
+    }
+
+    /**
+     * @deprecated use {@link #releaseDatabase()}
+     */
+    @Deprecated
     public Freezer close() {
+        releaseDatabase();
+        return this;
+    }
+
+    private void scheduleIdleClose() {
+        if (idleTimeout == 0) {
+            closeDatabase();
+        } else if (idleTimeout > 0) {
+            if (idleHandler == null) {
+                idleHandler = new Handler(Looper.getMainLooper());
+            }
+            idleHandler.postDelayed(idleClose, idleTimeout);
+        }
+    }
+
+    private void cancelIdleClose() {
+        if (idleHandler != null) {
+            idleHandler.removeCallbacks(idleClose);
+        }
+    }
+
+    private void configureDatabase(SQLiteDatabase db) {
+        if (config.isWriteAheadLogging()) {
+            db.enableWriteAheadLogging();
+            if (config.getAutoCheckpoint() >= 0) {
+                runPragma(db, "PRAGMA wal_autocheckpoint=" + config.getAutoCheckpoint());
+            }
+        }
+    }
+
+    private static String savepointName(int level) {
+        return "freezer_" + level;
+    }
+
+    private void runPragma(SQLiteDatabase db, String pragma) {
+        //pragmas returning a row have to go through rawQuery
+        final Cursor cursor = db.rawQuery(pragma, null);
+        cursor.moveToFirst();
+        cursor.close();
+    }
+
+    private synchronized void closeEvictedStatements() {
+        if (statements != null) {
+            statements.closeEvicted();
+        }
+    }
+
+    private void closeReadStatements(SQLiteDatabase db) {
+        final ReadStatementCache cache = readStatements.remove(db);
+        if (cache != null) {
+            cache.evictAll();
+        }
+    }
+
+    private void closeDatabase() {
+        cancelIdleClose();
+        if (statements != null) {
+            statements.evictAll();
+            statements.closeEvicted();
+            statements = null;
+        }
+        closeReadStatements(database);
+        for (SQLiteDatabase reader : idleReaders) {
+            closeReadStatements(reader);
+            reader.close();
+            readers.remove(reader);
+        }
+        idleReaders.clear();
+        //the leased ones are closed when given back
+        retiredReaders.addAll(readers);
+        readers.clear();
         if (helper != null) {
             helper.close();
         }
-        return this;
+        database = null;
     }
 
     private SQLiteOpenHelper findDatabaseHelper(Application application) {
@@ -71,4 +518,17 @@ public final class Freezer {
         }
         return null;
     }
-}
\ No newline at end of file
+
+    private static final class ReaderLease {
+        final SQLiteDatabase reader;
+        //thread which leased the reader, given back to it when it asks for another one
+        final Thread owner;
+        //number of acquireReadableDatabase not yet released
+        int count = 1;
+
+        ReaderLease(SQLiteDatabase reader, Thread owner) {
+            this.reader = reader;
+            this.owner = owner;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package fr.xebia.android.freezer;
+
+/**
+ * Options given to {@link Freezer#onCreate(android.app.Application, FreezerConfig)}.
+ */
+public class FreezerConfig {
+
+    private boolean writeAheadLogging;
+    private int readerConnections = Runtime.getRuntime().availableProcessors();
+    private int autoCheckpoint = -1;
+    private int statementCacheSize = 64;
+    private int queryCacheSize = 128;
+
+    /**
+     * Turns on write-ahead logging, reads are then run on a pool of read-only connections
+     * and are no longer blocked by the writer.
+     */
+    public FreezerConfig enableWriteAheadLogging() {
+        this.writeAheadLogging = true;
+        return this;
+    }
+
+    /**
+     * @param readerConnections maximum number of read-only connections opened in WAL mode,
+     *                          defaults to the number of cores
+     */
+    public FreezerConfig readerConnections(int readerConnections) {
+        if (readerConnections < 1) {
+            throw new IllegalArgumentException("readerConnections must be >= 1");
+        }
+        this.readerConnections = readerConnections;
+        return this;
+    }
+
+    /**
+     * @param pages number of WAL pages after which SQLite checkpoints automatically,
+     *              0 disables the automatic checkpoint (use {@link Freezer#checkpoint()})
+     */
+    public FreezerConfig autoCheckpoint(int pages) {
+        if (pages < 0) {
+            throw new IllegalArgumentException("pages must be >= 0");
+        }
+        this.autoCheckpoint = pages;
+        return this;
+    }
+
+    /**
+     * @param statementCacheSize number of compiled write statements kept on the shared connection,
+     *                           and of compiled read statements kept by connection
+     */
+    public FreezerConfig statementCacheSize(int statementCacheSize) {
+        if (statementCacheSize < 1) {
+            throw new IllegalArgumentException("statementCacheSize must be >= 1");
+        }
+        this.statementCacheSize = statementCacheSize;
+        return this;
+    }
+
+    /**
+     * @param queryCacheSize number of query shapes whose sql is kept, see {@link Freezer#getQueryCache()}
+     */
+    public FreezerConfig queryCacheSize(int queryCacheSize) {
+        if (queryCacheSize < 1) {
+            throw new IllegalArgumentException("queryCacheSize must be >= 1");
+        }
+        this.queryCacheSize = queryCacheSize;
+        return this;
+    }
+
+    public boolean isWriteAheadLogging() {
+        return writeAheadLogging;
+    }
+
+    public int getReaderConnections() {
+        return readerConnections;
+    }
+
+    public int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+    public int getQueryCacheSize() {
+        return queryCacheSize;
+    }
+
+    /**
+     * @return the auto checkpoint threshold in pages, -1 to keep the SQLite default
+     */
+    public int getAutoCheckpoint() {
+        return autoCheckpoint;
+    }
+}
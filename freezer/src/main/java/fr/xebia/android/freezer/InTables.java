@@ -0,0 +1,112 @@
+package fr.xebia.android.freezer;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+/**
+ * Helpers of the generated queries joining the values of a large IN clause from a temp table,
+ * instead of binding more arguments than SQLite accepts.
+ * A temp table only exists on the connection which created it, so it is filled and queried in a transaction
+ * of the shared connection (see {@link Freezer#beginTransaction()}).
+ */
+public final class InTables {
+
+    private static final String PREFIX = "freezer_in_";
+
+    private InTables() {
+    }
+
+    /**
+     * @return the name of the temp table holding the values of the index-th large IN clause of a query
+     */
+    public static String name(int index) {
+        return PREFIX + index;
+    }
+
+    /**
+     * Creates the temp table and inserts the values, in a transaction of the current thread.
+     */
+    public static void fill(SQLiteDatabase db, String table, String[] values) {
+        //no column type, the values take the affinity of the column they are compared to, like bound arguments
+        db.execSQL("CREATE TEMP TABLE " + table + " (value)");
+        final String insert = "INSERT INTO temp." + table + " VALUES (?)";
+        final SQLiteStatement statement = Freezer.getInstance().compileStatement(db, insert);
+        for (String value : values) {
+            statement.bindString(1, value);
+            statement.executeInsert();
+        }
+        statement.clearBindings();
+    }
+
+    /**
+     * Creates the temp table and inserts the rows of the query, which selects a single column,
+     * in a transaction of the current thread.
+     */
+    public static void fill(SQLiteDatabase db, String table, String query, String[] args) {
+        db.execSQL("CREATE TEMP TABLE " + table + " (value)");
+        db.execSQL("INSERT INTO temp." + table + " " + query, args);
+    }
+
+    public static void drop(SQLiteDatabase db, String table) {
+        db.execSQL("DROP TABLE IF EXISTS temp." + table);
+    }
+
+    /**
+     * @return the query with the index of each of its temp tables increased by offset, for a nested query
+     * appended to a query which already has some
+     */
+    public static String shift(String query, int offset) {
+        final StringBuilder builder = new StringBuilder(query.length() + 8);
+        int from = 0;
+        int found;
+        while ((found = query.indexOf(PREFIX, from)) != -1) {
+            int end = found + PREFIX.length();
+            while (end < query.length() && Character.isDigit(query.charAt(end))) {
+                end++;
+            }
+            builder.append(query, from, found + PREFIX.length())
+                .append(Integer.parseInt(query.substring(found + PREFIX.length(), end)) + offset);
+            from = end;
+        }
+        return builder.append(query, from, query.length()).toString();
+    }
+
+    /**
+     * @return a copy of the remaining rows of the cursor, which stays readable once the transaction holding
+     * the temp tables has ended. The cursor is closed.
+     */
+    public static Cursor copy(Cursor cursor) {
+        try {
+            final String[] columns = cursor.getColumnNames();
+            final MatrixCursor copy = new MatrixCursor(columns, cursor.getCount());
+            final Object[] row = new Object[columns.length];
+            while (cursor.moveToNext()) {
+                for (int i = 0; i < columns.length; ++i) {
+                    switch (cursor.getType(i)) {
+                        case Cursor.FIELD_TYPE_NULL:
+                            row[i] = null;
+                            break;
+                        case Cursor.FIELD_TYPE_INTEGER:
+                            row[i] = cursor.getLong(i);
+                            break;
+                        case Cursor.FIELD_TYPE_FLOAT:
+                            row[i] = cursor.getDouble(i);
+                            break;
+                        case Cursor.FIELD_TYPE_BLOB:
+                            row[i] = cursor.getBlob(i);
+                            break;
+                        default:
+                            row[i] = cursor.getString(i);
+                            break;
+                    }
+                }
+                copy.addRow(row);
+            }
+            return copy;
+        } finally {
+            cursor.close();
+        }
+    }
+}
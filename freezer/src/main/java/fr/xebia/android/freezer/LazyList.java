@@ -0,0 +1,80 @@
+package fr.xebia.android.freezer;
+
+import android.util.LruCache;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read-only list of a query result which only keeps the ids of the rows.
+ * Objects are loaded by pages on {@link #get(int)}, the last used pages are kept in memory.
+ * A row deleted after the list has been created is returned as null.
+ */
+public abstract class LazyList<T> extends AbstractList<T> {
+
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int CACHED_PAGES = 4;
+    //sqlite default SQLITE_MAX_VARIABLE_NUMBER
+    private static final int MAX_PAGE_SIZE = 999;
+
+    private final long[] ids;
+    private final int pageSize;
+    private final LruCache<Integer, List<T>> pages;
+
+    protected LazyList(long[] ids, int pageSize) {
+        if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("pageSize must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        this.ids = ids;
+        this.pageSize = pageSize;
+        this.pages = new LruCache<>(CACHED_PAGES);
+    }
+
+    /**
+     * @return the objects having these ids, in any order
+     */
+    protected abstract List<T> load(long[] ids);
+
+    protected abstract long idOf(T object);
+
+    @Override
+    public synchronized T get(int index) {
+        if (index < 0 || index >= ids.length) {
+            throw new IndexOutOfBoundsException("index " + index + ", size " + ids.length);
+        }
+        final int page = index / pageSize;
+        List<T> objects = pages.get(page);
+        if (objects == null) {
+            objects = loadPage(page);
+            pages.put(page, objects);
+        }
+        return objects.get(index % pageSize);
+    }
+
+    @Override
+    public int size() {
+        return ids.length;
+    }
+
+    public long getId(int index) {
+        return ids[index];
+    }
+
+    private List<T> loadPage(int page) {
+        final int start = page * pageSize;
+        final long[] pageIds = Arrays.copyOfRange(ids, start, Math.min(ids.length, start + pageSize));
+        final Map<Long, T> objectsById = new HashMap<>();
+        for (T object : load(pageIds)) {
+            objectsById.put(idOf(object), object);
+        }
+        final List<T> objects = new ArrayList<>(pageIds.length);
+        for (long id : pageIds) {
+            objects.add(objectsById.get(id));
+        }
+        return objects;
+    }
+}
@@ -0,0 +1,495 @@
+package fr.xebia.android.freezer;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Encodes the @Packed collections of primitives stored in a BLOB column of their model.
+ * Each blob starts with the varint count of values, then:
+ * <ul>
+ * <li>integers and longs: zigzag varints</li>
+ * <li>floats and doubles: 4 or 8 bytes little endian</li>
+ * <li>booleans: one bit by value</li>
+ * <li>strings: varint length + 1 (0 for null), then the UTF-8 bytes</li>
+ * </ul>
+ * A null number or boolean of a boxed collection is stored as 0 / false, as in the primitive tables.
+ * A null blob is read as an empty collection.
+ */
+public final class PackedCollections {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private PackedCollections() {
+    }
+
+    //region integers
+
+    public static byte[] packIntegers(int[] values) {
+        final Writer writer = new Writer(values.length * 2);
+        writer.count(values.length);
+        for (int value : values) {
+            writer.zigzag(value);
+        }
+        return writer.toByteArray();
+    }
+
+    public static byte[] packIntegers(Integer[] values) {
+        final Writer writer = new Writer(values.length * 2);
+        writer.count(values.length);
+        for (Integer value : values) {
+            writer.zigzag(value == null ? 0 : value);
+        }
+        return writer.toByteArray();
+    }
+
+    public static byte[] packIntegers(Collection<Integer> values) {
+        final Writer writer = new Writer(values.size() * 2);
+        writer.count(values.size());
+        for (Integer value : values) {
+            writer.zigzag(value == null ? 0 : value);
+        }
+        return writer.toByteArray();
+    }
+
+    public static int[] unpackIntegersPrimitiveArray(byte[] blob) {
+        final Reader reader = new Reader(blob);
+        final int[] values = new int[reader.count()];
+        for (int i = 0; i < values.length; ++i) {
+            values[i] = (int) reader.zigzag();
+        }
+        return values;
+    }
+
+    public static Integer[] unpackIntegersArray(byte[] blob) {
+        final Reader reader = new Reader(blob);
+        final Integer[] values = new Integer[reader.count()];
+        for (int i = 0; i < values.length; ++i) {
+            values[i] = (int) reader.zigzag();
+        }
+        return values;
+    }
+
+    public static List<Integer> unpackIntegers(byte[] blob) {
+        final Reader reader = new Reader(blob);
+        final int count = reader.count();
+        final List<Integer> values = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+            values.add((int) reader.zigzag());
+        }
+        return values;
+    }
+
+    //endregion
+
+    //region longs
+
+    public static byte[] packLongs(long[] values) {
+        final Writer writer = new Writer(values.length * 4);
+        writer.count(values.length);
+        for (long value : values) {
+            writer.zigzag(value);
+        }
+        return writer.toByteArray();
+    }
+
+    public static byte[] packLongs(Long[] values) {
+        final Writer writer = new Writer(values.length * 4);
+        writer.count(values.length);
+        for (Long value : values) {
+            writer.zigzag(value == null ? 0 : value);
+        }
+        return writer.toByteArray();
+    }
+
+    public static byte[] packLongs(Collection<Long> values) {
+        final Writer writer = new Writer(values.size() * 4);
+        writer.count(values.size());
+        for (Long value : values) {
+            writer.zigzag(value == null ? 0 : value);
+        }
+        return writer.toByteArray();
+    }
+
+    public static long[] unpackLongsPrimitiveArray(byte[] blob) {
+        final Reader reader = new Reader(blob);
+        final long[] values = new long[reader.count()];
+        for (int i = 0; i < values.length; ++i) {
+            values[i] = reader.zigzag();
+        }
+        return values;
+    }
+
+    public static Long[] unpackLongsArray(byte[] blob) {
+        final Reader reader = new Reader(blob);
+        final Long[] values = new Long[reader.count()];
+        for (int i = 0; i < values.length; ++i) {
+            values[i] = reader.zigzag();
+        }
+        return values;
+    }
+
+    public static List<Long> unpackLongs(byte[] blob) {
+        final Reader reader = new Reader(blob);
+        final int count = reader.count();
+        final List<Long> values = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+            values.add(reader.zigzag());
+        }
+        return values;
+    }
+
+    //endregion
+
+    //region floats
+
+    public static byte[] packFloats(float[] values) {
+        final Writer writer = new Writer(values.length * 4);
+        writer.count(values.length);
+        for (float value : values) {
+            writer.fixed32(Float.floatToIntBits(value));
+        }
+        return writer.toByteArray();
+    }
+
+    public static byte[] packFloats(Float[] values) {
+        final Writer writer = new Writer(values.length * 4);
+        writer.count(values.length);
+        for (Float value : values) {
+            writer.fixed32(Float.floatToIntBits(value == null ? 0 : value));
+        }
+        return writer.toByteArray();
+    }
+
+    public static byte[] packFloats(Collection<Float> values) {
+        final Writer writer = new Writer(values.size() * 4);
+        writer.count(values.size());
+        for (Float value : values) {
+            writer.fixed32(Float.floatToIntBits(value == null ? 0 : value));
+        }
+        return writer.toByteArray();
+    }
+
+    public static float[] unpackFloatsPrimitiveArray(byte[] blob) {
+        final Reader reader = new Reader(blob);
+        final float[] values = new float[reader.count()];
+        for (int i = 0; i < values.length; ++i) {
+            values[i] = Float.intBitsToFloat(reader.fixed32());
+        }
+        return values;
+    }
+
+    public static Float[] unpackFloatsArray(byte[] blob) {
+        final Reader reader = new Reader(blob);
+        final Float[] values = new Float[reader.count()];
+        for (int i = 0; i < values.length; ++i) {
+            values[i] = Float.intBitsToFloat(reader.fixed32());
+        }
+        return values;
+    }
+
+    public static List<Float> unpackFloats(byte[] blob) {
+        final Reader reader = new Reader(blob);
+        final int count = reader.count();
+        final List<Float> values = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+            values.add(Float.intBitsToFloat(reader.fixed32()));
+        }
+        return values;
+    }
+
+    //endregion
+
+    //region doubles
+
+    public static byte[] packDoubles(double[] values) {
+        final Writer writer = new Writer(values.length * 8);
+        writer.count(values.length);
+        for (double value : values) {
+            writer.fixed64(Double.doubleToLongBits(value));
+        }
+        return writer.toByteArray();
+    }
+
+    public static byte[] packDoubles(Double[] values) {
+        final Writer writer = new Writer(values.length * 8);
+        writer.count(values.length);
+        for (Double value : values) {
+            writer.fixed64(Double.doubleToLongBits(value == null ? 0 : value));
+        }
+        return writer.toByteArray();
+    }
+
+    public static byte[] packDoubles(Collection<Double> values) {
+        final Writer writer = new Writer(values.size() * 8);
+        writer.count(values.size());
+        for (Double value : values) {
+            writer.fixed64(Double.doubleToLongBits(value == null ? 0 : value));
+        }
+        return writer.toByteArray();
+    }
+
+    public static double[] unpackDoublesPrimitiveArray(byte[] blob) {
+        final Reader reader = new Reader(blob);
+        final double[] values = new double[reader.count()];
+        for (int i = 0; i < values.length; ++i) {
+            values[i] = Double.longBitsToDouble(reader.fixed64());
+        }
+        return values;
+    }
+
+    public static Double[] unpackDoublesArray(byte[] blob) {
+        final Reader reader = new Reader(blob);
+        final Double[] values = new Double[reader.count()];
+        for (int i = 0; i < values.length; ++i) {
+            values[i] = Double.longBitsToDouble(reader.fixed64());
+        }
+        return values;
+    }
+
+    public static List<Double> unpackDoubles(byte[] blob) {
+        final Reader reader = new Reader(blob);
+        final int count = reader.count();
+        final List<Double> values = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+            values.add(Double.longBitsToDouble(reader.fixed64()));
+        }
+        return values;
+    }
+
+    //endregion
+
+    //region booleans
+
+    public static byte[] packBooleans(boolean[] values) {
+        final Writer writer = new Writer(values.length / 8 + 1);
+        writer.count(values.length);
+        int bits = 0;
+        for (int i = 0; i < values.length; ++i) {
+            if (values[i]) {
+                bits |= 1 << (i & 7);
+            }
+            if ((i & 7) == 7 || i == values.length - 1) {
+                writer.write(bits);
+                bits = 0;
+            }
+        }
+        return writer.toByteArray();
+    }
+
+    public static byte[] packBooleans(Boolean[] values) {
+        final boolean[] primitives = new boolean[values.length];
+        for (int i = 0; i < values.length; ++i) {
+            primitives[i] = values[i] != null && values[i];
+        }
+        return packBooleans(primitives);
+    }
+
+    public static byte[] packBooleans(Collection<Boolean> values) {
+        final boolean[] primitives = new boolean[values.size()];
+        int i = 0;
+        for (Boolean value : values) {
+            primitives[i++] = value != null && value;
+        }
+        return packBooleans(primitives);
+    }
+
+    public static boolean[] unpackBooleansPrimitiveArray(byte[] blob) {
+        final Reader reader = new Reader(blob);
+        final boolean[] values = new boolean[reader.count()];
+        int bits = 0;
+        for (int i = 0; i < values.length; ++i) {
+            if ((i & 7) == 0) {
+                bits = reader.read();
+            }
+            values[i] = (bits & (1 << (i & 7))) != 0;
+        }
+        return values;
+    }
+
+    public static Boolean[] unpackBooleansArray(byte[] blob) {
+        final boolean[] primitives = unpackBooleansPrimitiveArray(blob);
+        final Boolean[] values = new Boolean[primitives.length];
+        for (int i = 0; i < primitives.length; ++i) {
+            values[i] = primitives[i];
+        }
+        return values;
+    }
+
+    public static List<Boolean> unpackBooleans(byte[] blob) {
+        final boolean[] primitives = unpackBooleansPrimitiveArray(blob);
+        final List<Boolean> values = new ArrayList<>(primitives.length);
+        for (boolean value : primitives) {
+            values.add(value);
+        }
+        return values;
+    }
+
+    //endregion
+
+    //region strings
+
+    public static byte[] packStrings(String[] values) {
+        final Writer writer = new Writer(values.length * 8);
+        writer.count(values.length);
+        for (String value : values) {
+            writer.string(value);
+        }
+        return writer.toByteArray();
+    }
+
+    public static byte[] packStrings(Collection<String> values) {
+        final Writer writer = new Writer(values.size() * 8);
+        writer.count(values.size());
+        for (String value : values) {
+            writer.string(value);
+        }
+        return writer.toByteArray();
+    }
+
+    public static String[] unpackStringsArray(byte[] blob) {
+        final Reader reader = new Reader(blob);
+        final String[] values = new String[reader.count()];
+        for (int i = 0; i < values.length; ++i) {
+            values[i] = reader.string();
+        }
+        return values;
+    }
+
+    public static List<String> unpackStrings(byte[] blob) {
+        final Reader reader = new Reader(blob);
+        final int count = reader.count();
+        final List<String> values = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+            values.add(reader.string());
+        }
+        return values;
+    }
+
+    //endregion
+
+    private static final class Writer {
+        private byte[] bytes;
+        private int size;
+
+        Writer(int capacity) {
+            bytes = new byte[Math.max(capacity, 8)];
+        }
+
+        void write(int b) {
+            if (size == bytes.length) {
+                final byte[] grown = new byte[bytes.length * 2];
+                System.arraycopy(bytes, 0, grown, 0, size);
+                bytes = grown;
+            }
+            bytes[size++] = (byte) b;
+        }
+
+        void count(int count) {
+            varint(count);
+        }
+
+        void varint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+
+        void zigzag(long value) {
+            varint((value << 1) ^ (value >> 63));
+        }
+
+        void fixed32(int value) {
+            for (int i = 0; i < 4; ++i) {
+                write(value >>> (i * 8));
+            }
+        }
+
+        void fixed64(long value) {
+            for (int i = 0; i < 8; ++i) {
+                write((int) (value >>> (i * 8)));
+            }
+        }
+
+        void string(String value) {
+            if (value == null) {
+                varint(0);
+                return;
+            }
+            final byte[] utf8 = value.getBytes(UTF_8);
+            varint(utf8.length + 1);
+            for (byte b : utf8) {
+                write(b);
+            }
+        }
+
+        byte[] toByteArray() {
+            final byte[] result = new byte[size];
+            System.arraycopy(bytes, 0, result, 0, size);
+            return result;
+        }
+    }
+
+    private static final class Reader {
+        private final byte[] bytes;
+        private int position;
+
+        Reader(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        int read() {
+            return bytes[position++] & 0xFF;
+        }
+
+        int count() {
+            return bytes == null || bytes.length == 0 ? 0 : (int) varint();
+        }
+
+        long varint() {
+            long value = 0;
+            int shift = 0;
+            int b;
+            do {
+                b = read();
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+
+        long zigzag() {
+            final long value = varint();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        int fixed32() {
+            int value = 0;
+            for (int i = 0; i < 4; ++i) {
+                value |= read() << (i * 8);
+            }
+            return value;
+        }
+
+        long fixed64() {
+            long value = 0;
+            for (int i = 0; i < 8; ++i) {
+                value |= (long) read() << (i * 8);
+            }
+            return value;
+        }
+
+        String string() {
+            final int length = (int) varint();
+            if (length == 0) {
+                return null;
+            }
+            final String value = new String(bytes, position, length - 1, UTF_8);
+            position += length - 1;
+            return value;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package fr.xebia.android.freezer;
+
+import android.util.LruCache;
+
+/**
+ * Sql of the generated queries, by query shape: a signature of the select, the predicates, joins, sorts and limit,
+ * built while the query builder is filled, without the argument values. The shape is the key itself, two queries
+ * only share their sql when their shapes are equal.
+ * {@link #hitCount()} and {@link #missCount()} tell how often a query has been reused.
+ */
+public class QueryCache extends LruCache<String, String> {
+
+    public QueryCache(int maxSize) {
+        super(maxSize);
+    }
+}
@@ -0,0 +1,10 @@
+package fr.xebia.android.freezer;
+
+/**
+ * Receives the sql and the arguments of the queries run by an entity manager,
+ * including the ones reading the relations of its objects.
+ */
+public interface QueryLogger {
+
+    void onQuery(String query, String[] datas);
+}
@@ -0,0 +1,35 @@
+package fr.xebia.android.freezer;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.LruCache;
+
+/**
+ * Compiled read statements of one connection, by sql.
+ * A statement is taken out of the cache while it is used, so that two threads never bind the same one,
+ * the statements evicted or replaced are closed right away since nobody uses them.
+ */
+class ReadStatementCache extends LruCache<String, SQLiteStatement> {
+
+    ReadStatementCache(int maxSize) {
+        super(maxSize);
+    }
+
+    SQLiteStatement take(SQLiteDatabase db, String sql) {
+        final SQLiteStatement statement = remove(sql);
+        return statement != null ? statement : db.compileStatement(sql);
+    }
+
+    void giveBack(String sql, SQLiteStatement statement) {
+        statement.clearBindings();
+        put(sql, statement);
+    }
+
+    @Override
+    protected void entryRemoved(boolean evicted, String sql, SQLiteStatement oldValue, SQLiteStatement newValue) {
+        //a statement taken by take() is removed without being replaced, it is still in use
+        if (evicted || newValue != null) {
+            oldValue.close();
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package fr.xebia.android.freezer;
+
+import android.database.sqlite.SQLiteStatement;
+import android.util.LruCache;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compiled statements of the shared connection, by sql.
+ * An evicted statement may still be in use by the transaction which compiled it,
+ * it is closed by {@link #closeEvicted()} once the transaction has ended.
+ * {@link #hitCount()} and {@link #missCount()} tell how often a statement has been reused.
+ */
+public class StatementCache extends LruCache<String, SQLiteStatement> {
+
+    private final List<SQLiteStatement> evicted = new ArrayList<>();
+
+    StatementCache(int maxSize) {
+        super(maxSize);
+    }
+
+    @Override
+    protected void entryRemoved(boolean evicted, String sql, SQLiteStatement oldValue, SQLiteStatement newValue) {
+        this.evicted.add(oldValue);
+    }
+
+    void closeEvicted() {
+        for (SQLiteStatement statement : evicted) {
+            statement.close();
+        }
+        evicted.clear();
+    }
+}
@@ -0,0 +1,69 @@
+package fr.xebia.android.freezer;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Changes columns of every row matching a query with a single UPDATE statement.
+ * The objects are not loaded, and their relations are left untouched.
+ */
+public abstract class Update<C> {
+
+    private final StringBuilder sets = new StringBuilder();
+    private final List<String> args = new ArrayList<>();
+
+    /**
+     * @throws IllegalArgumentException if the column is not stored in the table of the model
+     */
+    protected abstract String columnName(C column);
+
+    /**
+     * Runs the update on the rows of the query builder.
+     *
+     * @return the number of rows changed
+     */
+    protected abstract int update(String sets, List<String> args);
+
+    public Update<C> set(C column, String value) {
+        return append(column, value);
+    }
+
+    public Update<C> set(C column, Number value) {
+        return append(column, value == null ? null : String.valueOf(value));
+    }
+
+    public Update<C> set(C column, boolean value) {
+        return append(column, value ? "1" : "0");
+    }
+
+    public Update<C> set(C column, Date value) {
+        return append(column, value == null ? null : new SimpleDateFormat(Freezer.DATE_FORMAT).format(value));
+    }
+
+    /**
+     * @return the number of rows changed
+     */
+    public int execute() {
+        if (sets.length() == 0) {
+            throw new IllegalStateException("no column set");
+        }
+        return update(sets.toString(), args);
+    }
+
+    private Update<C> append(C column, String value) {
+        if (sets.length() != 0) {
+            sets.append(", ");
+        }
+        sets.append(columnName(column));
+        if (value == null) {
+            //null cannot be bound as a string
+            sets.append(" = NULL");
+        } else {
+            sets.append(" = ?");
+            args.add(value);
+        }
+        return this;
+    }
+}
@@ -56,6 +56,7 @@ public class ColumnType {
         Boolean("number"),
         String("text"),
         Date("text"),
+        Packed("blob"),
         ;
 
         private String sqlName;
@@ -6,7 +6,9 @@ import android.text.TextUtils;
 import android.util.Log;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Created by florentchampigny on 29/01/2016.
@@ -75,6 +77,62 @@ public class DatabaseHelper {
         return createTableString(tableName, columns);
     }
 
+    /**
+     * named IDX_TABLE_column1_column2, as the indexes generated for the models
+     */
+    public static String getIndexName(String tableName, String[] columns) {
+        final StringBuilder name = new StringBuilder("IDX_").append(tableName);
+        for (String column : columns) {
+            name.append('_').append(column);
+        }
+        return name.toString();
+    }
+
+    public void createIndex(String tableName, boolean unique, String[] columns) {
+        executeSql((unique ? "CREATE UNIQUE INDEX IF NOT EXISTS " : "CREATE INDEX IF NOT EXISTS ") + getIndexName(tableName, columns)
+            + " ON " + tableName + "(" + TextUtils.join(",", columns) + ");");
+    }
+
+    public void dropIndex(String tableName, String[] columns) {
+        executeSql("DROP INDEX IF EXISTS " + getIndexName(tableName, columns) + ";");
+    }
+
+    /**
+     * same table and triggers as the ones created with a model having @FullText fields
+     */
+    public void createFullText(String tableName, String[] columns) {
+        for (String statement : FullText.getCreations(tableName, columns)) {
+            executeSql(statement);
+        }
+        executeSql(FullText.getRebuild(tableName));
+    }
+
+    public void dropFullText(String tableName) {
+        for (String statement : FullText.getDrops(tableName)) {
+            executeSql(statement);
+        }
+    }
+
+    /**
+     * the triggers of the full-text index go away with the rebuilt table, the index is created again
+     * on its remaining columns
+     */
+    private void recreateFullText(String tableName, String oldColumn, String newColumn) {
+        final String ftsTable = FullText.getTableName(tableName);
+        if (!tableExists(ftsTable)) {
+            return;
+        }
+        final List<TableColumn> columns = getTableColumns(ftsTable, newColumn == null ? oldColumn : null);
+        if (newColumn != null) {
+            TableColumn.rename(columns, oldColumn, newColumn);
+        }
+        dropFullText(tableName);
+        if (!columns.isEmpty()) {
+            final List<String> names = TableColumn.getNames(columns);
+            createFullText(tableName, names.toArray(new String[names.size()]));
+        }
+    }
+
     public void dropColumn(String tableName, String colToRemove) {
         final List<TableColumn> updatedTableColumns = getTableColumns(tableName, colToRemove);
         final String columnsSeperated = TextUtils.join(",", TableColumn.getNames(updatedTableColumns));
@@ -88,6 +146,7 @@ public class DatabaseHelper {
         // Populating the table with the data
         executeSql("INSERT INTO " + tableName + "(" + columnsSeperated + ") SELECT " + columnsSeperated + " FROM " + tableName + "_old;");
         dropTable(oldTable);
+        recreateFullText(tableName, colToRemove, null);
     }
 
     public void renameColumn(String tableName, String oldName, String newName) {
@@ -106,6 +165,7 @@ public class DatabaseHelper {
         // Populating the table with the data
         executeSql("INSERT INTO " + tableName + "(" + newColumnsSeperated + ") SELECT " + oldColumnsSeperated + " FROM " + tableName + "_old;");
         dropTable(oldTable);
+        recreateFullText(tableName, oldName, newName);
     }
 
     public void addColumn(String tableName, String column, String sqlTypeName) {
@@ -116,6 +176,96 @@ public class DatabaseHelper {
         executeSql("DROP TABLE " + tableName + ";");
     }
 
+    public void dropTableIfExists(String tableName) {
+        //checked first, it runs on each opening of the database and a drop would lock it for writing
+        if (tableExists(tableName)) {
+            dropTable(tableName);
+        }
+    }
+
+    public boolean tableExists(String tableName) {
+        Cursor cur = database.rawQuery("SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = ?", new String[]{tableName});
+        boolean exists = cur.moveToFirst();
+        cur.close();
+        return exists;
+    }
+
+    /**
+     * a single read of sqlite_master, run each time the database opens: true when one of the side tables is missing,
+     * one of the shared tables still exists or one of the join tables still names the field of its rows
+     */
+    public boolean needsUpgrade(String[] sideTables, String[] sharedTables, String[] compactJoinTables) {
+        final Map<String, String> creations = new HashMap<>();
+        Cursor cur = database.rawQuery("SELECT name, sql FROM sqlite_master WHERE type = 'table'", null);
+        while (cur.moveToNext()) {
+            creations.put(cur.getString(0), cur.getString(1));
+        }
+        cur.close();
+
+        for (String sideTable : sideTables) {
+            if (!creations.containsKey(sideTable)) {
+                return true;
+            }
+        }
+        for (String sharedTable : sharedTables) {
+            if (creations.containsKey(sharedTable)) {
+                return true;
+            }
+        }
+        for (String joinTable : compactJoinTables) {
+            final String creation = creations.get(joinTable);
+            if (creation != null && creation.contains("_field_name")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void createSideTable(String sideTable, String creation, String indexCreation, String tableName, String sharedTable, String fieldName) {
+        if (tableExists(sideTable)) {
+            return;
+        }
+        executeSql(creation);
+        executeSql(indexCreation);
+        if (tableExists(sharedTable) && tableExists(tableName)) {
+            executeSql("INSERT INTO " + sideTable + " (_object_id, value) SELECT _object_id, value FROM " + sharedTable
+                    + " WHERE _field_name = '" + fieldName + "' AND _object_id IN (SELECT _id FROM " + tableName + ") ORDER BY _id;");
+        }
+    }
+
+    /**
+     * converts a join table created without @CompactSchema, still keyed by _id and naming the field of its rows.
+     * Each row gets the code of its field, its index in fieldNames, and its position in the list of its parent,
+     * from the insertion order. The rows of a field missing from fieldNames are dropped
+     */
+    public void compactJoinTable(String tableName, String creation, String parentKey, String childKey, String[] fieldNames) {
+        if (!tableExists(tableName) || !TableColumn.getNames(getTableColumns(tableName, null)).contains("_field_name")) {
+            return;
+        }
+        final StringBuilder codes = new StringBuilder("CASE _field_name");
+        final StringBuilder names = new StringBuilder();
+        for (int i = 0; i < fieldNames.length; ++i) {
+            codes.append(" WHEN '").append(fieldNames[i]).append("' THEN ").append(i);
+            names.append(i == 0 ? "'" : ", '").append(fieldNames[i]).append('\'');
+        }
+        codes.append(" END");
+
+        final String oldTable = tableName + "_old";
+        final String rowsTable = "temp." + tableName + "_rows";
+        renameTable(tableName, oldTable);
+        executeSql(creation);
+        //numbered in one pass, list after list in the order of their rows: the position of a row is its number
+        //minus the number of the first row of its list
+        executeSql("CREATE TEMP TABLE " + tableName + "_rows (_row integer primary key, parent integer, child integer, field integer);");
+        executeSql("INSERT INTO " + rowsTable + " (parent, child, field) SELECT " + parentKey + ", " + childKey + ", " + codes
+                + " FROM " + oldTable + " WHERE _field_name IN (" + names + ") ORDER BY " + parentKey + ", _field_name, _id;");
+        executeSql("INSERT INTO " + tableName + " (" + parentKey + ", " + childKey + ", _field, _position) SELECT r.parent, r.child, r.field, r._row - f.first"
+                + " FROM " + rowsTable + " r JOIN (SELECT parent, field, min(_row) AS first FROM " + rowsTable + " GROUP BY parent, field) f"
+                + " ON f.parent = r.parent AND f.field = r.field;");
+        dropTable(rowsTable);
+        dropTable(oldTable);
+    }
+
     public void renameTable(String tableName, String newName) {
         executeSql("ALTER TABLE " + tableName + " RENAME TO " + newName + ";");
     }
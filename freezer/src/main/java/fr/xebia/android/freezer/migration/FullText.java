@@ -0,0 +1,78 @@
+package fr.xebia.android.freezer.migration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Schema of the full-text index of a model: an external content FTS4 table, only holding the index,
+ * kept in sync with the model table by triggers.
+ * Used by the generated entity managers and by the migrations.
+ */
+public final class FullText {
+
+    public static final String SUFFIX = "_FTS";
+
+    private FullText() {
+    }
+
+    public static String getTableName(String tableName) {
+        return tableName + SUFFIX;
+    }
+
+    /**
+     * @return the creation of the FTS table, then of its triggers
+     */
+    public static List<String> getCreations(String tableName, String[] columns) {
+        final String ftsTable = getTableName(tableName);
+        final StringBuilder names = new StringBuilder();
+        for (String column : columns) {
+            names.append(", ").append(column);
+        }
+        final List<String> statements = new ArrayList<>();
+        statements.add("create virtual table " + ftsTable + " using fts4(content='" + tableName + "'" + names + ")");
+        statements.addAll(getTriggerCreations(tableName, columns));
+        return statements;
+    }
+
+    public static List<String> getTriggerCreations(String tableName, String[] columns) {
+        final String ftsTable = getTableName(tableName);
+        final StringBuilder names = new StringBuilder();
+        final StringBuilder newValues = new StringBuilder();
+        for (String column : columns) {
+            names.append(", ").append(column);
+            newValues.append(", new.").append(column);
+        }
+        final String updateOf = names.substring(2);
+        final String delete = " begin delete from " + ftsTable + " where docid = %s._id; end";
+        final String insert = " begin insert into " + ftsTable + "(docid" + names + ") values (new._id" + newValues + "); end";
+
+        final List<String> statements = new ArrayList<>();
+        statements.add("create trigger " + ftsTable + "_BI before insert on " + tableName + String.format(delete, "new"));
+        statements.add("create trigger " + ftsTable + "_AI after insert on " + tableName + insert);
+        statements.add("create trigger " + ftsTable + "_BU before update of " + updateOf + " on " + tableName + String.format(delete, "old"));
+        statements.add("create trigger " + ftsTable + "_AU after update of " + updateOf + " on " + tableName + insert);
+        statements.add("create trigger " + ftsTable + "_BD before delete on " + tableName + String.format(delete, "old"));
+        return statements;
+    }
+
+    /**
+     * @return the statements dropping the triggers, then the FTS table
+     */
+    public static List<String> getDrops(String tableName) {
+        final String ftsTable = getTableName(tableName);
+        final List<String> statements = new ArrayList<>();
+        for (String trigger : new String[]{"_BI", "_AI", "_BU", "_AU", "_BD"}) {
+            statements.add("drop trigger if exists " + ftsTable + trigger);
+        }
+        statements.add("drop table if exists " + ftsTable);
+        return statements;
+    }
+
+    /**
+     * @return the statement filling the index from the rows of the model table
+     */
+    public static String getRebuild(String tableName) {
+        final String ftsTable = getTableName(tableName);
+        return "insert into " + ftsTable + "(" + ftsTable + ") values('rebuild')";
+    }
+}
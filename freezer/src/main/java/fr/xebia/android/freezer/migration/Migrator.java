@@ -32,6 +32,28 @@ public class Migrator {
         return this;
     }
 
+    /**
+     * creates the side table of a collection of primitives and its index if it is missing, with the values
+     * the field had in the table shared by all the models in the previous versions
+     */
+    public Migrator createSideTable(String sideTable, String creation, String indexCreation, String tableName, String sharedTable, String fieldName) {
+        databaseHelper.createSideTable(sideTable, creation, indexCreation, tableName, sharedTable, fieldName);
+        return this;
+    }
+
+    /**
+     * converts a join table created before the model used @CompactSchema, the code of a field is its index in fieldNames
+     */
+    public Migrator compactJoinTable(String tableName, String creation, String parentKey, String childKey, String... fieldNames) {
+        databaseHelper.compactJoinTable(tableName, creation, parentKey, childKey, fieldNames);
+        return this;
+    }
+
+    public Migrator dropTableIfExists(String tableName) {
+        databaseHelper.dropTableIfExists(tableName);
+        return this;
+    }
+
     public Migrator addTable(TableCreator tableCreator) {
         String creationQuery = tableCreator.creationQuery;
         databaseHelper.executeSql(creationQuery);
@@ -66,6 +88,32 @@ public class Migrator {
             return this;
         }
 
+        /**
+         * creates the index an @Index field or an @Indices entry has in a new database
+         */
+        public TableTransformer addIndex(String... columns) {
+            database.createIndex(getTableName(objectName), false, columns);
+            return this;
+        }
+
+        public TableTransformer addUniqueIndex(String... columns) {
+            database.createIndex(getTableName(objectName), true, columns);
+            return this;
+        }
+
+        public TableTransformer dropIndex(String... columns) {
+            database.dropIndex(getTableName(objectName), columns);
+            return this;
+        }
+
+        /**
+         * creates the full-text index of these @FullText columns, filled with the existing rows
+         */
+        public TableTransformer addFullText(String... columns) {
+            database.createFullText(getTableName(objectName), columns);
+            return this;
+        }
+
         public TableTransformer addField(String column, ColumnType.Primitive type) {
             database.addColumn(getTableName(objectName), column, type.getSqlName());
             return this;
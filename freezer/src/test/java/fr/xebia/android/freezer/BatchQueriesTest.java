@@ -0,0 +1,51 @@
+package fr.xebia.android.freezer;
+
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class BatchQueriesTest {
+
+    @Test
+    public void positions_keepsEveryIndexOfARepeatedId() {
+        //given
+        long[] ids = {4, 7, 4, 9, 4};
+
+        //when
+        Map<Long, int[]> positions = BatchQueries.positions(ids);
+
+        //then
+        assertEquals(3, positions.size());
+        assertArrayEquals(new int[]{0, 2, 4}, positions.get(4L));
+        assertArrayEquals(new int[]{1}, positions.get(7L));
+        assertArrayEquals(new int[]{3}, positions.get(9L));
+    }
+
+    @Test
+    public void distinct_keepsTheFirstOccurrences() {
+        //given
+        long[] ids = {4, 7, 4, 9, 7};
+
+        //when
+        long[] distinct = BatchQueries.distinct(ids);
+
+        //then
+        assertArrayEquals(new long[]{4, 7, 9}, distinct);
+    }
+
+    @Test
+    public void args_ofARange() {
+        //given
+        long[] ids = {1, 2, 3, 4};
+
+        //when
+        String[] args = BatchQueries.args("dogs", ids, 1, 3);
+
+        //then
+        assertArrayEquals(new String[]{"dogs", "2", "3"}, args);
+        assertEquals("?,?,?", BatchQueries.placeholders(3));
+    }
+}
@@ -0,0 +1,88 @@
+package fr.xebia.android.freezer;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PackedCollectionsTest {
+
+    @Test
+    public void integers_roundTrip() {
+        //given
+        int[] values = {0, 1, -1, 63, -64, 300, Integer.MAX_VALUE, Integer.MIN_VALUE};
+
+        //when
+        byte[] blob = PackedCollections.packIntegers(values);
+
+        //then
+        assertArrayEquals(values, PackedCollections.unpackIntegersPrimitiveArray(blob));
+        assertEquals(Arrays.asList(0, 1, -1, 63, -64, 300, Integer.MAX_VALUE, Integer.MIN_VALUE), PackedCollections.unpackIntegers(blob));
+    }
+
+    @Test
+    public void integers_smallValuesTakeOneByte() {
+        //given
+        List<Integer> values = new ArrayList<>();
+        for (int i = 0; i < 500; ++i) {
+            values.add(i % 60);
+        }
+
+        //when
+        byte[] blob = PackedCollections.packIntegers(values);
+
+        //then
+        assertEquals(2 + 500, blob.length);
+        assertEquals(values, PackedCollections.unpackIntegers(blob));
+    }
+
+    @Test
+    public void longs_floats_doubles_roundTrip() {
+        long[] longs = {Long.MIN_VALUE, -5, 0, 5, Long.MAX_VALUE};
+        float[] floats = {-1.5f, 0f, Float.MAX_VALUE, Float.NaN};
+        double[] doubles = {-1.5, 0, Double.MIN_VALUE, Double.NEGATIVE_INFINITY};
+
+        assertArrayEquals(longs, PackedCollections.unpackLongsPrimitiveArray(PackedCollections.packLongs(longs)));
+        assertArrayEquals(floats, PackedCollections.unpackFloatsPrimitiveArray(PackedCollections.packFloats(floats)), 0f);
+        assertArrayEquals(doubles, PackedCollections.unpackDoublesPrimitiveArray(PackedCollections.packDoubles(doubles)), 0);
+    }
+
+    @Test
+    public void booleans_roundTrip() {
+        //given
+        boolean[] values = new boolean[19];
+        for (int i = 0; i < values.length; ++i) {
+            values[i] = i % 3 == 0;
+        }
+
+        //when
+        byte[] blob = PackedCollections.packBooleans(values);
+
+        //then
+        assertEquals(1 + 3, blob.length);
+        assertTrue(Arrays.equals(values, PackedCollections.unpackBooleansPrimitiveArray(blob)));
+    }
+
+    @Test
+    public void strings_keepNullsAndUnicode() {
+        //given
+        List<String> values = Arrays.asList("florent", null, "", "été ☃");
+
+        //when
+        byte[] blob = PackedCollections.packStrings(values);
+
+        //then
+        assertEquals(values, PackedCollections.unpackStrings(blob));
+    }
+
+    @Test
+    public void nullBlob_isEmpty() {
+        assertEquals(0, PackedCollections.unpackIntegersPrimitiveArray(null).length);
+        assertTrue(PackedCollections.unpackStrings(null).isEmpty());
+    }
+}